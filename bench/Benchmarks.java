@@ -0,0 +1,357 @@
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Micro-benchmarks of the solver hot paths. Each benchmark runs in its own
+ * forked virtual machine, so the profile and the compiled code of one
+ * benchmark do not affect the others. It is warmed up and then measured in a
+ * few iterations of fixed time. The results are consumed by the blackhole of
+ * JMH, so the benchmarked code can not be eliminated. Throughput is reported
+ * in operations per second with the spread of the iterations and allocation
+ * in bytes per operation, measured with the thread allocation counters of the
+ * virtual machine (the same counters used by the GC profiler of JMH).
+ * 
+ * JMH itself needs benchmarks in a named package, which can not use the
+ * classes of the default package, so only its blackhole is used.
+ * 
+ * Usage: java Benchmarks [filter] [milliseconds]
+ * 
+ * @author Todor Balabanov
+ */
+public class Benchmarks {
+
+	/**
+	 * Number of measurement iterations in a fork.
+	 */
+	private static final int ITERATIONS = 5;
+
+	/**
+	 * Benchmarked operation.
+	 */
+	private interface Operation {
+
+		/**
+		 * Run the operation once.
+		 * 
+		 * @param hole
+		 *            Consumer of the results.
+		 */
+		void run(Blackhole hole);
+	}
+
+	/**
+	 * Allocated bytes by the current thread.
+	 * 
+	 * @return Bytes counter.
+	 */
+	private static long allocated() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Measure single operation.
+	 * 
+	 * @param name
+	 *            Benchmark name.
+	 * @param input
+	 *            Benchmark parameters.
+	 * @param milliseconds
+	 *            Measurement time, the same time is used for warm up.
+	 * @param operation
+	 *            Benchmarked operation.
+	 */
+	private static void measure(String name, String input, long milliseconds, Operation operation) {
+		Blackhole hole = new Blackhole(
+				"Today's password is swordfish. I understand instantiating Blackholes directly is dangerous.");
+
+		/*
+		 * Warm up.
+		 */
+		long end = System.nanoTime() + milliseconds * 1000000L;
+		while (System.nanoTime() < end) {
+			operation.run(hole);
+		}
+
+		/*
+		 * Measurement iterations.
+		 */
+		double[] throughputs = new double[ITERATIONS];
+		long operations = 0;
+		long bytes = allocated();
+		long begin = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			long count = 0;
+			long start = System.nanoTime();
+			end = start + milliseconds * 1000000L / ITERATIONS;
+			long now;
+			do {
+				operation.run(hole);
+				count++;
+				now = System.nanoTime();
+			} while (now < end);
+			throughputs[i] = count / ((now - start) / 1E9);
+			operations += count;
+		}
+		bytes = allocated() - bytes;
+		double seconds = (System.nanoTime() - begin) / 1E9;
+
+		double mean = Arrays.stream(throughputs).average().orElse(0);
+		double spread = (Arrays.stream(throughputs).max().orElse(0) - Arrays.stream(throughputs).min().orElse(0)) / 2;
+		System.out.println(String.format("%-24s %-28s %14.2f +- %5.1f%% ops/s %14.0f B/op %10.2f MB/s", name, input,
+				mean, 100 * spread / mean, (double) bytes / operations, bytes / seconds / 1024 / 1024));
+
+		hole.evaporate("Yes, I am Stephen Hawking, and know a thing or two about black holes.");
+	}
+
+	/**
+	 * Synthetic regular polygon with equal shares.
+	 * 
+	 * @param vertices
+	 *            Number of vertices.
+	 * @param size
+	 *            Radius of the polygon in pixels.
+	 * @param scale
+	 *            Pixels per polygon unit of the raster calculations.
+	 * 
+	 * @return Global polygon with its pipes.
+	 */
+	private static Problem synthetic(int vertices, int size, double scale) {
+		Polygon polygon = new Polygon();
+		for (int i = 0; i < vertices; i++) {
+			double angle = 2 * Math.PI * i / vertices;
+			polygon.addPoint((int) Math.round(500 + size * Math.cos(angle)),
+					(int) Math.round(500 + size * Math.sin(angle)));
+		}
+
+		Viewport viewport = Viewport.of(polygon, scale);
+		int area = viewport.area(polygon);
+
+		List<Pipe> pipes = new ArrayList<Pipe>();
+		for (int k = 0; k < vertices; k++) {
+			int l = (k + 1) % vertices;
+			pipes.add(new Pipe(Color.getHSBColor((float) k / vertices, 0.8F, 0.9F),
+					new Point(polygon.xpoints[k], polygon.ypoints[k]),
+					new Point(polygon.xpoints[l], polygon.ypoints[l]), area, 100D / vertices));
+		}
+
+		return new Problem(polygon, pipes, FitnessMode.ANALYTIC, null, viewport);
+	}
+
+	/**
+	 * Solution with a triangle for each pipe, pointing to the polygon center.
+	 * 
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * 
+	 * @return Solution.
+	 */
+	private static List<List<Point>> solution(Problem problem) {
+		Polygon polygon = problem.getPolygon();
+		double cx = Arrays.stream(polygon.xpoints, 0, polygon.npoints).average().orElse(0);
+		double cy = Arrays.stream(polygon.ypoints, 0, polygon.npoints).average().orElse(0);
+
+		List<List<Point>> result = new ArrayList<List<Point>>();
+		for (Pipe pipe : problem.getPipes()) {
+			List<Point> points = new ArrayList<Point>();
+			points.add(pipe.vertex1);
+			points.add(pipe.vertex2);
+			points.add(new Point((int) ((pipe.location.x + cx) / 2), (int) ((pipe.location.y + cy) / 2)));
+			result.add(points);
+		}
+		return result;
+	}
+
+	/**
+	 * Problem of a benchmark input.
+	 * 
+	 * @param input
+	 *            Input file or synthetic polygon as "synthetic n=vertices
+	 *            r=size s=scale".
+	 * 
+	 * @return Global polygon with its pipes.
+	 * 
+	 * @throws Exception
+	 *             When the input file can not be read.
+	 */
+	private static Problem problem(String input) throws Exception {
+		if (input.startsWith("synthetic ") == false) {
+			return Main.read(input, FitnessMode.ANALYTIC, 1);
+		}
+
+		String[] values = input.replaceAll("[a-z]+=", "").split(" ");
+		return synthetic(Integer.parseInt(values[1]), Integer.parseInt(values[2]), Double.parseDouble(values[3]));
+	}
+
+	/**
+	 * All benchmarks for a single problem.
+	 * 
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * 
+	 * @return Benchmarks by name.
+	 */
+	private static Map<String, Operation> operations(Problem problem) {
+		Map<String, Operation> operations = new LinkedHashMap<String, Operation>();
+
+		PolygonListChromosome chromosome = new PolygonListChromosome(solution(problem), problem);
+		operations.put("fitness.raster", hole -> hole.consume(chromosome.rasterFitness()));
+		operations.put("fitness.analytic", hole -> hole.consume(chromosome.analyticFitness()));
+
+		RandomVertexMutation mutation = new RandomVertexMutation();
+		operations.put("mutation", hole -> hole.consume(mutation.mutate(chromosome)));
+
+		AdaptiveVertexMutation adaptive = new AdaptiveVertexMutation();
+		operations.put("mutation.adaptive", hole -> hole.consume(adaptive.mutate(chromosome)));
+
+		Polygon polygon = problem.getPolygon();
+		EdgeIndex index = problem.getEdgeIndex();
+		Rectangle bounds = polygon.getBounds();
+		Random prng = new Random(0);
+		operations.put("contains.polygon", hole -> hole.consume(polygon
+				.contains(bounds.x + prng.nextInt(bounds.width + 1), bounds.y + prng.nextInt(bounds.height + 1))));
+		operations.put("contains.index", hole -> hole.consume(
+				index.contains(bounds.x + prng.nextInt(bounds.width + 1), bounds.y + prng.nextInt(bounds.height + 1))));
+		operations.put("distance.index", hole -> hole.consume(
+				index.distance(bounds.x + prng.nextInt(bounds.width + 1), bounds.y + prng.nextInt(bounds.height + 1))));
+
+		Viewport viewport = problem.getViewport();
+		BufferedImage canvas = viewport.canvas(problem.getPolygon());
+		operations.put("flood", hole -> {
+			for (Pipe pipe : problem.getPipes()) {
+				pipe.occupied = 0;
+			}
+			FloodEngine engine = new FloodEngine(canvas, problem.getPipes(), viewport);
+			engine.flood();
+			hole.consume(problem.getPipes().get(0).occupied);
+		});
+
+		operations.put("squareization", new Operation() {
+			/**
+			 * Flooded canvas, it is prepared only if this benchmark runs.
+			 */
+			private BufferedImage flooded = null;
+
+			/**
+			 * Engine of the flooded canvas.
+			 */
+			private FloodEngine engine = null;
+
+			@Override
+			public void run(Blackhole hole) {
+				if (engine == null) {
+					flooded = viewport.canvas(problem.getPolygon());
+					for (Pipe pipe : problem.getPipes()) {
+						pipe.occupied = 0;
+					}
+					engine = new FloodEngine(flooded, problem.getPipes(), viewport);
+					engine.flood();
+					engine.paint(flooded);
+				}
+
+				engine.squareization(ForkJoinPool.commonPool(), 10);
+				engine.paint(flooded);
+				hole.consume(flooded.getRGB(0, 0));
+			}
+		});
+
+		return operations;
+	}
+
+	/**
+	 * Run single benchmark in a new virtual machine with the same class path
+	 * and options.
+	 * 
+	 * @param name
+	 *            Benchmark name.
+	 * @param input
+	 *            Benchmark input.
+	 * @param milliseconds
+	 *            Measurement time.
+	 * 
+	 * @throws Exception
+	 *             When the fork can not be started or it fails.
+	 */
+	private static void fork(String name, String input, long milliseconds) throws Exception {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Benchmarks.class.getName());
+		command.add("-fork");
+		command.add(name);
+		command.add(input);
+		command.add("" + milliseconds);
+
+		int status = new ProcessBuilder(command).inheritIO().start().waitFor();
+		if (status != 0) {
+			throw new IllegalStateException("Benchmark " + name + " on " + input + " failed with status " + status + ".");
+		}
+	}
+
+	/**
+	 * Benchmarks entry point.
+	 * 
+	 * @param args
+	 *            Optional benchmark name filter and measurement time in
+	 *            milliseconds.
+	 * 
+	 * @throws Exception
+	 *             When the input files can not be read.
+	 */
+	public static void main(String[] args) throws Exception {
+		/*
+		 * Forked virtual machine runs a single benchmark.
+		 */
+		if (args.length == 4 && "-fork".equals(args[0]) == true) {
+			measure(args[1], args[2], Long.parseLong(args[3]), operations(problem(args[2])).get(args[1]));
+			return;
+		}
+
+		String filter = args.length > 0 ? args[0] : "";
+		long milliseconds = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+
+		/*
+		 * Shipped inputs and synthetic polygons of growing vertex count, size
+		 * and resolution.
+		 */
+		List<String> inputs = new ArrayList<String>();
+		for (int i = 1; i <= 5; i++) {
+			String file = String.format("./dat/in%02d.json", i);
+			if (new File(file).exists() == true) {
+				inputs.add(file);
+			}
+		}
+		for (double scale : new double[] { 0.5, 1, 2 }) {
+			for (int size : new int[] { 100, 250, 450 }) {
+				for (int vertices : new int[] { 8, 32, 128 }) {
+					inputs.add("synthetic n=" + vertices + " r=" + size + " s=" + scale);
+				}
+			}
+		}
+
+		for (String input : inputs) {
+			for (String name : operations(problem(input)).keySet()) {
+				if (name.contains(filter) == true) {
+					fork(name, input, milliseconds);
+				}
+			}
+		}
+	}
+
+}
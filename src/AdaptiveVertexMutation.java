@@ -0,0 +1,269 @@
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.math3.exception.MathIllegalArgumentException;
+import org.apache.commons.math3.genetics.Chromosome;
+import org.apache.commons.math3.genetics.MutationPolicy;
+
+/**
+ * Self-adaptive vertex move. Each chromosome carries its own step size, which
+ * is mutated log-normally before it is used for a Gaussian or Cauchy
+ * displacement of a random vertex, as in the evolution strategies. Chromosomes
+ * with suitable step sizes produce better offspring, so the selection tunes
+ * the step size together with the geometry.
+ *
+ * Vertices are inserted and removed on a controlled schedule: a nearly
+ * collinear vertex is removed when its triangle is smaller than the square of
+ * the step, otherwise the longest free edge is split. Moves do not take
+ * vertices far outside of the global polygon.
+ *
+ * @author Todor Balabanov
+ */
+public class AdaptiveVertexMutation implements MutationPolicy {
+
+	/**
+	 * Learning rate of the step size.
+	 */
+	private static final double TAU = 1D / Math.sqrt(2D);
+
+	/**
+	 * Probability distribution of the displacement.
+	 */
+	public enum Distribution {
+		/**
+		 * Normal distribution, mostly local moves.
+		 */
+		GAUSSIAN,
+
+		/**
+		 * Cauchy distribution, heavy tail with occasional long jumps.
+		 */
+		CAUCHY
+	}
+
+	/**
+	 * Probability distribution of the displacement.
+	 */
+	private final Distribution distribution;
+
+	/**
+	 * Initial step size as part of the bigger side of the polygon bounds.
+	 */
+	private final double initial;
+
+	/**
+	 * Minimal step size in pixels.
+	 */
+	private final double minimum;
+
+	/**
+	 * Probability for change of the vertices count.
+	 */
+	private final double structure;
+
+	/**
+	 * Constructor with default parameters.
+	 */
+	public AdaptiveVertexMutation() {
+		this(Distribution.GAUSSIAN, 0.05, 0.5, 0.01);
+	}
+
+	/**
+	 * Constructor with all parameters.
+	 *
+	 * @param distribution
+	 *            Probability distribution of the displacement.
+	 * @param initial
+	 *            Initial step size as part of the bigger side of the polygon
+	 *            bounds.
+	 * @param minimum
+	 *            Minimal step size in pixels.
+	 * @param structure
+	 *            Probability for change of the vertices count.
+	 */
+	public AdaptiveVertexMutation(Distribution distribution, double initial, double minimum, double structure) {
+		super();
+
+		if (initial <= 0 || minimum <= 0 || structure < 0 || structure > 1) {
+			throw new IllegalArgumentException("Step sizes should be positive and the structure rate a probability.");
+		}
+
+		this.distribution = distribution;
+		this.initial = initial;
+		this.minimum = minimum;
+		this.structure = structure;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Chromosome mutate(Chromosome original) throws MathIllegalArgumentException {
+		/*
+		 * Do not mutate other types of chromosomes.
+		 */
+		if (original instanceof PolygonListChromosome == false) {
+			return original;
+		}
+
+		PolygonListChromosome chromosome = (PolygonListChromosome) original;
+		Rectangle bounds = chromosome.getProblem().getPolygon().getBounds();
+		double maximum = Math.max(minimum, Math.max(bounds.width, bounds.height));
+
+		/*
+		 * Log-normal self-adaptation of the step size.
+		 */
+		double step = chromosome.getStep();
+		if (step <= 0) {
+			step = initial * maximum;
+		}
+		step = Math.min(maximum, Math.max(minimum, step * Math.exp(TAU * ThreadLocalRandom.current().nextGaussian())));
+
+		List<List<Point>> representation = chromosome.getRepresentation();
+		int index = ThreadLocalRandom.current().nextInt(representation.size());
+		PackedPolygon polygon = PackedPolygon.of(representation.get(index));
+
+		if (ThreadLocalRandom.current().nextDouble() < structure) {
+			polygon = restructured(polygon, step);
+		} else {
+			/*
+			 * The pipe side vertices stay in place.
+			 */
+			int vertex = 2 + ThreadLocalRandom.current().nextInt(polygon.size() - 2);
+			int dx = displacement(step, maximum);
+			int dy = displacement(step, maximum);
+
+			/*
+			 * Steps below a pixel still move the vertex.
+			 */
+			if (dx == 0 && dy == 0) {
+				if (ThreadLocalRandom.current().nextBoolean() == true) {
+					dx = ThreadLocalRandom.current().nextBoolean() ? +1 : -1;
+				} else {
+					dy = ThreadLocalRandom.current().nextBoolean() ? +1 : -1;
+				}
+			}
+
+			/*
+			 * Vertices far outside of the global polygon only waste moves, so
+			 * the move is shortened while it leaves the polygon by more than
+			 * the step and more than before.
+			 */
+			EdgeIndex edges = chromosome.getProblem().getEdgeIndex();
+			int x = polygon.x(vertex);
+			int y = polygon.y(vertex);
+			double limit = Math.max(step, outside(edges, x, y));
+			while ((dx != 0 || dy != 0) && outside(edges, x + dx, y + dy) > limit) {
+				dx /= 2;
+				dy /= 2;
+			}
+
+			polygon = polygon.moved(vertex, dx, dy);
+		}
+
+		return chromosome.mutated(index, polygon, step);
+	}
+
+	/**
+	 * Random displacement along one axis.
+	 *
+	 * @param step
+	 *            Step size.
+	 * @param maximum
+	 *            Maximal displacement.
+	 *
+	 * @return Rounded displacement.
+	 */
+	private int displacement(double step, double maximum) {
+		double value = 0;
+		switch (distribution) {
+		case GAUSSIAN:
+			value = step * ThreadLocalRandom.current().nextGaussian();
+			break;
+		case CAUCHY:
+			value = step * Math.tan(Math.PI * (ThreadLocalRandom.current().nextDouble() - 0.5D));
+			break;
+		}
+
+		return (int) Math.round(Math.max(-maximum, Math.min(maximum, value)));
+	}
+
+	/**
+	 * Distance outside of the global polygon.
+	 *
+	 * @param index
+	 *            Edge index of the global polygon.
+	 * @param x
+	 *            Point x.
+	 * @param y
+	 *            Point y.
+	 *
+	 * @return Distance to the polygon border, zero inside.
+	 */
+	private static double outside(EdgeIndex index, int x, int y) {
+		return (index.contains(x, y) == true) ? 0 : index.distance(x, y);
+	}
+
+	/**
+	 * Change of the vertices count. The most collinear vertex is removed if
+	 * its removal changes the area less than a move with the current step,
+	 * otherwise the middle of the longest edge becomes a new vertex.
+	 *
+	 * @param polygon
+	 *            Sub-polygon.
+	 * @param step
+	 *            Step size.
+	 *
+	 * @return New sub-polygon.
+	 */
+	private static PackedPolygon restructured(PackedPolygon polygon, double step) {
+		int size = polygon.size();
+
+		/*
+		 * Vertices 0 and 1 are the pipe side and they are never removed.
+		 */
+		if (size > 3) {
+			int flattest = -1;
+			double smallest = Double.POSITIVE_INFINITY;
+			for (int i = 2; i < size; i++) {
+				int previous = i - 1;
+				int next = (i + 1) % size;
+				double area = Math.abs((double) (polygon.x(i) - polygon.x(previous))
+						* (polygon.y(next) - polygon.y(previous))
+						- (double) (polygon.y(i) - polygon.y(previous)) * (polygon.x(next) - polygon.x(previous)))
+						/ 2D;
+				if (area < smallest) {
+					smallest = area;
+					flattest = i;
+				}
+			}
+
+			if (smallest < step * step) {
+				return polygon.removed(flattest);
+			}
+		}
+
+		/*
+		 * Edge i goes from vertex i to vertex i+1, the pipe side (edge 0) is
+		 * never split.
+		 */
+		int longest = 1;
+		double length = -1;
+		for (int i = 1; i < size; i++) {
+			int next = (i + 1) % size;
+			double value = Point2D.distanceSq(polygon.x(i), polygon.y(i), polygon.x(next), polygon.y(next));
+			if (value > length) {
+				length = value;
+				longest = i;
+			}
+		}
+
+		int next = (longest + 1) % size;
+		return polygon.inserted(longest + 1, (int) Math.round((polygon.x(longest) + polygon.x(next)) / 2D),
+				(int) Math.round((polygon.y(longest) + polygon.y(next)) / 2D));
+	}
+
+}
@@ -0,0 +1,734 @@
+import java.awt.Point;
+import java.awt.Polygon;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Exact geometric evaluation of a partitioning. The terms of the raster cost
+ * function are calculated directly from the vertices, so the cost depends on
+ * the number of vertices instead of the canvas size.
+ *
+ * Each sub-polygon is split in a triangle fan around its first vertex. Every
+ * fan triangle is clipped with the triangles of the global polygon. Signed
+ * fan triangles sum up to the winding number of the sub-polygon, which makes
+ * the areas exact for any simple sub-polygon, convex or not. The black area
+ * is calculated with a sweep over the edges of all sub-polygons and of the
+ * global polygon, so points covered by more than two sub-polygons are
+ * counted correctly.
+ *
+ * @author Todor Balabanov
+ */
+class AnalyticFitness {
+
+	/**
+	 * Maximum number of vertices after clipping of a triangle with a triangle
+	 * and a half-plane.
+	 */
+	private static final int BUFFER_SIZE = 16;
+
+	/**
+	 * Pieces with smaller area are ignored.
+	 */
+	private static final double EPSILON = 1E-9;
+
+	/**
+	 * Number of incremental evaluations after which the aggregates are
+	 * calculated from scratch, so the rounding errors do not accumulate.
+	 */
+	private static final int MAXIMUM_DEPTH = 64;
+
+	/**
+	 * Per pipe aggregates of an evaluated solution. A mutated solution starts
+	 * from the aggregates of its parent and recalculates only the fan
+	 * triangles touched by the mutation. Instances are never changed after
+	 * construction, so the arrays of unchanged pipes are shared between
+	 * parents and offspring.
+	 */
+	static final class Evaluation {
+
+		/**
+		 * Evaluated solution.
+		 */
+		private final List<List<Point>> representation;
+
+		/**
+		 * Orientation of each sub-polygon.
+		 */
+		private final double[] signs;
+
+		/**
+		 * Area of each fan triangle inside the global polygon.
+		 */
+		private final double[][] areas;
+
+		/**
+		 * Distance to the pipe side integrated over each fan triangle.
+		 */
+		private final double[][] closeness;
+
+		/**
+		 * Area of the global polygon which is not covered by any sub-polygon.
+		 */
+		private final double black;
+
+		/**
+		 * Number of incremental evaluations since the last full one.
+		 */
+		private final int depth;
+
+		/**
+		 * Constructor with all parameters.
+		 *
+		 * @param representation
+		 *            Evaluated solution.
+		 * @param signs
+		 *            Orientation of each sub-polygon.
+		 * @param areas
+		 *            Area of each fan triangle.
+		 * @param closeness
+		 *            Integrated distance of each fan triangle.
+		 * @param black
+		 *            Uncovered area of the global polygon.
+		 * @param depth
+		 *            Number of incremental evaluations since the last full
+		 *            one.
+		 */
+		private Evaluation(List<List<Point>> representation, double[] signs, double[][] areas,
+				double[][] closeness, double black, int depth) {
+			this.representation = representation;
+			this.signs = signs;
+			this.areas = areas;
+			this.closeness = closeness;
+			this.black = black;
+			this.depth = depth;
+		}
+
+		/**
+		 * Area of a sub-polygon inside the global polygon.
+		 *
+		 * @param pipe
+		 *            Index of the pipe.
+		 *
+		 * @return Area in square pixels.
+		 */
+		double area(int pipe) {
+			double sum = 0;
+			for (double value : areas[pipe]) {
+				sum += value;
+			}
+			return sum;
+		}
+
+		/**
+		 * Area of the global polygon which is not covered by any sub-polygon.
+		 *
+		 * @return Area in square pixels.
+		 */
+		double black() {
+			return black;
+		}
+	}
+
+	/**
+	 * Global polygon.
+	 */
+	private final Polygon polygon;
+
+	/**
+	 * Triangulation of the global polygon.
+	 */
+	private final double[] triangles;
+
+	/**
+	 * Area of the global polygon.
+	 */
+	private final double area;
+
+	/**
+	 * Expected area for each pipe.
+	 */
+	private final double[] targets;
+
+	/**
+	 * Pipe side lines as normalized coefficients a*x + b*y + c, the value is
+	 * the signed distance to the line.
+	 */
+	private final double[] lines;
+
+	/**
+	 * Constructor with all parameters.
+	 *
+	 * @param polygon
+	 *            Global polygon.
+	 * @param pipes
+	 *            Pipes description.
+	 */
+	AnalyticFitness(Polygon polygon, List<Pipe> pipes) {
+		this.polygon = polygon;
+		triangles = Geometry.triangulate(polygon);
+
+		double sum = 0;
+		for (int t = 0; t < triangles.length; t += 6) {
+			sum += Geometry.area(triangles, t, 3);
+		}
+		area = sum;
+
+		targets = new double[pipes.size()];
+		lines = new double[3 * pipes.size()];
+		for (int k = 0; k < pipes.size(); k++) {
+			Pipe pipe = pipes.get(k);
+			targets[k] = pipe.share * area / 100D;
+
+			double dx = pipe.vertex2.x - pipe.vertex1.x;
+			double dy = pipe.vertex2.y - pipe.vertex1.y;
+			double length = Math.sqrt(dx * dx + dy * dy);
+			if (length == 0) {
+				length = 1;
+			}
+			lines[3 * k] = dy / length;
+			lines[3 * k + 1] = -dx / length;
+			lines[3 * k + 2] = (pipe.vertex1.y * dx - pipe.vertex1.x * dy) / length;
+		}
+	}
+
+	/**
+	 * Area of the global polygon.
+	 *
+	 * @return Area in square pixels.
+	 */
+	double area() {
+		return area;
+	}
+
+	/**
+	 * Side line of a pipe.
+	 *
+	 * @param pipe
+	 *            Index of the pipe.
+	 *
+	 * @return Normalized coefficients a, b and c of a*x + b*y + c.
+	 */
+	double[] line(int pipe) {
+		return Arrays.copyOfRange(lines, 3 * pipe, 3 * pipe + 3);
+	}
+
+	/**
+	 * Expected area of a pipe.
+	 *
+	 * @param pipe
+	 *            Index of the pipe.
+	 *
+	 * @return Area in square pixels.
+	 */
+	double target(int pipe) {
+		return targets[pipe];
+	}
+
+	/**
+	 * Fitness value of a solution. It has the same structure as the raster
+	 * cost function.
+	 *
+	 * @param representation
+	 *            List of sub-polygons, one for each pipe.
+	 *
+	 * @return Fitness value, bigger is better.
+	 */
+	double evaluate(List<List<Point>> representation) {
+		return fitness(evaluation(representation));
+	}
+
+	/**
+	 * Fitness value of a solution. It has the same structure as the raster
+	 * cost function.
+	 *
+	 * @param representation
+	 *            List of sub-polygons, one for each pipe.
+	 * @param areas
+	 *            Optional output for the area of each sub-polygon inside the
+	 *            global polygon.
+	 *
+	 * @return Fitness value, bigger is better.
+	 */
+	double evaluate(List<List<Point>> representation, double[] areas) {
+		Evaluation evaluation = evaluation(representation);
+
+		if (areas != null) {
+			for (int k = 0; k < representation.size(); k++) {
+				areas[k] = evaluation.area(k);
+			}
+		}
+
+		return fitness(evaluation);
+	}
+
+	/**
+	 * Fitness value from evaluated aggregates.
+	 *
+	 * @param evaluation
+	 *            Per pipe aggregates.
+	 *
+	 * @return Fitness value, bigger is better.
+	 */
+	double fitness(Evaluation evaluation) {
+		int size = evaluation.representation.size();
+
+		int numberOfVertices = 0;
+		double closeness = 0;
+		double underdrawing = 0;
+		for (int k = 0; k < size; k++) {
+			numberOfVertices += evaluation.representation.get(k).size();
+			for (double value : evaluation.closeness[k]) {
+				closeness += value;
+			}
+
+			underdrawing += Math.max(0, targets[k] - evaluation.area(k));
+		}
+
+		/*
+		 * The same cost function as in the raster evaluation.
+		 */
+		double fitness = closeness * (numberOfVertices + evaluation.black + underdrawing);
+
+		/*
+		 * Bigger fitness is better chromosome.
+		 */
+		return -fitness;
+	}
+
+	/**
+	 * Full evaluation of the per pipe aggregates.
+	 *
+	 * @param representation
+	 *            List of sub-polygons, one for each pipe.
+	 *
+	 * @return Per pipe aggregates.
+	 */
+	Evaluation evaluation(List<List<Point>> representation) {
+		int size = representation.size();
+		double[] signs = new double[size];
+		double[][] areas = new double[size][];
+		double[][] closeness = new double[size][];
+		double[] a = new double[BUFFER_SIZE * 2];
+		double[] b = new double[BUFFER_SIZE * 2];
+
+		for (int k = 0; k < size; k++) {
+			PackedPolygon points = PackedPolygon.of(representation.get(k));
+			int count = Math.max(0, points.size() - 2);
+			signs[k] = orientation(points);
+			areas[k] = new double[count];
+			closeness[k] = new double[count];
+
+			for (int i = 0; i < count; i++) {
+				triangle(points, i + 1, signs[k], k, areas[k], closeness[k], i, a, b);
+			}
+		}
+
+		return new Evaluation(representation, signs, areas, closeness, black(representation), 0);
+	}
+
+	/**
+	 * Incremental evaluation of a solution which differs from an evaluated
+	 * one in a single sub-polygon. Only the fan triangles between the common
+	 * prefix and the common suffix of the old and the new vertices are
+	 * calculated, so the cost depends on the size of the change. The black
+	 * area is calculated in the same way as in the full evaluation.
+	 *
+	 * @param base
+	 *            Aggregates of the parent solution.
+	 * @param representation
+	 *            New solution.
+	 * @param k
+	 *            Index of the changed sub-polygon.
+	 *
+	 * @return Per pipe aggregates.
+	 */
+	Evaluation evaluation(Evaluation base, List<List<Point>> representation, int k) {
+		int size = representation.size();
+		if (base.depth >= MAXIMUM_DEPTH || base.representation.size() != size) {
+			return evaluation(representation);
+		}
+
+		PackedPolygon before = PackedPolygon.of(base.representation.get(k));
+		PackedPolygon after = PackedPolygon.of(representation.get(k));
+		int newCount = Math.max(0, after.size() - 2);
+		double sign = orientation(after);
+
+		/*
+		 * Common prefix and suffix of the vertices lists.
+		 */
+		int limit = Math.min(before.size(), after.size());
+		int prefix = 0;
+		while (prefix < limit && before.same(prefix, after, prefix)) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < limit - prefix
+				&& before.same(before.size() - 1 - suffix, after, after.size() - 1 - suffix)) {
+			suffix++;
+		}
+
+		/*
+		 * Fan triangle i is formed by vertices 0, i and i+1. It is the same if
+		 * both vertices are in the prefix or both are in the suffix. Changed
+		 * first vertex or orientation change all triangles.
+		 */
+		int low = Math.max(1, prefix - 1);
+		int newHigh = after.size() - suffix - 1;
+		if (prefix == 0 || sign != base.signs[k]) {
+			low = 1;
+			newHigh = Integer.MAX_VALUE;
+		}
+		newHigh = Math.min(newHigh, newCount);
+		int shift = after.size() - before.size();
+
+		double[] areas = new double[newCount];
+		double[] closeness = new double[newCount];
+		double[] a = new double[BUFFER_SIZE * 2];
+		double[] b = new double[BUFFER_SIZE * 2];
+		for (int i = 1; i <= newCount; i++) {
+			if (i < low) {
+				areas[i - 1] = base.areas[k][i - 1];
+				closeness[i - 1] = base.closeness[k][i - 1];
+			} else if (i > newHigh) {
+				areas[i - 1] = base.areas[k][i - 1 - shift];
+				closeness[i - 1] = base.closeness[k][i - 1 - shift];
+			} else {
+				triangle(after, i, sign, k, areas, closeness, i - 1, a, b);
+			}
+		}
+
+		double[] signs = base.signs.clone();
+		signs[k] = sign;
+		double[][] allAreas = base.areas.clone();
+		allAreas[k] = areas;
+		double[][] allCloseness = base.closeness.clone();
+		allCloseness[k] = closeness;
+
+		return new Evaluation(representation, signs, allAreas, allCloseness, black(representation),
+				base.depth + 1);
+	}
+
+	/**
+	 * Doubled signed area of a fan triangle.
+	 *
+	 * @param points
+	 *            Sub-polygon vertices.
+	 * @param i
+	 *            Triangle is formed by vertices 0, i and i+1.
+	 *
+	 * @return Cross product of the triangle sides.
+	 */
+	private static double cross(PackedPolygon points, int i) {
+		return (double) (points.x(i) - points.x(0)) * (points.y(i + 1) - points.y(0))
+				- (double) (points.y(i) - points.y(0)) * (points.x(i + 1) - points.x(0));
+	}
+
+	/**
+	 * Orientation of a sub-polygon.
+	 *
+	 * @param points
+	 *            Sub-polygon vertices.
+	 *
+	 * @return One for positive or zero area, minus one for negative area.
+	 */
+	private static double orientation(PackedPolygon points) {
+		double total = 0;
+		for (int i = 1; i + 1 < points.size(); i++) {
+			total += cross(points, i);
+		}
+		return total < 0 ? -1 : 1;
+	}
+
+	/**
+	 * Evaluate a single fan triangle. The weight of the triangle is oriented
+	 * so the inside of the sub-polygon has weight one in both orientations.
+	 *
+	 * @param points
+	 *            Sub-polygon vertices.
+	 * @param i
+	 *            Triangle is formed by vertices 0, i and i+1.
+	 * @param sign
+	 *            Orientation of the sub-polygon.
+	 * @param pipe
+	 *            Index of the pipe.
+	 * @param areas
+	 *            Output for the area.
+	 * @param closeness
+	 *            Output for the integrated distance.
+	 * @param index
+	 *            Index in the output arrays.
+	 * @param a
+	 *            Scratch buffer.
+	 * @param b
+	 *            Scratch buffer.
+	 */
+	private void triangle(PackedPolygon points, int i, double sign, int pipe, double[] areas, double[] closeness,
+			int index, double[] a, double[] b) {
+		double cross = cross(points, i);
+
+		double area = 0;
+		double distance = 0;
+		if (cross != 0) {
+			/*
+			 * Triangles are clipped counter-clockwise, the orientation goes in
+			 * the weight.
+			 */
+			int first = cross > 0 ? i : i + 1;
+			int second = cross > 0 ? i + 1 : i;
+			double weight = Math.signum(cross) * sign;
+
+			for (int t = 0; t < triangles.length; t += 6) {
+				a[0] = points.x(0);
+				a[1] = points.y(0);
+				a[2] = points.x(first);
+				a[3] = points.y(first);
+				a[4] = points.x(second);
+				a[5] = points.y(second);
+				int n = Geometry.clip(a, 3, triangles, t, b);
+				if (n < 3) {
+					continue;
+				}
+
+				/*
+				 * Degenerate pieces have no area.
+				 */
+				double piece = Geometry.area(b, 0, n);
+				if (piece < EPSILON) {
+					continue;
+				}
+
+				area += weight * piece;
+				distance += weight * distance(b, n, pipe, a);
+			}
+		}
+
+		areas[index] = area;
+		closeness[index] = distance;
+	}
+
+	/**
+	 * Integral of the distance to the pipe side over a convex piece.
+	 *
+	 * @param piece
+	 *            Interleaved coordinates of the piece.
+	 * @param n
+	 *            Number of vertices.
+	 * @param pipe
+	 *            Index of the pipe.
+	 * @param buffer
+	 *            Scratch buffer.
+	 *
+	 * @return Integral of the absolute distance.
+	 */
+	private double distance(double[] piece, int n, int pipe, double[] buffer) {
+		double a = lines[3 * pipe];
+		double b = lines[3 * pipe + 1];
+		double c = lines[3 * pipe + 2];
+
+		/*
+		 * Absolute value is linear on each side of the line.
+		 */
+		int m = Geometry.clip(piece, n, a, b, c, buffer);
+		double result = Geometry.integral(buffer, m, a, b, c);
+		m = Geometry.clip(piece, n, -a, -b, -c, buffer);
+		result += Geometry.integral(buffer, m, -a, -b, -c);
+
+		return result;
+	}
+
+	/**
+	 * Area of the global polygon which is not covered by any sub-polygon. The
+	 * plane is cut in vertical slabs at all vertices and at all crossings of
+	 * edges, so the edges do not cross inside a slab. Each slab is walked from
+	 * top to bottom over its edges and every edge switches the inside state of
+	 * its polygon with the even-odd rule, as in the raster evaluation. The
+	 * covered parts of a slab are trapezoids. Edges of different polygons on
+	 * the same line, for example on a common side, switch both polygons at
+	 * the same place, so they need no special care.
+	 *
+	 * @param representation
+	 *            List of sub-polygons, one for each pipe.
+	 *
+	 * @return Area in square pixels.
+	 */
+	private double black(List<List<Point>> representation) {
+		int size = representation.size();
+
+		/*
+		 * Non-vertical edges from left to right with the index of their
+		 * polygon, the global polygon is the last one.
+		 */
+		int total = polygon.npoints;
+		for (List<Point> points : representation) {
+			total += points.size();
+		}
+		double[] edges = new double[4 * total];
+		int[] owners = new int[total];
+		double[] xs = new double[2 * total];
+		int count = 0;
+		int events = 0;
+		for (int k = 0; k <= size; k++) {
+			PackedPolygon points = (k < size) ? PackedPolygon.of(representation.get(k)) : null;
+			int n = (k < size) ? points.size() : polygon.npoints;
+			if (n < 3) {
+				continue;
+			}
+
+			for (int i = 0, j = n - 1; i < n; j = i++) {
+				double ax = (k < size) ? points.x(j) : polygon.xpoints[j];
+				double ay = (k < size) ? points.y(j) : polygon.ypoints[j];
+				double bx = (k < size) ? points.x(i) : polygon.xpoints[i];
+				double by = (k < size) ? points.y(i) : polygon.ypoints[i];
+				xs[events++] = ax;
+				if (ax == bx) {
+					continue;
+				}
+
+				edges[4 * count] = Math.min(ax, bx);
+				edges[4 * count + 1] = (ax < bx) ? ay : by;
+				edges[4 * count + 2] = Math.max(ax, bx);
+				edges[4 * count + 3] = (ax < bx) ? by : ay;
+				owners[count] = k;
+				count++;
+			}
+		}
+
+		/*
+		 * Crossings of the edges.
+		 */
+		for (int e = 0; e < count; e++) {
+			for (int f = e + 1; f < count; f++) {
+				double low = Math.max(edges[4 * e], edges[4 * f]);
+				double high = Math.min(edges[4 * e + 2], edges[4 * f + 2]);
+				if (low >= high) {
+					continue;
+				}
+
+				double before = y(edges, e, low) - y(edges, f, low);
+				double after = y(edges, e, high) - y(edges, f, high);
+				if ((before < 0 && after > 0) || (before > 0 && after < 0)) {
+					if (events == xs.length) {
+						xs = Arrays.copyOf(xs, 2 * xs.length);
+					}
+					xs[events++] = low + (high - low) * before / (before - after);
+				}
+			}
+		}
+
+		/*
+		 * Slab borders without repetitions.
+		 */
+		Arrays.sort(xs, 0, events);
+		int slabs = 0;
+		for (int i = 0; i < events; i++) {
+			if (slabs == 0 || xs[i] != xs[slabs - 1]) {
+				xs[slabs++] = xs[i];
+			}
+		}
+
+		/*
+		 * Edges ordered by the slab where they start.
+		 */
+		int[] ends = new int[count];
+		int[] starts = new int[slabs + 1];
+		for (int e = 0; e < count; e++) {
+			starts[Arrays.binarySearch(xs, 0, slabs, edges[4 * e]) + 1]++;
+			ends[e] = Arrays.binarySearch(xs, 0, slabs, edges[4 * e + 2]);
+		}
+		for (int s = 0; s < slabs; s++) {
+			starts[s + 1] += starts[s];
+		}
+		int[] order = new int[count];
+		int[] next = Arrays.copyOf(starts, slabs);
+		for (int e = 0; e < count; e++) {
+			order[next[Arrays.binarySearch(xs, 0, slabs, edges[4 * e])]++] = e;
+		}
+
+		int[] active = new int[count];
+		double[] middles = new double[count];
+		boolean[] inside = new boolean[size + 1];
+		int length = 0;
+		double covered = 0;
+		for (int s = 0; s + 1 < slabs; s++) {
+			double left = xs[s];
+			double right = xs[s + 1];
+
+			/*
+			 * Edges which end at this slab leave, edges which start enter.
+			 */
+			int kept = 0;
+			for (int i = 0; i < length; i++) {
+				if (ends[active[i]] > s) {
+					active[kept++] = active[i];
+				}
+			}
+			length = kept;
+			for (int i = starts[s]; i < starts[s + 1]; i++) {
+				active[length++] = order[i];
+			}
+
+			/*
+			 * The order of the edges changes a little from slab to slab, so
+			 * insertion sort is fast.
+			 */
+			double middle = (left + right) / 2D;
+			for (int i = 0; i < length; i++) {
+				int edge = active[i];
+				double y = y(edges, edge, middle);
+				int j = i;
+				for (; j > 0 && middles[j - 1] > y; j--) {
+					active[j] = active[j - 1];
+					middles[j] = middles[j - 1];
+				}
+				active[j] = edge;
+				middles[j] = y;
+			}
+
+			int covering = 0;
+			for (int i = 0; i < length; i++) {
+				int edge = active[i];
+				if (i > 0 && inside[size] == true && covering > 0) {
+					int previous = active[i - 1];
+					covered += (right - left) * (y(edges, edge, left) - y(edges, previous, left)
+							+ y(edges, edge, right) - y(edges, previous, right)) / 2D;
+				}
+
+				int k = owners[edge];
+				inside[k] = !inside[k];
+				if (k < size) {
+					covering += inside[k] ? 1 : -1;
+				}
+			}
+		}
+
+		return Math.max(0, area - covered);
+	}
+
+	/**
+	 * Point of a non-vertical edge.
+	 *
+	 * @param edges
+	 *            Edges as left and right end coordinates.
+	 * @param edge
+	 *            Index of the edge.
+	 * @param x
+	 *            Abscissa between the ends.
+	 *
+	 * @return Ordinate of the edge.
+	 */
+	private static double y(double[] edges, int edge, double x) {
+		double x1 = edges[4 * edge];
+		double y1 = edges[4 * edge + 1];
+		double x2 = edges[4 * edge + 2];
+		double y2 = edges[4 * edge + 3];
+
+		if (x == x1) {
+			return y1;
+		}
+		if (x == x2) {
+			return y2;
+		}
+		return y1 + (y2 - y1) * (x - x1) / (x2 - x1);
+	}
+
+}
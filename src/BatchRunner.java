@@ -0,0 +1,506 @@
+import java.awt.Point;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.apache.commons.math3.genetics.StoppingCondition;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * Batch solving of many inputs in a single virtual machine. Jobs are scheduled
+ * over a bounded pool of workers, each job has its own time budget and the
+ * result of each job is reported as a JSON line as soon as the job finishes.
+ *
+ * @author Todor Balabanov
+ */
+public class BatchRunner {
+
+	/**
+	 * Single input to be solved.
+	 */
+	static final class Job {
+
+		/**
+		 * Path to the input file.
+		 */
+		final String file;
+
+		/**
+		 * Optimization time budget in seconds.
+		 */
+		final long budget;
+
+		/**
+		 * Constructor with all parameters.
+		 *
+		 * @param file
+		 *            Path to the input file.
+		 * @param budget
+		 *            Optimization time budget in seconds.
+		 */
+		Job(String file, long budget) {
+			this.file = file;
+			this.budget = budget;
+		}
+	}
+
+	/**
+	 * Number of concurrently solved jobs.
+	 */
+	private final int workers;
+
+	/**
+	 * Number of threads for fitness evaluation in each job.
+	 */
+	private final int threads;
+
+	/**
+	 * Number of islands in each job.
+	 */
+	private final int islands;
+
+	/**
+	 * Raster or analytic fitness calculation.
+	 */
+	private final FitnessMode mode;
+
+	/**
+	 * Pixels per polygon unit of the raster calculations.
+	 */
+	private final double scale;
+
+	/**
+	 * Downscaling factors of the coarse-to-fine levels, null for a single
+	 * level at full resolution.
+	 */
+	private final int[] levels;
+
+	/**
+	 * Part of the time budget for each level.
+	 */
+	private final double[] split;
+
+	/**
+	 * Factory of additional stopping conditions for each job, null for the
+	 * time budget only.
+	 */
+	private final Supplier<StoppingCondition> stop;
+
+	/**
+	 * Persistent solution store, null for none.
+	 */
+	private final SolutionStore store;
+
+	/**
+	 * Folder for the output images, null for no images.
+	 */
+	private final File output;
+
+	/**
+	 * Output formats (png, svg or geojson).
+	 */
+	private final String[] formats;
+
+	/**
+	 * Width and height of the output images, null for the viewport size.
+	 */
+	private final int[] size;
+
+	/**
+	 * Constructor with all parameters.
+	 *
+	 * @param workers
+	 *            Number of concurrently solved jobs.
+	 * @param threads
+	 *            Number of threads for fitness evaluation in each job.
+	 * @param islands
+	 *            Number of islands in each job.
+	 * @param mode
+	 *            Raster or analytic fitness calculation.
+	 * @param scale
+	 *            Pixels per polygon unit of the raster calculations.
+	 * @param levels
+	 *            Downscaling factors of the coarse-to-fine levels, null for a
+	 *            single level at full resolution.
+	 * @param split
+	 *            Part of the time budget for each level.
+	 * @param stop
+	 *            Factory of additional stopping conditions for each job, null
+	 *            for the time budget only.
+	 * @param store
+	 *            Persistent solution store, null for none.
+	 * @param output
+	 *            Folder for the output images, null for no images.
+	 * @param formats
+	 *            Output formats (png, svg or geojson).
+	 * @param size
+	 *            Width and height of the output images, null for the viewport
+	 *            size.
+	 */
+	public BatchRunner(int workers, int threads, int islands, FitnessMode mode, double scale, int[] levels, double[] split,
+			Supplier<StoppingCondition> stop, SolutionStore store, File output, String[] formats, int[] size) {
+		this.workers = workers;
+		this.threads = threads;
+		this.islands = islands;
+		this.mode = mode;
+		this.scale = scale;
+		this.levels = levels;
+		this.split = split;
+		this.stop = stop;
+		this.store = store;
+		this.output = output;
+		this.formats = formats;
+		this.size = size;
+	}
+
+	/**
+	 * Collect jobs from command line arguments. Folders are expanded to all
+	 * input files in them (JSON, CSV or binary), input files are taken as they
+	 * are and any other file is a manifest with a path and an optional time budget on each line.
+	 *
+	 * @param paths
+	 *            Folders, input files or manifests.
+	 * @param budget
+	 *            Default time budget in seconds.
+	 *
+	 * @return List of jobs.
+	 *
+	 * @throws IOException
+	 *             When a manifest can not be read.
+	 */
+	static List<Job> jobs(List<String> paths, long budget) throws IOException {
+		List<Job> jobs = new ArrayList<Job>();
+
+		for (String path : paths) {
+			File file = new File(path);
+
+			if (file.isDirectory() == true) {
+				File[] files = file.listFiles((folder, name) -> InputReader.accepts(name));
+				Arrays.sort(files);
+				for (File input : files) {
+					jobs.add(new Job(input.getPath(), budget));
+				}
+			} else if (InputReader.accepts(path) == true) {
+				jobs.add(new Job(path, budget));
+			} else {
+				try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+					for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+						line = line.trim();
+
+						/*
+						 * Empty lines and comments are skipped.
+						 */
+						if (line.isEmpty() == true || line.startsWith("#") == true) {
+							continue;
+						}
+
+						String[] values = line.split("\\s+");
+						jobs.add(new Job(values[0], values.length > 1 ? Long.parseLong(values[1]) : budget));
+					}
+				}
+			}
+		}
+
+		return jobs;
+	}
+
+	/**
+	 * Solve single job.
+	 *
+	 * @param job
+	 *            Input and budget.
+	 *
+	 * @return Report of the job.
+	 */
+	@SuppressWarnings("unchecked")
+	private JSONObject solve(Job job) {
+		JSONObject report = new JSONObject();
+		report.put("file", job.file);
+		report.put("budget", job.budget);
+
+		long start = System.nanoTime();
+		try {
+			Problem problem = Main.read(job.file, mode, scale);
+			long read = System.nanoTime();
+
+			GeneticAlgorithmSolver solver = new GeneticAlgorithmSolver(37, 0.9, 0.01, 2, 0.1, job.budget, threads,
+					islands);
+			StoppingCondition condition = (stop == null) ? null : stop.get();
+			List<List<Point>> solution;
+			if (store != null) {
+				solution = solver.solve(problem, store, levels, split, condition);
+			} else if (levels == null) {
+				solution = solver.solve(problem, condition);
+			} else {
+				solution = solver.solve(problem, levels, split, condition);
+			}
+			long solved = System.nanoTime();
+
+			report.put("status", "ok");
+			PolygonListChromosome best = new PolygonListChromosome(solution, problem);
+			report.put("fitness", best.getFitness());
+			report.put("error", Arrays.stream(best.areaErrors()).map(Math::abs).max().orElse(0));
+			report.put("evaluations", problem.getEvaluations());
+			report.put("read", (read - start) / 1E9);
+			report.put("solve", (solved - read) / 1E9);
+
+			/*
+			 * Only the PNG output needs a raster.
+			 */
+			if (output != null) {
+				String name = new File(job.file).getName().replaceFirst("\\.(json|csv|bin)$", "");
+				JSONArray files = new JSONArray();
+				for (String format : formats) {
+					File file = new File(output, name + "." + format);
+					SolutionWriter.write(file, problem, solution, size);
+					files.add(file.getPath());
+				}
+				report.put("output", files);
+			}
+		} catch (Exception exception) {
+			report.put("status", "error");
+			report.put("reason", "" + exception);
+		}
+		report.put("total", (System.nanoTime() - start) / 1E9);
+
+		return report;
+	}
+
+	/**
+	 * Solve all jobs.
+	 *
+	 * @param jobs
+	 *            List of jobs.
+	 * @param out
+	 *            Stream for the reports, one JSON line for each finished job.
+	 *
+	 * @return Number of failed jobs.
+	 *
+	 * @throws InterruptedException
+	 *             When the waiting is interrupted.
+	 */
+	public int run(List<Job> jobs, PrintStream out) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		try {
+			CompletionService<JSONObject> service = new ExecutorCompletionService<JSONObject>(pool);
+			for (Job job : jobs) {
+				service.submit(() -> solve(job));
+			}
+
+			/*
+			 * Reports are printed in order of completion.
+			 */
+			int failed = 0;
+			for (int i = 0; i < jobs.size(); i++) {
+				JSONObject report;
+				try {
+					report = service.take().get();
+				} catch (ExecutionException exception) {
+					throw new RuntimeException(exception.getCause());
+				}
+
+				if ("ok".equals(report.get("status")) == false) {
+					failed++;
+				}
+				synchronized (out) {
+					out.println(report.toJSONString());
+					out.flush();
+				}
+			}
+
+			return failed;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Batch entry point.
+	 *
+	 * Usage: java BatchRunner [-workers N] [-threads N] [-islands N] [-budget
+	 * seconds] [-mode RASTER|ANALYTIC] [-scale pixels] [-levels 4,2,1 [-split
+	 * 0.2,0.3,0.5]] [-stagnation generations] [-fitness target] [-error
+	 * tolerance] [-evaluations N] [-all] [-trace file.csv|file.jsonl] [-output
+	 * folder] [-format png,svg,geojson] [-size WIDTHxHEIGHT] [-store folder
+	 * [-storesize megabytes]] path...
+	 *
+	 * @param args
+	 *            Command line arguments.
+	 *
+	 * @throws Exception
+	 *             When the inputs can not be listed.
+	 */
+	public static void main(String[] args) throws Exception {
+		int workers = Runtime.getRuntime().availableProcessors();
+		int threads = 1;
+		int islands = 1;
+		long budget = 60;
+		FitnessMode mode = FitnessMode.ANALYTIC;
+		double scale = 1;
+		int[] levels = null;
+		double[] split = null;
+		int stagnation = 0;
+		Double fitness = null;
+		double error = 0;
+		long evaluations = 0;
+		boolean all = false;
+		String trace = null;
+		File output = null;
+		String[] formats = { "png" };
+		int[] size = null;
+		File folder = null;
+		long megabytes = 256;
+
+		List<String> paths = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-workers":
+				workers = Integer.parseInt(args[++i]);
+				break;
+			case "-threads":
+				threads = Integer.parseInt(args[++i]);
+				break;
+			case "-islands":
+				islands = Integer.parseInt(args[++i]);
+				break;
+			case "-budget":
+				budget = Long.parseLong(args[++i]);
+				break;
+			case "-mode":
+				mode = FitnessMode.valueOf(args[++i]);
+				break;
+			case "-scale":
+				scale = Double.parseDouble(args[++i]);
+				break;
+			case "-levels":
+				levels = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+				break;
+			case "-split":
+				split = Arrays.stream(args[++i].split(",")).mapToDouble(Double::parseDouble).toArray();
+				break;
+			case "-stagnation":
+				stagnation = Integer.parseInt(args[++i]);
+				break;
+			case "-fitness":
+				fitness = Double.valueOf(args[++i]);
+				break;
+			case "-error":
+				error = Double.parseDouble(args[++i]);
+				break;
+			case "-evaluations":
+				evaluations = Long.parseLong(args[++i]);
+				break;
+			case "-trace":
+				trace = args[++i];
+				break;
+			case "-all":
+				all = true;
+				break;
+			case "-size":
+				String[] values = args[++i].split("x");
+				size = new int[] { Integer.parseInt(values[0]), Integer.parseInt(values[1]) };
+				break;
+			case "-format":
+				formats = args[++i].split(",");
+				for (String format : formats) {
+					if (SolutionWriter.accepts(format) == false) {
+						throw new IllegalArgumentException("Output format " + format + " is not supported.");
+					}
+				}
+				break;
+			case "-store":
+				folder = new File(args[++i]);
+				break;
+			case "-storesize":
+				megabytes = Long.parseLong(args[++i]);
+				break;
+			case "-output":
+				output = new File(args[++i]);
+				output.mkdirs();
+				break;
+			default:
+				paths.add(args[i]);
+			}
+		}
+
+		/*
+		 * Levels without split share the budget evenly.
+		 */
+		if (levels != null && split == null) {
+			split = new double[levels.length];
+			Arrays.fill(split, 1D / levels.length);
+		}
+		if (split != null && (levels == null || levels.length != split.length)) {
+			throw new IllegalArgumentException("Each resolution level should have a part of the time budget.");
+		}
+
+		/*
+		 * Each job gets its own instances of the stateful conditions.
+		 */
+		final int generations = stagnation;
+		final Double target = fitness;
+		final double tolerance = error;
+		final long limit = evaluations;
+		final boolean combined = all;
+		Supplier<StoppingCondition> stop = () -> {
+			List<StoppingCondition> conditions = new ArrayList<StoppingCondition>();
+			if (generations > 0) {
+				conditions.add(StoppingConditions.stagnation(generations));
+			}
+			if (target != null) {
+				conditions.add(StoppingConditions.targetFitness(target));
+			}
+			if (tolerance > 0) {
+				conditions.add(StoppingConditions.targetAreaError(tolerance));
+			}
+			if (limit > 0) {
+				conditions.add(StoppingConditions.maxEvaluations(limit));
+			}
+
+			if (conditions.isEmpty() == true) {
+				return null;
+			}
+			StoppingCondition[] array = conditions.toArray(new StoppingCondition[conditions.size()]);
+			return combined ? StoppingConditions.all(array) : StoppingConditions.any(array);
+		};
+
+		/*
+		 * Per generation metrics are written only on request.
+		 */
+		Telemetry.TraceSink sink = null;
+		if (trace != null) {
+			sink = new Telemetry.TraceSink(new FileWriter(trace), trace.endsWith(".csv") == false);
+			Telemetry.setSink(sink);
+		}
+
+		/*
+		 * Solutions are reused between runs only on request.
+		 */
+		SolutionStore store = (folder == null) ? null : new SolutionStore(folder, megabytes << 20);
+
+		int failed = new BatchRunner(workers, threads, islands, mode, scale, levels, split, stop, store, output,
+				formats, size).run(jobs(paths, budget), System.out);
+		if (sink != null) {
+			Telemetry.setSink(null);
+			sink.close();
+		}
+		if (store != null) {
+			store.close();
+		}
+		System.exit(failed == 0 ? 0 : 1);
+	}
+
+}
@@ -0,0 +1,506 @@
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the edges of the global polygon. Each cell keeps the
+ * edges which touch it and the status of its center (inside or outside the
+ * polygon). The cell size is chosen for about one edge per cell, so the
+ * queries look at a few edges instead of all of them.
+ *
+ * A point is inside if the status of the cell center differs from the point
+ * by an even number of edge crossings on the axis parallel path between them.
+ * The path does not leave the cell, so only the edges of the cell are
+ * checked. Nearest edges are searched in growing rings of cells. Unit normals
+ * and inverse squared lengths of the edges are calculated once, so the
+ * distances need no square roots.
+ *
+ * The index is immutable and safe for concurrent use.
+ *
+ * @author Todor Balabanov
+ */
+final class EdgeIndex {
+
+	/**
+	 * Tolerance of the cell borders, edges on a border belong to both cells.
+	 */
+	private static final double EPSILON = 1E-9;
+
+	/**
+	 * Fractional shifts of the grid in both directions, so the cell centers
+	 * are not on the edges of a polygon with integer coordinates.
+	 */
+	private static final double[] SHIFT = { 0.2718281828, 0.3141592653 };
+
+	/**
+	 * Number of edges.
+	 */
+	private final int n;
+
+	/**
+	 * Interleaved coordinates of the polygon vertices. Edge i goes from vertex
+	 * i to vertex i+1.
+	 */
+	private final double[] xy;
+
+	/**
+	 * Unit normal of each edge line, as a*x + b*y + c.
+	 */
+	private final double[] lines;
+
+	/**
+	 * Inverse squared length of each edge, zero for degenerate edges.
+	 */
+	private final double[] inverses;
+
+	/**
+	 * Left side of the grid.
+	 */
+	private final double left;
+
+	/**
+	 * Top side of the grid.
+	 */
+	private final double top;
+
+	/**
+	 * Side of a single cell.
+	 */
+	private final double size;
+
+	/**
+	 * Number of cells in a row.
+	 */
+	private final int columns;
+
+	/**
+	 * Number of cells in a column.
+	 */
+	private final int rows;
+
+	/**
+	 * Index of the first edge of each cell in the edges array, one more value
+	 * at the end.
+	 */
+	private final int[] starts;
+
+	/**
+	 * Edges of all cells, cell after cell.
+	 */
+	private final int[] edges;
+
+	/**
+	 * Is the center of each cell inside the polygon.
+	 */
+	private final boolean[] centers;
+
+	/**
+	 * Constructor with all parameters.
+	 *
+	 * @param polygon
+	 *            Global polygon.
+	 */
+	EdgeIndex(Polygon polygon) {
+		n = polygon.npoints;
+		xy = new double[2 * n];
+		lines = new double[3 * n];
+		inverses = new double[n];
+		for (int i = 0; i < n; i++) {
+			xy[2 * i] = polygon.xpoints[i];
+			xy[2 * i + 1] = polygon.ypoints[i];
+		}
+		for (int i = 0; i < n; i++) {
+			double dx = dx(i);
+			double dy = dy(i);
+			double squared = dx * dx + dy * dy;
+			if (squared == 0) {
+				continue;
+			}
+
+			double length = Math.sqrt(squared);
+			lines[3 * i] = dy / length;
+			lines[3 * i + 1] = -dx / length;
+			lines[3 * i + 2] = (xy[2 * i + 1] * dx - xy[2 * i] * dy) / length;
+			inverses[i] = 1D / squared;
+		}
+
+		/*
+		 * About one edge per cell, but cells smaller than a polygon unit are
+		 * not useful for integer coordinates.
+		 */
+		Rectangle bounds = polygon.getBounds();
+		left = bounds.x - SHIFT[0];
+		top = bounds.y - SHIFT[1];
+		size = Math.max(1D, Math.sqrt((double) bounds.width * bounds.height / Math.max(1, n)));
+		columns = Math.max(1, (int) Math.ceil((bounds.width + 1) / size));
+		rows = Math.max(1, (int) Math.ceil((bounds.height + 1) / size));
+
+		/*
+		 * Compressed lists of the edges in each cell, counted first and
+		 * filled after that.
+		 */
+		starts = new int[columns * rows + 1];
+		for (int i = 0; i < n; i++) {
+			cover(i, starts, null);
+		}
+		for (int c = 0, sum = 0; c <= columns * rows; c++) {
+			int count = starts[c];
+			starts[c] = sum;
+			sum += count;
+		}
+		edges = new int[starts[columns * rows]];
+		int[] next = Arrays.copyOf(starts, columns * rows);
+		for (int i = 0; i < n; i++) {
+			cover(i, next, edges);
+		}
+
+		centers = new boolean[columns * rows];
+		classify();
+	}
+
+	/**
+	 * Horizontal projection of an edge.
+	 *
+	 * @param i
+	 *            Index of the edge.
+	 *
+	 * @return Difference of the end x and the start x.
+	 */
+	private double dx(int i) {
+		return xy[2 * ((i + 1) % n)] - xy[2 * i];
+	}
+
+	/**
+	 * Vertical projection of an edge.
+	 *
+	 * @param i
+	 *            Index of the edge.
+	 *
+	 * @return Difference of the end y and the start y.
+	 */
+	private double dy(int i) {
+		return xy[2 * ((i + 1) % n) + 1] - xy[2 * i + 1];
+	}
+
+	/**
+	 * Column of a coordinate, clamped in the grid.
+	 *
+	 * @param x
+	 *            Coordinate.
+	 *
+	 * @return Column index.
+	 */
+	private int column(double x) {
+		return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - left) / size)));
+	}
+
+	/**
+	 * Row of a coordinate, clamped in the grid.
+	 *
+	 * @param y
+	 *            Coordinate.
+	 *
+	 * @return Row index.
+	 */
+	private int row(double y) {
+		return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - top) / size)));
+	}
+
+	/**
+	 * Visit the cells touched by an edge, row by row with the part of the
+	 * edge in each row.
+	 *
+	 * @param i
+	 *            Index of the edge.
+	 * @param positions
+	 *            Counter for each cell, or the next free position of each
+	 *            cell in the output.
+	 * @param output
+	 *            Edges of all cells, null for counting only.
+	 */
+	private void cover(int i, int[] positions, int[] output) {
+		double ax = xy[2 * i];
+		double ay = xy[2 * i + 1];
+		double dx = dx(i);
+		double dy = dy(i);
+
+		int first = row(Math.min(ay, ay + dy) - EPSILON);
+		int last = row(Math.max(ay, ay + dy) + EPSILON);
+		for (int r = first; r <= last; r++) {
+			/*
+			 * Part of the edge between the top and the bottom of the row.
+			 */
+			double from = 0;
+			double to = 1;
+			if (dy != 0) {
+				double t1 = (top + r * size - EPSILON - ay) / dy;
+				double t2 = (top + (r + 1) * size + EPSILON - ay) / dy;
+				from = Math.max(0, Math.min(t1, t2));
+				to = Math.min(1, Math.max(t1, t2));
+			}
+
+			int begin = column(Math.min(ax + from * dx, ax + to * dx) - EPSILON);
+			int end = column(Math.max(ax + from * dx, ax + to * dx) + EPSILON);
+			for (int c = begin; c <= end; c++) {
+				int cell = r * columns + c;
+				if (output == null) {
+					positions[cell]++;
+				} else {
+					output[positions[cell]++] = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Status of the cell centers. Each row of centers is crossed with the
+	 * edges of its row of cells and the crossings on the right are counted,
+	 * as in the ray casting test of {@link Polygon#contains(double, double)}.
+	 */
+	private void classify() {
+		int[] marks = new int[n];
+		double[] crossings = new double[n];
+		for (int r = 0; r < rows; r++) {
+			double y = top + (r + 0.5D) * size;
+
+			int count = 0;
+			for (int cell = r * columns; cell < (r + 1) * columns; cell++) {
+				for (int e = starts[cell]; e < starts[cell + 1]; e++) {
+					int i = edges[e];
+					if (marks[i] == r + 1) {
+						continue;
+					}
+					marks[i] = r + 1;
+
+					double ay = xy[2 * i + 1];
+					double by = ay + dy(i);
+					if ((ay > y) != (by > y)) {
+						crossings[count++] = xy[2 * i] + (y - ay) / (by - ay) * dx(i);
+					}
+				}
+			}
+			Arrays.sort(crossings, 0, count);
+
+			for (int c = 0, k = 0; c < columns; c++) {
+				double x = left + (c + 0.5D) * size;
+				while (k < count && crossings[k] < x) {
+					k++;
+				}
+				centers[r * columns + c] = ((count - k) % 2 == 1);
+			}
+		}
+	}
+
+	/**
+	 * Point in polygon test.
+	 *
+	 * @param x
+	 *            Point x.
+	 * @param y
+	 *            Point y.
+	 *
+	 * @return True if the point is inside the polygon.
+	 */
+	boolean contains(double x, double y) {
+		if (x < left || y < top || x > left + columns * size || y > top + rows * size) {
+			return false;
+		}
+
+		int c = column(x);
+		int r = row(y);
+		int cell = r * columns + c;
+		double cx = left + (c + 0.5D) * size;
+		double cy = top + (r + 0.5D) * size;
+
+		/*
+		 * Crossings on the vertical path from the center to (cx, y) and on
+		 * the horizontal path from there to the point. The shifted column
+		 * center is not on an edge, so only the status of the point itself
+		 * depends on the boundary rule. On the horizontal path each edge
+		 * changes the status if the rays from both ends disagree, so the
+		 * points on the edges are classified as in the AWT.
+		 */
+		boolean inside = centers[cell];
+		for (int e = starts[cell]; e < starts[cell + 1]; e++) {
+			int i = edges[e];
+			double ax = xy[2 * i];
+			double ay = xy[2 * i + 1];
+			double bx = ax + dx(i);
+			double by = ay + dy(i);
+
+			if ((ax > cx) != (bx > cx)) {
+				double value = ay + (cx - ax) / (bx - ax) * (by - ay);
+				if (value > Math.min(cy, y) && value <= Math.max(cy, y)) {
+					inside = !inside;
+				}
+			}
+
+			if (crosses(i, x, y) != crosses(i, cx, y)) {
+				inside = !inside;
+			}
+		}
+
+		return inside;
+	}
+
+	/**
+	 * Ray casting test of a single edge with the calculation of
+	 * {@link Polygon#contains(double, double)}. Horizontal edges are never
+	 * crossed, the lower end of an edge is included and the upper end is
+	 * not. The result does not depend on the edge direction.
+	 *
+	 * @param i
+	 *            Index of the edge.
+	 * @param x
+	 *            Ray start x.
+	 * @param y
+	 *            Ray start y.
+	 *
+	 * @return True if the ray from the point to the right crosses the edge.
+	 */
+	private boolean crosses(int i, double x, double y) {
+		double ax = xy[2 * i];
+		double ay = xy[2 * i + 1];
+		double bx = ax + dx(i);
+		double by = ay + dy(i);
+
+		if (ay == by || x >= Math.max(ax, bx)) {
+			return false;
+		}
+
+		/*
+		 * Distances are measured from the lower end as in the AWT.
+		 */
+		double lx = (ay < by) ? ax : bx;
+		double ly = Math.min(ay, by);
+		if (y < ly || y >= Math.max(ay, by)) {
+			return false;
+		}
+		if (x < Math.min(ax, bx)) {
+			return true;
+		}
+
+		return (x - lx) < (y - ly) / (by - ay) * (bx - ax);
+	}
+
+	/**
+	 * Point in polygon test.
+	 *
+	 * @param point
+	 *            Point.
+	 *
+	 * @return True if the point is inside the polygon.
+	 */
+	boolean contains(Point point) {
+		return contains(point.x, point.y);
+	}
+
+	/**
+	 * Squared distance between a point and an edge segment.
+	 *
+	 * @param i
+	 *            Index of the edge.
+	 * @param x
+	 *            Point x.
+	 * @param y
+	 *            Point y.
+	 *
+	 * @return Squared distance.
+	 */
+	double distanceSq(int i, double x, double y) {
+		double ax = xy[2 * i];
+		double ay = xy[2 * i + 1];
+		double dx = dx(i);
+		double dy = dy(i);
+
+		double t = Math.max(0, Math.min(1, ((x - ax) * dx + (y - ay) * dy) * inverses[i]));
+		double ex = ax + t * dx - x;
+		double ey = ay + t * dy - y;
+		return ex * ex + ey * ey;
+	}
+
+	/**
+	 * Signed distance between a point and the line of an edge, it is
+	 * positive on the right side of the edge direction in the mathematical
+	 * orientation.
+	 *
+	 * @param i
+	 *            Index of the edge.
+	 * @param x
+	 *            Point x.
+	 * @param y
+	 *            Point y.
+	 *
+	 * @return Signed distance, zero for degenerate edges.
+	 */
+	double line(int i, double x, double y) {
+		return lines[3 * i] * x + lines[3 * i + 1] * y + lines[3 * i + 2];
+	}
+
+	/**
+	 * Closest edge to a point. The rings of cells around the point are
+	 * searched until the next ring can not be closer than the found edge.
+	 *
+	 * @param x
+	 *            Point x.
+	 * @param y
+	 *            Point y.
+	 *
+	 * @return Index of the edge, -1 for a polygon without edges.
+	 */
+	int nearest(double x, double y) {
+		int c = column(x);
+		int r = row(y);
+
+		int best = -1;
+		double distance = Double.POSITIVE_INFINITY;
+		for (int ring = 0; ring <= Math.max(columns, rows); ring++) {
+			for (int j = Math.max(0, r - ring); j <= Math.min(rows - 1, r + ring); j++) {
+				/*
+				 * Inner rows of the ring have only two cells.
+				 */
+				int step = (j == r - ring || j == r + ring) ? 1 : Math.max(1, 2 * ring);
+				for (int i = c - ring; i <= c + ring; i += step) {
+					if (i < 0 || i >= columns) {
+						continue;
+					}
+
+					int cell = j * columns + i;
+					for (int e = starts[cell]; e < starts[cell + 1]; e++) {
+						double value = distanceSq(edges[e], x, y);
+						if (value < distance) {
+							distance = value;
+							best = edges[e];
+						}
+					}
+				}
+			}
+
+			/*
+			 * Cells of the next ring are at least this far.
+			 */
+			if (best >= 0 && distance <= (ring * size) * (ring * size)) {
+				break;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Distance between a point and the polygon border.
+	 *
+	 * @param x
+	 *            Point x.
+	 * @param y
+	 *            Point y.
+	 *
+	 * @return Distance to the closest edge.
+	 */
+	double distance(double x, double y) {
+		int i = nearest(x, y);
+		return (i < 0) ? Double.POSITIVE_INFINITY : Math.sqrt(distanceSq(i, x, y));
+	}
+
+}
@@ -0,0 +1,320 @@
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded least recently used cache of fitness values. Crossover and elitism
+ * recreate chromosomes with already evaluated geometry very often, so the
+ * fitness calculation is skipped for them. The cache can be shared between
+ * problems, because the key contains the problem fingerprint.
+ * 
+ * The values are split in independently locked segments selected by the key
+ * hash, so parallel evaluations rarely wait for each other. Each segment
+ * evicts its own least recently used value, which approximates the global
+ * order.
+ * 
+ * @author Todor Balabanov
+ */
+public class FitnessCache {
+
+	/**
+	 * Maximum number of segments.
+	 */
+	private static final int SEGMENTS = 16;
+
+	/**
+	 * Cache key with the packed sub-polygons of the chromosome. The packed
+	 * polygons are immutable, so they are referenced instead of copied.
+	 */
+	static final class Key {
+
+		/**
+		 * Fingerprint of the problem.
+		 */
+		private final long problem;
+
+		/**
+		 * Packed sub-polygons.
+		 */
+		private final List<List<Point>> representation;
+
+		/**
+		 * Precalculated hash code.
+		 */
+		private final int hash;
+
+		/**
+		 * Constructor with all parameters.
+		 * 
+		 * @param problem
+		 *            Fingerprint of the problem.
+		 * @param representation
+		 *            List of sub-polygons.
+		 */
+		Key(long problem, List<List<Point>> representation) {
+			/*
+			 * Chromosomes keep their sub-polygons packed, other lists are
+			 * packed here.
+			 */
+			List<List<Point>> polygons = representation;
+			for (List<Point> points : representation) {
+				if (points instanceof PackedPolygon == false) {
+					polygons = new ArrayList<List<Point>>();
+					for (List<Point> list : representation) {
+						polygons.add(PackedPolygon.of(list));
+					}
+					break;
+				}
+			}
+
+			/*
+			 * Packed polygons have cached hash codes.
+			 */
+			int result = 1;
+			for (List<Point> points : polygons) {
+				result = 31 * result + points.hashCode();
+			}
+
+			this.problem = problem;
+			this.representation = polygons;
+			this.hash = 31 * Long.hashCode(problem) + result;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean equals(Object object) {
+			if (this == object) {
+				return true;
+			}
+			if (object instanceof Key == false) {
+				return false;
+			}
+
+			Key other = (Key) object;
+			if (hash != other.hash || problem != other.problem
+					|| representation.size() != other.representation.size()) {
+				return false;
+			}
+			for (int k = 0; k < representation.size(); k++) {
+				if (representation.get(k).equals(other.representation.get(k)) == false) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Cached fitness value with the analytic evaluation it was calculated
+	 * from, so the offspring of a found chromosome are still evaluated
+	 * incrementally.
+	 */
+	static final class Result {
+
+		/**
+		 * Fitness value.
+		 */
+		private final double fitness;
+
+		/**
+		 * Per pipe aggregates, null in the raster mode.
+		 */
+		private final AnalyticFitness.Evaluation evaluation;
+
+		/**
+		 * Constructor with all parameters.
+		 * 
+		 * @param fitness
+		 *            Fitness value.
+		 * @param evaluation
+		 *            Per pipe aggregates, null in the raster mode.
+		 */
+		Result(double fitness, AnalyticFitness.Evaluation evaluation) {
+			this.fitness = fitness;
+			this.evaluation = evaluation;
+		}
+
+		/**
+		 * Fitness value getter.
+		 * 
+		 * @return Fitness value.
+		 */
+		double getFitness() {
+			return fitness;
+		}
+
+		/**
+		 * Evaluation getter.
+		 * 
+		 * @return Per pipe aggregates, null in the raster mode.
+		 */
+		AnalyticFitness.Evaluation getEvaluation() {
+			return evaluation;
+		}
+	}
+
+	/**
+	 * Maximum number of cached values.
+	 */
+	private final int capacity;
+
+	/**
+	 * Segments with cached values in access order, each one is locked on
+	 * itself.
+	 */
+	private final List<Map<Key, Result>> segments;
+
+	/**
+	 * Number of found values.
+	 */
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * Number of missing values.
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Constructor with all parameters.
+	 * 
+	 * @param capacity
+	 *            Maximum number of cached values.
+	 */
+	public FitnessCache(int capacity) {
+		super();
+
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Cache capacity should be positive.");
+		}
+
+		/*
+		 * Power of two segments, each of them holds at least one value.
+		 */
+		this.capacity = capacity;
+		int count = Math.min(SEGMENTS, Integer.highestOneBit(capacity));
+		this.segments = new ArrayList<Map<Key, Result>>(count);
+		for (int s = 0; s < count; s++) {
+			final int limit = capacity / count + ((s < capacity % count) ? 1 : 0);
+			segments.add(new LinkedHashMap<Key, Result>(16, 0.75F, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+					return size() > limit;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Segment of a key.
+	 * 
+	 * @param key
+	 *            Problem and solution key.
+	 * 
+	 * @return Segment map.
+	 */
+	private Map<Key, Result> segment(Key key) {
+		int hash = key.hashCode();
+		return segments.get((hash ^ (hash >>> 16)) & (segments.size() - 1));
+	}
+
+	/**
+	 * Cached fitness lookup.
+	 * 
+	 * @param key
+	 *            Problem and solution key.
+	 * 
+	 * @return Fitness value with its evaluation or null if it is not in the
+	 *         cache.
+	 */
+	Result get(Key key) {
+		Map<Key, Result> segment = segment(key);
+		Result result;
+		synchronized (segment) {
+			result = segment.get(key);
+		}
+
+		if (result == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Store fitness value.
+	 * 
+	 * @param key
+	 *            Problem and solution key.
+	 * @param fitness
+	 *            Fitness value.
+	 * @param evaluation
+	 *            Per pipe aggregates, null in the raster mode.
+	 */
+	void put(Key key, double fitness, AnalyticFitness.Evaluation evaluation) {
+		Result result = new Result(fitness, evaluation);
+		Map<Key, Result> segment = segment(key);
+		synchronized (segment) {
+			segment.put(key, result);
+		}
+	}
+
+	/**
+	 * Number of cached values.
+	 * 
+	 * @return Cache size.
+	 */
+	public int size() {
+		int size = 0;
+		for (Map<Key, Result> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Maximum number of cached values.
+	 * 
+	 * @return Cache capacity.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Number of successful lookups.
+	 * 
+	 * @return Hits counter.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Number of unsuccessful lookups.
+	 * 
+	 * @return Misses counter.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+}
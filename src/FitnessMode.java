@@ -0,0 +1,18 @@
+/**
+ * Ways of fitness value calculation.
+ * 
+ * @author Todor Balabanov
+ */
+public enum FitnessMode {
+
+	/**
+	 * Sub-polygons are drawn in an image and the pixels are counted.
+	 */
+	RASTER,
+
+	/**
+	 * Areas and distances are calculated directly from the vertices.
+	 */
+	ANALYTIC;
+
+}
@@ -0,0 +1,709 @@
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Flooding over a flat array of pixel labels. Each pixel keeps the index of
+ * the pipe which owns it or a sentinel value. Frontier pixels are packed in
+ * integers as y * width + x, so the flooding loop does not allocate objects
+ * and does not touch the image. Each pipe grows with its closest candidate to
+ * the pipe side.
+ *
+ * @author Todor Balabanov
+ */
+public class FloodEngine {
+
+	/**
+	 * Label of pixels outside of the global polygon.
+	 */
+	static final int OUTSIDE = -2;
+
+	/**
+	 * Label of pixels inside of the global polygon without owner.
+	 */
+	static final int UNCLAIMED = -1;
+
+	/**
+	 * Atomic access to the labels array in concurrent flooding.
+	 */
+	private static final VarHandle LABELS = MethodHandles.arrayElementVarHandle(int[].class);
+
+	/**
+	 * Width of the canvas.
+	 */
+	private final int width;
+
+	/**
+	 * Height of the canvas.
+	 */
+	private final int height;
+
+	/**
+	 * Pixel labels in rows.
+	 */
+	private final int[] labels;
+
+	/**
+	 * Pipes description.
+	 */
+	private final List<Pipe> pipes;
+
+	/**
+	 * Candidate pixels of each pipe, they are created only when the flooding
+	 * starts, because each of them is as big as the canvas.
+	 */
+	private final Frontier[] frontiers;
+
+	/**
+	 * Number of pixels owned by each pipe.
+	 */
+	private final int[] occupied;
+
+	/**
+	 * Bounding box of the pixels owned by each pipe, four values per pipe
+	 * (left, top, right, bottom).
+	 */
+	private final int[] boxes;
+
+	/**
+	 * Pipe sides and locations in pixels, three points per pipe (vertex1,
+	 * vertex2, location).
+	 */
+	private final Point[] points;
+
+	/**
+	 * Constructor from an image where black pixels are the free area, white
+	 * pixels are outside of the polygon and the colors of the pipes mark
+	 * already owned pixels.
+	 *
+	 * @param image
+	 *            Initial state of the canvas.
+	 * @param pipes
+	 *            Pipes description.
+	 */
+	public FloodEngine(BufferedImage image, List<Pipe> pipes) {
+		this(image, pipes, new Viewport(0, 0, image.getWidth(), image.getHeight(), 1));
+	}
+
+	/**
+	 * Constructor from an image which covers a viewport of the polygon.
+	 *
+	 * @param image
+	 *            Initial state of the canvas.
+	 * @param pipes
+	 *            Pipes description.
+	 * @param viewport
+	 *            Mapping of the pipes coordinates to pixels.
+	 */
+	public FloodEngine(BufferedImage image, List<Pipe> pipes, Viewport viewport) {
+		super();
+
+		this.width = image.getWidth();
+		this.height = image.getHeight();
+		this.pipes = pipes;
+		this.labels = new int[width * height];
+		this.frontiers = new Frontier[pipes.size()];
+		this.occupied = new int[pipes.size()];
+		this.boxes = new int[4 * pipes.size()];
+		this.points = new Point[3 * pipes.size()];
+		for (int k = 0; k < pipes.size(); k++) {
+			boxes[4 * k] = width;
+			boxes[4 * k + 1] = height;
+			boxes[4 * k + 2] = -1;
+			boxes[4 * k + 3] = -1;
+		}
+
+		/*
+		 * Colors are translated to labels only once.
+		 */
+		int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+		for (int p = 0; p < pixels.length; p++) {
+			labels[p] = OUTSIDE;
+			if (pixels[p] == Color.BLACK.getRGB()) {
+				labels[p] = UNCLAIMED;
+			}
+			for (int k = 0; k < pipes.size(); k++) {
+				if (pixels[p] == pipes.get(k).color.getRGB()) {
+					own(k, p % width, p / width);
+				}
+			}
+		}
+
+		for (int k = 0; k < pipes.size(); k++) {
+			points[3 * k] = viewport.pixel(pipes.get(k).vertex1);
+			points[3 * k + 1] = viewport.pixel(pipes.get(k).vertex2);
+			points[3 * k + 2] = viewport.pixel(pipes.get(k).location);
+			occupied[k] = pipes.get(k).occupied;
+		}
+	}
+
+	/**
+	 * Pack pixel coordinates.
+	 *
+	 * @param x
+	 *            Column.
+	 * @param y
+	 *            Row.
+	 *
+	 * @return Index in the labels array.
+	 */
+	private int pack(int x, int y) {
+		return y * width + x;
+	}
+
+	/**
+	 * Add unclaimed neighbors of a pixel as candidates.
+	 *
+	 * @param k
+	 *            Index of the pipe.
+	 * @param x
+	 *            Column.
+	 * @param y
+	 *            Row.
+	 */
+	private void neighbors(int k, int x, int y) {
+		if (x > 0 && labels[pack(x - 1, y)] == UNCLAIMED) {
+			frontiers[k].offer(pack(x - 1, y));
+		}
+		if (y > 0 && labels[pack(x, y - 1)] == UNCLAIMED) {
+			frontiers[k].offer(pack(x, y - 1));
+		}
+		if (x < width - 1 && labels[pack(x + 1, y)] == UNCLAIMED) {
+			frontiers[k].offer(pack(x + 1, y));
+		}
+		if (y < height - 1 && labels[pack(x, y + 1)] == UNCLAIMED) {
+			frontiers[k].offer(pack(x, y + 1));
+		}
+	}
+
+	/**
+	 * Give pixel to a pipe and track the pipe bounding box.
+	 *
+	 * @param k
+	 *            Index of the pipe.
+	 * @param x
+	 *            Column.
+	 * @param y
+	 *            Row.
+	 */
+	private void own(int k, int x, int y) {
+		labels[pack(x, y)] = k;
+		track(k, x, y);
+	}
+
+	/**
+	 * Extend the bounding box of a pipe area.
+	 *
+	 * @param k
+	 *            Index of the pipe.
+	 * @param x
+	 *            Column.
+	 * @param y
+	 *            Row.
+	 */
+	private void track(int k, int x, int y) {
+		boxes[4 * k] = Math.min(boxes[4 * k], x);
+		boxes[4 * k + 1] = Math.min(boxes[4 * k + 1], y);
+		boxes[4 * k + 2] = Math.max(boxes[4 * k + 2], x);
+		boxes[4 * k + 3] = Math.max(boxes[4 * k + 3], y);
+	}
+
+	/**
+	 * Add more candidates on the boundaries. Only the bounding box of the
+	 * pipe area is scanned.
+	 *
+	 * @param k
+	 *            Index of the pipe to be checked.
+	 */
+	private void boundaries(int k) {
+		for (int y = boxes[4 * k + 1]; y <= boxes[4 * k + 3]; y++) {
+			for (int x = boxes[4 * k]; x <= boxes[4 * k + 2]; x++) {
+				/*
+				 * It should be part of this pipe area.
+				 */
+				if (labels[pack(x, y)] != k) {
+					continue;
+				}
+
+				/*
+				 * Check for empty neighbors.
+				 */
+				neighbors(k, x, y);
+			}
+		}
+	}
+
+	/**
+	 * Mark pipe side with the pipe label.
+	 *
+	 * @param k
+	 *            Index of the pipe.
+	 */
+	private void side(int k) {
+		Point a = points[3 * k];
+		Point b = points[3 * k + 1];
+
+		/*
+		 * Bresenham line.
+		 */
+		int x = a.x, y = a.y;
+		int dx = Math.abs(b.x - a.x), dy = -Math.abs(b.y - a.y);
+		int sx = a.x < b.x ? 1 : -1, sy = a.y < b.y ? 1 : -1;
+		for (int error = dx + dy;;) {
+			if (x >= 0 && y >= 0 && x < width && y < height) {
+				own(k, x, y);
+			}
+			if (x == b.x && y == b.y) {
+				break;
+			}
+
+			int e2 = 2 * error;
+			if (e2 >= dy) {
+				error += dy;
+				x += sx;
+			}
+			if (e2 <= dx) {
+				error += dx;
+				y += sy;
+			}
+		}
+	}
+
+	/**
+	 * Do flooding step.
+	 *
+	 * @return True if a step was done, false otherwise.
+	 */
+	public boolean step() {
+		boolean result = false;
+
+		for (int k = 0; k < pipes.size(); k++) {
+			/*
+			 * Do nothing if the share of this pipe is complete.
+			 */
+			if (occupied[k] >= pipes.get(k).area) {
+				continue;
+			}
+
+			/*
+			 * The frontier holds every free pixel on the pipe boundary, so
+			 * the pipe can not grow any more if it is empty or not started.
+			 */
+			if (frontiers[k] == null || frontiers[k].size() <= 0) {
+				continue;
+			}
+
+			/*
+			 * The closest pixel to the side is flooded.
+			 */
+			int next = frontiers[k].poll();
+
+			/*
+			 * Change owner only for unused pixels and add their neighbors
+			 * for next flooding steps. Pixels of other pipes do not extend
+			 * this pipe.
+			 */
+			if (labels[next] == UNCLAIMED) {
+				own(k, next % width, next / width);
+				occupied[k]++;
+				neighbors(k, next % width, next / width);
+			}
+
+			/*
+			 * Step was done.
+			 */
+			result = true;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Draw the pipe sides and collect the initial frontiers. The boundaries
+	 * are scanned only once here. After that the frontiers are updated
+	 * incrementally with the neighbors of each flooded pixel, which keeps all
+	 * free pixels on the pipe boundary in the frontier.
+	 */
+	private void start() {
+		for (int k = 0; k < pipes.size(); k++) {
+			if (frontiers[k] == null) {
+				frontiers[k] = new Frontier(width, height, points[3 * k], points[3 * k + 1], points[3 * k + 2]);
+			}
+			side(k);
+		}
+
+		for (int k = 0; k < pipes.size(); k++) {
+			boundaries(k);
+
+			/*
+			 * Start flooding from initial location.
+			 */
+			Point location = points[3 * k + 2];
+			if (location.x >= 0 && location.y >= 0 && location.x < width && location.y < height) {
+				frontiers[k].offer(pack(location.x, location.y));
+			}
+		}
+	}
+
+	/**
+	 * Report flooded areas in the pipes structure.
+	 */
+	private void finish() {
+		for (int k = 0; k < pipes.size(); k++) {
+			pipes.get(k).occupied = occupied[k];
+		}
+	}
+
+	/**
+	 * Flood the polygon from the pipe sides until the shares are complete or
+	 * there is no more free space.
+	 */
+	public void flood() {
+		start();
+
+		if (Telemetry.floods() == false) {
+			while (step() == true) {
+			}
+		} else {
+			long start = System.nanoTime();
+			long steps = 0;
+			long largest = 0;
+			int[] sizes = new int[pipes.size()];
+			for (; step() == true; steps++) {
+				if (steps % Telemetry.FRONTIER_SAMPLING == 0) {
+					long total = 0;
+					for (int k = 0; k < sizes.length; k++) {
+						sizes[k] = frontiers[k].size();
+						total += sizes[k];
+					}
+					largest = Math.max(largest, total);
+					Telemetry.frontiers(steps, sizes);
+				}
+			}
+			Telemetry.flood(start, steps, Arrays.stream(occupied).asLongStream().sum(), largest);
+		}
+
+		finish();
+	}
+
+	/**
+	 * Concurrent flooding where all pipes grow at the same time. Pixels are
+	 * claimed with compare-and-set on the labels array. Each pipe counts only
+	 * its own pixels, so the shares are respected exactly.
+	 *
+	 * In deterministic mode the pipes grow in rounds. In each round every
+	 * pipe proposes its closest candidates, conflicts are resolved in favor
+	 * of the pipe with the smaller index and only then the winners are
+	 * flooded. The result does not depend on the threads scheduling.
+	 *
+	 * @param pool
+	 *            Threads for the pipes.
+	 * @param deterministic
+	 *            True for the same result on each run, false for the
+	 *            fastest flooding.
+	 * @param batch
+	 *            Number of pixels proposed by a pipe in each round of the
+	 *            deterministic mode.
+	 */
+	public void flood(ForkJoinPool pool, boolean deterministic, int batch) {
+		boolean measured = Telemetry.floods();
+		long start = measured ? System.nanoTime() : 0;
+		long rounds = 0;
+		start();
+
+		if (deterministic == true) {
+			int[] proposals = new int[labels.length];
+			Arrays.fill(proposals, Integer.MAX_VALUE);
+			int[][] polled = new int[pipes.size()][batch];
+			int[] counts = new int[pipes.size()];
+
+			boolean active = true;
+			while (active == true) {
+				run(pool, k -> propose(k, proposals, polled[k], counts));
+				run(pool, k -> settle(k, proposals, polled[k], counts[k]));
+				run(pool, k -> expand(k, proposals, polled[k], counts[k]));
+				rounds++;
+
+				active = false;
+				for (int k = 0; k < pipes.size(); k++) {
+					active |= counts[k] > 0;
+				}
+			}
+		} else {
+			run(pool, k -> grow(k));
+		}
+
+		/*
+		 * Concurrent flooding reports rounds instead of steps.
+		 */
+		if (measured == true) {
+			Telemetry.flood(start, rounds, Arrays.stream(occupied).asLongStream().sum(), 0);
+		}
+
+		finish();
+	}
+
+	/**
+	 * Pipe task in concurrent flooding.
+	 */
+	private interface Task {
+
+		/**
+		 * Do the work for a single pipe.
+		 *
+		 * @param k
+		 *            Index of the pipe.
+		 */
+		void run(int k);
+	}
+
+	/**
+	 * Run a task for all pipes and wait for all of them.
+	 *
+	 * @param pool
+	 *            Threads for the pipes.
+	 * @param task
+	 *            Work for a single pipe.
+	 */
+	private void run(ForkJoinPool pool, Task task) {
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int k = 0; k < pipes.size(); k++) {
+			final int index = k;
+			tasks.add(() -> {
+				task.run(index);
+				return null;
+			});
+		}
+
+		pool.invokeAll(tasks);
+	}
+
+	/**
+	 * Free running growth of a single pipe.
+	 *
+	 * @param k
+	 *            Index of the pipe.
+	 */
+	private void grow(int k) {
+		while (occupied[k] < pipes.get(k).area && frontiers[k].size() > 0) {
+			int next = frontiers[k].poll();
+
+			/*
+			 * Other pipes can take the pixel at the same time, only the
+			 * claimed pixels extend this pipe.
+			 */
+			if (LABELS.compareAndSet(labels, next, UNCLAIMED, k) == true) {
+				track(k, next % width, next / width);
+				occupied[k]++;
+				neighbors(k, next % width, next / width);
+			}
+		}
+	}
+
+	/**
+	 * First phase of a deterministic round. The closest candidates are
+	 * proposed, the smallest pipe index wins each pixel.
+	 *
+	 * @param k
+	 *            Index of the pipe.
+	 * @param proposals
+	 *            The best proposal for each pixel.
+	 * @param polled
+	 *            Output for the proposed pixels.
+	 * @param counts
+	 *            Output for the number of proposed pixels.
+	 */
+	private void propose(int k, int[] proposals, int[] polled, int[] counts) {
+		int count = 0;
+		int limit = Math.min(polled.length, pipes.get(k).area - occupied[k]);
+		while (count < limit && frontiers[k].size() > 0) {
+			int next = frontiers[k].poll();
+			if (labels[next] != UNCLAIMED) {
+				continue;
+			}
+
+			int current = (int) LABELS.getVolatile(proposals, next);
+			while (k < current && LABELS.compareAndSet(proposals, next, current, k) == false) {
+				current = (int) LABELS.getVolatile(proposals, next);
+			}
+			polled[count++] = next;
+		}
+		counts[k] = count;
+	}
+
+	/**
+	 * Second phase of a deterministic round. Won pixels are flooded, lost
+	 * pixels already belong to other pipes.
+	 *
+	 * @param k
+	 *            Index of the pipe.
+	 * @param proposals
+	 *            The best proposal for each pixel.
+	 * @param polled
+	 *            Proposed pixels.
+	 * @param count
+	 *            Number of proposed pixels.
+	 */
+	private void settle(int k, int[] proposals, int[] polled, int count) {
+		for (int i = 0; i < count; i++) {
+			int next = polled[i];
+			if (proposals[next] != k) {
+				continue;
+			}
+
+			own(k, next % width, next / width);
+			occupied[k]++;
+		}
+	}
+
+	/**
+	 * Third phase of a deterministic round. Proposals are cleared and the
+	 * neighbors of the won pixels become candidates.
+	 *
+	 * @param k
+	 *            Index of the pipe.
+	 * @param proposals
+	 *            The best proposal for each pixel.
+	 * @param polled
+	 *            Proposed pixels.
+	 * @param count
+	 *            Number of proposed pixels.
+	 */
+	private void expand(int k, int[] proposals, int[] polled, int count) {
+		for (int i = 0; i < count; i++) {
+			int next = polled[i];
+			proposals[next] = Integer.MAX_VALUE;
+
+			if (labels[next] == k) {
+				neighbors(k, next % width, next / width);
+			}
+		}
+	}
+
+	/**
+	 * Transform the labels in squares. Each tile takes the most presented
+	 * label of its pixels (free pixels count as well, pixels outside of the
+	 * polygon do not count and are not changed). Rows of tiles are processed
+	 * concurrently, they do not share pixels. The flooding should not
+	 * continue after this transformation.
+	 *
+	 * @param pool
+	 *            Threads for the rows of tiles.
+	 * @param side
+	 *            Square side size.
+	 */
+	public void squareization(ForkJoinPool pool, int side) {
+		if (side <= 0) {
+			throw new IllegalArgumentException("Square side should be positive.");
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int top = 0; top < height; top += side) {
+			final int row = top;
+			tasks.add(() -> {
+				squareization(row, side);
+				return null;
+			});
+		}
+		pool.invokeAll(tasks);
+
+		/*
+		 * Occupied areas are changed.
+		 */
+		Arrays.fill(occupied, 0);
+		for (int label : labels) {
+			if (label >= 0) {
+				occupied[label]++;
+			}
+		}
+		finish();
+	}
+
+	/**
+	 * Transform single row of tiles.
+	 *
+	 * @param top
+	 *            First pixel row of the tiles.
+	 * @param side
+	 *            Square side size.
+	 */
+	private void squareization(int top, int side) {
+		int bottom = Math.min(height, top + side);
+
+		/*
+		 * Free pixels are counted at index zero and the pipes after it.
+		 */
+		int[] counters = new int[pipes.size() + 1];
+
+		for (int left = 0; left < width; left += side) {
+			int right = Math.min(width, left + side);
+
+			/*
+			 * Count all labels.
+			 */
+			Arrays.fill(counters, 0);
+			for (int y = top; y < bottom; y++) {
+				for (int p = pack(left, y), end = pack(right, y); p < end; p++) {
+					if (labels[p] != OUTSIDE) {
+						counters[labels[p] + 1]++;
+					}
+				}
+			}
+
+			/*
+			 * Find the most presented label.
+			 */
+			int max = 0;
+			int label = OUTSIDE;
+			for (int i = 0; i < counters.length; i++) {
+				if (counters[i] > max) {
+					max = counters[i];
+					label = i - 1;
+				}
+			}
+			if (max == 0) {
+				continue;
+			}
+
+			/*
+			 * Occupy the square.
+			 */
+			for (int y = top; y < bottom; y++) {
+				for (int p = pack(left, y), end = pack(right, y); p < end; p++) {
+					if (labels[p] != OUTSIDE) {
+						labels[p] = label;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Draw the labels in an image with the same size as the canvas.
+	 *
+	 * @param image
+	 *            Output image.
+	 */
+	public void paint(BufferedImage image) {
+		int[] pixels = new int[labels.length];
+		for (int p = 0; p < labels.length; p++) {
+			if (labels[p] == OUTSIDE) {
+				pixels[p] = Color.WHITE.getRGB();
+			} else if (labels[p] == UNCLAIMED) {
+				pixels[p] = Color.BLACK.getRGB();
+			} else {
+				pixels[p] = pipes.get(labels[p]).color.getRGB();
+			}
+		}
+
+		image.setRGB(0, 0, width, height, pixels, 0, width);
+	}
+
+}
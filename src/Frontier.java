@@ -0,0 +1,238 @@
+import java.awt.Point;
+import java.util.Arrays;
+
+/**
+ * Flood frontier of a single pipe. Candidate pixels are ordered by their
+ * distance to the pipe side, ties are broken by the distance to the pipe
+ * location. Pixels are kept in buckets by whole distance to the side and each
+ * bucket is a binary heap, so the closest candidate is found exactly without
+ * sampling. Membership is tracked in a bit set over the canvas, which gives
+ * constant time duplicates check and removal (removed pixels are skipped
+ * lazily when they reach the top of their heap).
+ *
+ * @author Todor Balabanov
+ */
+class Frontier {
+
+	/**
+	 * Width of the canvas.
+	 */
+	private final int width;
+
+	/**
+	 * Side line as integer coefficients a*x + b*y + c.
+	 */
+	private final long a, b, c;
+
+	/**
+	 * Length of the side.
+	 */
+	private final double length;
+
+	/**
+	 * Number of low key bits for the squared distance to the location. The
+	 * high bits hold offsets up to the side length, the distance is clamped
+	 * to the rest, so the key does not overflow.
+	 */
+	private final int shift;
+
+	/**
+	 * Location of the pipe.
+	 */
+	private final int lx, ly;
+
+	/**
+	 * Membership bits of the pixels.
+	 */
+	private final long[] members;
+
+	/**
+	 * Heap keys in each bucket, distance to the side above the bucket start in
+	 * the high bits and squared distance to the location in the low bits.
+	 */
+	private long[][] keys;
+
+	/**
+	 * Packed pixels in each bucket.
+	 */
+	private int[][] pixels;
+
+	/**
+	 * Number of heap entries in each bucket.
+	 */
+	private int[] sizes;
+
+	/**
+	 * Lowest bucket which can be non-empty.
+	 */
+	private int lowest;
+
+	/**
+	 * Number of member pixels.
+	 */
+	private int size;
+
+	/**
+	 * Constructor with all parameters.
+	 *
+	 * @param width
+	 *            Width of the canvas.
+	 * @param height
+	 *            Height of the canvas.
+	 * @param vertex1
+	 *            First end of the pipe side in pixels.
+	 * @param vertex2
+	 *            Second end of the pipe side in pixels.
+	 * @param location
+	 *            Location of the pipe in pixels.
+	 */
+	Frontier(int width, int height, Point vertex1, Point vertex2, Point location) {
+		this.width = width;
+		this.a = vertex2.y - vertex1.y;
+		this.b = vertex1.x - vertex2.x;
+		this.c = (long) vertex2.x * vertex1.y - (long) vertex1.x * vertex2.y;
+		this.length = Math.max(1, Math.sqrt(a * a + b * b));
+		this.shift = Long.numberOfLeadingZeros((long) Math.ceil(length) + 1) - 1;
+		this.lx = location.x;
+		this.ly = location.y;
+		this.members = new long[(width * height + 63) / 64];
+
+		int buckets = (int) Math.ceil(Math.sqrt((double) width * width + (double) height * height)) + 2;
+		this.keys = new long[buckets][];
+		this.pixels = new int[buckets][];
+		this.sizes = new int[buckets];
+		this.lowest = buckets;
+		this.size = 0;
+	}
+
+	/**
+	 * Number of candidate pixels.
+	 *
+	 * @return Frontier size.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Membership check.
+	 *
+	 * @param pixel
+	 *            Packed pixel coordinates.
+	 *
+	 * @return True if the pixel is a candidate, false otherwise.
+	 */
+	boolean contains(int pixel) {
+		return (members[pixel >>> 6] & (1L << pixel)) != 0;
+	}
+
+	/**
+	 * Add candidate pixel. Duplicates are ignored.
+	 *
+	 * @param pixel
+	 *            Packed pixel coordinates.
+	 */
+	void offer(int pixel) {
+		if (contains(pixel) == true) {
+			return;
+		}
+		members[pixel >>> 6] |= 1L << pixel;
+		size++;
+
+		int x = pixel % width;
+		int y = pixel / width;
+		long cross = Math.abs(a * x + b * y + c);
+		long dx = x - lx;
+		long dy = y - ly;
+		int bucket = Math.min(sizes.length - 1, (int) (cross / length));
+		long offset = Math.min((long) Math.ceil(length) + 1, Math.max(0, cross - (long) (bucket * length)));
+		long key = (offset << shift) | Math.min((1L << shift) - 1, dx * dx + dy * dy);
+
+		if (keys[bucket] == null) {
+			keys[bucket] = new long[16];
+			pixels[bucket] = new int[16];
+		} else if (sizes[bucket] == keys[bucket].length) {
+			keys[bucket] = Arrays.copyOf(keys[bucket], 2 * sizes[bucket]);
+			pixels[bucket] = Arrays.copyOf(pixels[bucket], 2 * sizes[bucket]);
+		}
+
+		/*
+		 * Sift up.
+		 */
+		long[] heap = keys[bucket];
+		int[] values = pixels[bucket];
+		int i = sizes[bucket]++;
+		while (i > 0 && heap[(i - 1) / 2] > key) {
+			heap[i] = heap[(i - 1) / 2];
+			values[i] = values[(i - 1) / 2];
+			i = (i - 1) / 2;
+		}
+		heap[i] = key;
+		values[i] = pixel;
+
+		lowest = Math.min(lowest, bucket);
+	}
+
+	/**
+	 * Remove candidate pixel.
+	 *
+	 * @param pixel
+	 *            Packed pixel coordinates.
+	 */
+	void remove(int pixel) {
+		if (contains(pixel) == false) {
+			return;
+		}
+		members[pixel >>> 6] &= ~(1L << pixel);
+		size--;
+	}
+
+	/**
+	 * Take the closest candidate to the pipe side.
+	 *
+	 * @return Packed pixel coordinates or -1 if the frontier is empty.
+	 */
+	int poll() {
+		while (size > 0) {
+			while (sizes[lowest] == 0) {
+				lowest++;
+			}
+
+			/*
+			 * Sift down.
+			 */
+			long[] heap = keys[lowest];
+			int[] values = pixels[lowest];
+			int result = values[0];
+			int n = --sizes[lowest];
+			long key = heap[n];
+			int value = values[n];
+			int i = 0;
+			while (2 * i + 1 < n) {
+				int child = 2 * i + 1;
+				if (child + 1 < n && heap[child + 1] < heap[child]) {
+					child++;
+				}
+				if (heap[child] >= key) {
+					break;
+				}
+				heap[i] = heap[child];
+				values[i] = values[child];
+				i = child;
+			}
+			heap[i] = key;
+			values[i] = value;
+
+			/*
+			 * Lazily removed pixels are skipped.
+			 */
+			if (contains(result) == true) {
+				remove(result);
+				return result;
+			}
+		}
+
+		return -1;
+	}
+
+}
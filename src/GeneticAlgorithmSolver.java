@@ -1,15 +1,19 @@
 import java.awt.Point;
 import java.awt.Polygon;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.math3.genetics.Chromosome;
 import org.apache.commons.math3.genetics.ElitisticListPopulation;
-import org.apache.commons.math3.genetics.FixedElapsedTime;
-import org.apache.commons.math3.genetics.GeneticAlgorithm;
+import org.apache.commons.math3.genetics.MutationPolicy;
 import org.apache.commons.math3.genetics.Population;
+import org.apache.commons.math3.genetics.StoppingCondition;
 import org.apache.commons.math3.genetics.TournamentSelection;
 import org.apache.commons.math3.genetics.UniformCrossover;
 
@@ -56,7 +60,54 @@ public class GeneticAlgorithmSolver {
 	private long optimizationTimeout;
 
 	/**
-	 * Constructor with all parameters.
+	 * Number of threads for fitness evaluation.
+	 */
+	private int parallelism;
+
+	/**
+	 * Number of islands, each with its own population. A single island is
+	 * evolved with the commons-math algorithm.
+	 */
+	private int islands;
+
+	/**
+	 * Mutation policy of the chromosomes.
+	 */
+	private MutationPolicy mutation;
+
+	/**
+	 * Number of generations between two migrations of the islands.
+	 */
+	private static final int MIGRATION_INTERVAL = 10;
+
+	/**
+	 * Number of random walk steps before restart in the initialization.
+	 */
+	private static final int RANDOM_WALK_LIMIT = 1000;
+
+	/**
+	 * Part of a warm started population which is random for diversity.
+	 */
+	private static final double WARM_START_RANDOM = 0.1;
+
+	/**
+	 * Maximal number of mutations of a perturbed warm start solution.
+	 */
+	private static final int WARM_START_PERTURBATION = 5;
+
+	/**
+	 * Limit of the area correction factor of the stretched warm start
+	 * solutions.
+	 */
+	private static final double WARM_START_STRETCH = 2;
+
+	/**
+	 * Solutions of the last final population from the best to the worst.
+	 */
+	private List<List<List<Point>>> solutions = new ArrayList<List<List<Point>>>();
+
+	/**
+	 * Constructor with fitness evaluation on all available processors.
 	 * 
 	 * @param populationSize
 	 *            Size of the population.
@@ -73,6 +124,85 @@ public class GeneticAlgorithmSolver {
 	 */
 	public GeneticAlgorithmSolver(int populationSize, double crossoverRate, double mutationRate, int tournamentArity,
 			double elitismRate, long optimizationTimeout) {
+		this(populationSize, crossoverRate, mutationRate, tournamentArity, elitismRate, optimizationTimeout,
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor with all parameters.
+	 * 
+	 * @param populationSize
+	 *            Size of the population.
+	 * @param crossoverRate
+	 *            Crossover rate.
+	 * @param mutationRate
+	 *            Mutation rate.
+	 * @param tournamentArity
+	 *            Tournament arity.
+	 * @param elitismRate
+	 *            Size of the elite.
+	 * @param optimizationTimeout
+	 *            Optimization timeout in seconds.
+	 * @param parallelism
+	 *            Number of threads for fitness evaluation.
+	 */
+	public GeneticAlgorithmSolver(int populationSize, double crossoverRate, double mutationRate, int tournamentArity,
+			double elitismRate, long optimizationTimeout, int parallelism) {
+		this(populationSize, crossoverRate, mutationRate, tournamentArity, elitismRate, optimizationTimeout,
+				parallelism, 1);
+	}
+
+	/**
+	 * Constructor with all parameters.
+	 * 
+	 * @param populationSize
+	 *            Size of the population of each island.
+	 * @param crossoverRate
+	 *            Crossover rate.
+	 * @param mutationRate
+	 *            Mutation rate.
+	 * @param tournamentArity
+	 *            Tournament arity.
+	 * @param elitismRate
+	 *            Size of the elite.
+	 * @param optimizationTimeout
+	 *            Optimization timeout in seconds.
+	 * @param parallelism
+	 *            Number of threads for fitness evaluation or for the islands.
+	 * @param islands
+	 *            Number of islands.
+	 */
+	public GeneticAlgorithmSolver(int populationSize, double crossoverRate, double mutationRate, int tournamentArity,
+			double elitismRate, long optimizationTimeout, int parallelism, int islands) {
+		this(populationSize, crossoverRate, mutationRate, tournamentArity, elitismRate, optimizationTimeout,
+				parallelism, islands, new RandomVertexMutation());
+	}
+
+	/**
+	 * Constructor with all parameters.
+	 * 
+	 * @param populationSize
+	 *            Size of the population of each island.
+	 * @param crossoverRate
+	 *            Crossover rate.
+	 * @param mutationRate
+	 *            Mutation rate.
+	 * @param tournamentArity
+	 *            Tournament arity.
+	 * @param elitismRate
+	 *            Size of the elite.
+	 * @param optimizationTimeout
+	 *            Optimization timeout in seconds.
+	 * @param parallelism
+	 *            Number of threads for fitness evaluation or for the islands.
+	 * @param islands
+	 *            Number of islands.
+	 * @param mutation
+	 *            Mutation policy, for example {@link AdaptiveVertexMutation}
+	 *            instead of the default {@link RandomVertexMutation}.
+	 */
+	public GeneticAlgorithmSolver(int populationSize, double crossoverRate, double mutationRate, int tournamentArity,
+			double elitismRate, long optimizationTimeout, int parallelism, int islands, MutationPolicy mutation) {
 		super();
 
 		this.populationSize = populationSize;
@@ -81,10 +211,13 @@ public class GeneticAlgorithmSolver {
 		this.tournamentArity = tournamentArity;
 		this.elitismRate = elitismRate;
 		this.optimizationTimeout = optimizationTimeout;
+		this.parallelism = parallelism;
+		this.islands = Math.max(1, islands);
+		this.mutation = mutation;
 	}
 
 	/**
-	 * Search for solution.
+	 * Search for solution. The problem context is built once for the solve.
 	 * 
 	 * @param pipes
 	 *            Pipes description.
@@ -92,13 +225,365 @@ public class GeneticAlgorithmSolver {
 	 *            Global polygon.
 	 * 
 	 * @return Best found solution.
+	 * 
+	 * @deprecated Use {@link #solve(Problem)}.
 	 */
+	@Deprecated
 	public List<List<Point>> solve(Polygon polygon, List<Pipe> pipes) {
+		return solve(new Problem(polygon, pipes));
+	}
+
+	/**
+	 * Search for solution.
+	 * 
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * 
+	 * @return Best found solution.
+	 */
+	public List<List<Point>> solve(Problem problem) {
+		return solve(problem, (StoppingCondition) null);
+	}
+
+	/**
+	 * Search for solution until the optimization timeout or until the
+	 * stopping condition, whichever is first.
+	 * 
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param stop
+	 *            Additional stopping condition, null for none.
+	 * 
+	 * @return Best found solution.
+	 */
+	public List<List<Point>> solve(Problem problem, StoppingCondition stop) {
+		Population optimized = evolve(problem, random(problem, islands * populationSize),
+				limit(1000L * optimizationTimeout, stop));
+		return finish(optimized);
+	}
+
+	/**
+	 * Search for solution of a problem with the same polygon as a solved one,
+	 * usually with changed shares. The initial population is seeded with the
+	 * prior solutions, with their variants stretched towards the new shares
+	 * and with perturbed copies of both.
+	 * 
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param prior
+	 *            Prior solutions from the best to the worst, for example
+	 *            from {@link #getSolutions()} after the previous solve.
+	 * @param stop
+	 *            Additional stopping condition, null for none.
+	 * 
+	 * @return Best found solution.
+	 */
+	public List<List<Point>> solve(Problem problem, List<List<List<Point>>> prior, StoppingCondition stop) {
+		if (prior.isEmpty() == true) {
+			return solve(problem, stop);
+		}
+
+		Population optimized = evolve(problem, seeded(problem, prior, islands * populationSize, mutation),
+				limit(1000L * optimizationTimeout, stop));
+		return finish(optimized);
+	}
+
+	/**
+	 * Search for solution with a persistent solution store. A stored solution
+	 * of the same problem is returned without evolution. Otherwise stored
+	 * solutions of the same polygon with other shares are used for warm
+	 * start and the found solution is stored.
+	 * 
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param store
+	 *            Solution store.
+	 * @param factors
+	 *            Downscaling factors of the coarse-to-fine levels for a cold
+	 *            start, null for a single level.
+	 * @param split
+	 *            Part of the optimization timeout for each level.
+	 * @param stop
+	 *            Additional stopping condition, null for none.
+	 * 
+	 * @return Best found solution.
+	 * 
+	 * @throws IOException
+	 *             When the store can not be used.
+	 */
+	public List<List<Point>> solve(Problem problem, SolutionStore store, int[] factors, double[] split,
+			StoppingCondition stop) throws IOException {
+		SolutionStore.Entry hit = store.get(problem);
+		if (hit != null) {
+			solutions = Collections.singletonList(hit.getSolution());
+			return hit.getSolution();
+		}
+
+		List<List<List<Point>>> prior = store.near(problem, populationSize);
+		List<List<Point>> solution;
+		if (prior.isEmpty() == false) {
+			solution = solve(problem, prior, stop);
+		} else if (factors != null) {
+			solution = solve(problem, factors, split, stop);
+		} else {
+			solution = solve(problem, stop);
+		}
+
+		PolygonListChromosome best = new PolygonListChromosome(solution, problem);
+		store.put(problem, solution, best.getFitness(), best.areaErrors());
+
+		return solution;
+	}
+
+	/**
+	 * Solutions of the last final population, to be used for warm start.
+	 * 
+	 * @return Solutions from the best to the worst.
+	 */
+	public List<List<List<Point>>> getSolutions() {
+		return solutions;
+	}
+
+	/**
+	 * Coarse-to-fine search for solution. The population is evolved on
+	 * downscaled versions of the problem first and after each level it is
+	 * upscaled to the next finer level. Levels at which the polygon
+	 * degenerates are skipped.
+	 * 
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param factors
+	 *            Downscaling factors of the levels in decreasing order, the
+	 *            last one is usually 1 (full resolution).
+	 * @param split
+	 *            Part of the optimization timeout for each level.
+	 * 
+	 * @return Best found solution.
+	 */
+	public List<List<Point>> solve(Problem problem, int[] factors, double[] split) {
+		return solve(problem, factors, split, null);
+	}
+
+	/**
+	 * Coarse-to-fine search for solution with additional stopping condition.
+	 * The condition is used only at full resolution, because the fitness
+	 * values of the coarse levels are not comparable with it.
+	 * 
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param factors
+	 *            Downscaling factors of the levels in decreasing order, the
+	 *            last one is usually 1 (full resolution).
+	 * @param split
+	 *            Part of the optimization timeout for each level.
+	 * @param stop
+	 *            Additional stopping condition, null for none.
+	 * 
+	 * @return Best found solution.
+	 */
+	public List<List<Point>> solve(Problem problem, int[] factors, double[] split, StoppingCondition stop) {
+		if (factors.length == 0 || factors.length != split.length) {
+			throw new IllegalArgumentException("Each resolution level should have a part of the time budget.");
+		}
+
+		double total = 0;
+		for (double value : split) {
+			total += value;
+		}
+
+		Problem previous = null;
+		Population population = null;
+		int factor = 1;
+		for (int level = 0; level < factors.length; level++) {
+			Problem current = (factors[level] == 1) ? problem : problem.downscale(factors[level]);
+			if (current == null) {
+				continue;
+			}
+
+			List<Chromosome> list = (population == null) ? random(current, islands * populationSize)
+					: upscale(population, previous, current, (double) factor / factors[level]);
+			population = evolve(current, list, limit(Math.round(1000D * optimizationTimeout * split[level] / total),
+					(current == problem) ? stop : null));
+
+			previous = current;
+			factor = factors[level];
+		}
+
+		/*
+		 * All levels degenerated.
+		 */
+		if (previous == null) {
+			return solve(problem, stop);
+		}
+
+		/*
+		 * The finest level can still be a coarse one.
+		 */
+		if (previous != problem) {
+			population = new ElitisticListPopulation(upscale(population, previous, problem, factor),
+					2 * islands * populationSize, elitismRate);
+		}
+
+		return finish(population);
+	}
+
+	/**
+	 * Keep the final population for warm start.
+	 * 
+	 * @param optimized
+	 *            Final population.
+	 * 
+	 * @return Best solution.
+	 */
+	private List<List<Point>> finish(Population optimized) {
+		List<Chromosome> list = new ArrayList<Chromosome>();
+		for (Chromosome chromosome : optimized) {
+			list.add(chromosome);
+		}
+		Collections.sort(list, Collections.reverseOrder());
+
+		List<List<List<Point>>> result = new ArrayList<List<List<Point>>>();
+		for (Chromosome chromosome : list) {
+			result.add(((PolygonListChromosome) chromosome).getRepresentation());
+		}
+		solutions = Collections.unmodifiableList(result);
+
+		return result.get(0);
+	}
+
+	/**
+	 * Initial solutions from prior solutions of the same polygon. The prior
+	 * solutions come first, followed by their stretched variants, perturbed
+	 * copies of both and a few random solutions.
+	 * 
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param prior
+	 *            Prior solutions from the best to the worst.
+	 * @param size
+	 *            Number of solutions.
+	 * @param mutation
+	 *            Mutation policy of the perturbed copies.
+	 * 
+	 * @return Chromosomes list.
+	 */
+	private static List<Chromosome> seeded(Problem problem, List<List<List<Point>>> prior, int size,
+			MutationPolicy mutation) {
+		List<Pipe> pipes = problem.getPipes();
+		for (List<List<Point>> solution : prior) {
+			if (solution.size() != pipes.size()) {
+				throw new IllegalArgumentException("Prior solution should have a sub-polygon for each pipe.");
+			}
+			for (int k = 0; k < pipes.size(); k++) {
+				List<Point> points = solution.get(k);
+				if (points.size() < 3 || points.get(0).equals(pipes.get(k).vertex1) == false
+						|| points.get(1).equals(pipes.get(k).vertex2) == false) {
+					throw new IllegalArgumentException("Prior solution should be for the same polygon.");
+				}
+			}
+		}
+
+		int randoms = (int) Math.round(size * WARM_START_RANDOM);
+		int seeds = Math.min(prior.size(), Math.max(1, (size - randoms) / 2));
+
+		List<Chromosome> list = new LinkedList<Chromosome>();
+		List<PolygonListChromosome> parents = new ArrayList<PolygonListChromosome>();
+		for (int i = 0; i < seeds && list.size() < size; i++) {
+			PolygonListChromosome chromosome = new PolygonListChromosome(prior.get(i), problem);
+			parents.add(chromosome);
+			list.add(chromosome);
+		}
+		for (int i = 0; i < seeds && list.size() < size - randoms; i++) {
+			PolygonListChromosome chromosome = new PolygonListChromosome(stretched(problem, prior.get(i)), problem);
+			parents.add(chromosome);
+			list.add(chromosome);
+		}
+
+		/*
+		 * Perturbed copies of the seeds with a few mutations each.
+		 */
+		for (int i = 0; list.size() < size - randoms; i++) {
+			Chromosome chromosome = parents.get(i % parents.size());
+			for (int m = 1 + PRNG.nextInt(WARM_START_PERTURBATION); m > 0; m--) {
+				chromosome = mutation.mutate(chromosome);
+			}
+			list.add(chromosome);
+		}
+
+		list.addAll(random(problem, size - list.size()));
+
+		return list;
+	}
+
+	/**
+	 * Stretch each sub-polygon perpendicularly to its pipe side, so its area
+	 * gets close to the share of the pipe. The area of a sub-polygon changes
+	 * linearly with such a stretch, apart from the clipping by the global
+	 * polygon.
+	 * 
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param solution
+	 *            Prior solution.
+	 * 
+	 * @return Stretched solution.
+	 */
+	private static List<List<Point>> stretched(Problem problem, List<List<Point>> solution) {
+		AnalyticFitness engine = problem.getAnalyticFitness();
+		double[] areas = new double[solution.size()];
+		engine.evaluate(solution, areas);
+
+		List<List<Point>> result = new ArrayList<List<Point>>();
+		for (int k = 0; k < solution.size(); k++) {
+			Pipe pipe = problem.getPipes().get(k);
+			List<Point> points = solution.get(k);
+
+			double factor = (areas[k] <= 0) ? WARM_START_STRETCH : engine.target(k) / areas[k];
+			factor = Math.max(1 / WARM_START_STRETCH, Math.min(WARM_START_STRETCH, factor));
+
+			/*
+			 * Unit normal of the pipe side.
+			 */
+			double dx = pipe.vertex2.x - pipe.vertex1.x;
+			double dy = pipe.vertex2.y - pipe.vertex1.y;
+			double length = Math.hypot(dx, dy);
+			double nx = (length == 0) ? 0 : -dy / length;
+			double ny = (length == 0) ? 0 : dx / length;
+
+			List<Point> vertices = new ArrayList<Point>();
+			vertices.add(points.get(0));
+			vertices.add(points.get(1));
+			for (int i = 2; i < points.size(); i++) {
+				Point point = points.get(i);
+				double distance = (point.x - pipe.vertex1.x) * nx + (point.y - pipe.vertex1.y) * ny;
+				vertices.add(new Point((int) Math.round(point.x + (factor - 1) * distance * nx),
+						(int) Math.round(point.y + (factor - 1) * distance * ny)));
+			}
+			result.add(vertices);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Random initial solutions.
+	 * 
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param size
+	 *            Number of solutions.
+	 * 
+	 * @return Chromosomes list.
+	 */
+	private static List<Chromosome> random(Problem problem, int size) {
+		EdgeIndex index = problem.getEdgeIndex();
+		List<Pipe> pipes = problem.getPipes();
+
 		/*
 		 * Generate initial population.
 		 */
 		List<Chromosome> list = new LinkedList<Chromosome>();
-		for (int i = 0; i < populationSize; i++) {
+		for (int i = 0; i < size; i++) {
 			/*
 			 * Random solution.
 			 */
@@ -115,10 +600,18 @@ public class GeneticAlgorithmSolver {
 				/*
 				 * Form triangle.
 				 */
-				Point vertex3 = new Point((int) ((pipe.vertex1.x + pipe.vertex2.x + 0.5D) / 2),
+				Point middle = new Point((int) ((pipe.vertex1.x + pipe.vertex2.x + 0.5D) / 2),
 						(int) ((pipe.vertex1.y + pipe.vertex2.y + 0.5D) / 2));
-				while (polygon.contains(
-						vertex3) == false /* And should not be on a straight line! */) {
+				Point vertex3 = new Point(middle);
+				for (int steps = 0; index.contains(
+						vertex3) == false /* And should not be on a straight line! */; steps++) {
+					/*
+					 * Long walks away from the polygon are restarted.
+					 */
+					if (steps % RANDOM_WALK_LIMIT == RANDOM_WALK_LIMIT - 1) {
+						vertex3.setLocation(middle);
+					}
+
 					vertex3.x += (1 - PRNG.nextInt(3));
 					vertex3.y += (1 - PRNG.nextInt(3));
 				}
@@ -133,24 +626,157 @@ public class GeneticAlgorithmSolver {
 			/*
 			 * Add as solution.
 			 */
-			list.add(new PolygonListChromosome(representation, polygon, pipes));
+			list.add(new PolygonListChromosome(representation, problem));
 		}
-		Population initial = new ElitisticListPopulation(list, 2 * list.size(), elitismRate);
+
+		return list;
+	}
+
+	/**
+	 * Move a population to a problem of different resolution. The pipe sides
+	 * are mapped exactly and all other vertices are scaled.
+	 * 
+	 * @param population
+	 *            Evolved population.
+	 * @param source
+	 *            Problem of the population.
+	 * @param target
+	 *            Problem of the new population.
+	 * @param ratio
+	 *            Scaling ratio of the coordinates.
+	 * 
+	 * @return Chromosomes list.
+	 */
+	private static List<Chromosome> upscale(Population population, Problem source, Problem target, double ratio) {
+		List<Chromosome> list = new LinkedList<Chromosome>();
+		for (Chromosome chromosome : population) {
+			List<List<Point>> representation = new ArrayList<List<Point>>();
+
+			int k = 0;
+			for (List<Point> points : ((PolygonListChromosome) chromosome).getRepresentation()) {
+				Pipe from = source.getPipes().get(k);
+				Pipe to = target.getPipes().get(k);
+				k++;
+
+				List<Point> vertices = new ArrayList<Point>();
+				for (Point point : points) {
+					if (point.equals(from.vertex1) == true) {
+						vertices.add(to.vertex1);
+					} else if (point.equals(from.vertex2) == true) {
+						vertices.add(to.vertex2);
+					} else {
+						vertices.add(new Point((int) Math.round(point.x * ratio), (int) Math.round(point.y * ratio)));
+					}
+				}
+				representation.add(vertices);
+			}
+
+			/*
+			 * Mutation steps are scaled with the geometry.
+			 */
+			PolygonListChromosome result = new PolygonListChromosome(representation, target);
+			result.setStep(((PolygonListChromosome) chromosome).getStep() * ratio);
+			list.add(result);
+		}
+
+		return list;
+	}
+
+	/**
+	 * Evolve population for some time.
+	 * 
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param list
+	 *            Initial chromosomes.
+	 * @param condition
+	 *            Stopping condition.
+	 * 
+	 * @return Evolved and evaluated population.
+	 */
+	private Population evolve(Problem problem, List<Chromosome> list, StoppingCondition condition) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
 
 		/*
-		 * Initialize genetic algorithm.
-		 */
-		GeneticAlgorithm algorithm = new GeneticAlgorithm(new UniformCrossover<PolygonListChromosome>(0.5),
-				crossoverRate, new RandomVertexMutation(), mutationRate, new TournamentSelection(tournamentArity));
-		/*
-		 * Run optimization.
+		 * Island model.
 		 */
-		Population optimized = algorithm.evolve(initial, new FixedElapsedTime(optimizationTimeout));
+		if (islands > 1) {
+			try {
+				return evolve(list, condition, pool);
+			} finally {
+				pool.shutdown();
+			}
+		}
+
+		Population initial = new ElitisticListPopulation(list, 2 * populationSize, elitismRate);
 
 		/*
-		 * Obtain result.
+		 * Initialize genetic algorithm.
 		 */
-		return ((PolygonListChromosome) optimized.getFittestChromosome()).getRepresentation();
+		try {
+			ParallelGeneticAlgorithm algorithm = new ParallelGeneticAlgorithm(
+					new UniformCrossover<PolygonListChromosome>(0.5), crossoverRate, mutation,
+					mutationRate, new TournamentSelection(tournamentArity), pool);
+
+			/*
+			 * Run optimization.
+			 */
+			Population optimized = algorithm.evolve(initial, condition);
+			algorithm.evaluate(optimized);
+
+			return optimized;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Evolve islands for some time.
+	 * 
+	 * @param list
+	 *            Initial chromosomes, they are dealt to the islands.
+	 * @param condition
+	 *            Stopping condition.
+	 * @param pool
+	 *            Threads for the islands.
+	 * 
+	 * @return All islands as a single evolved and evaluated population.
+	 */
+	private Population evolve(List<Chromosome> list, StoppingCondition condition, ForkJoinPool pool) {
+		List<List<Chromosome>> deals = new ArrayList<List<Chromosome>>();
+		for (int i = 0; i < islands; i++) {
+			deals.add(new ArrayList<Chromosome>());
+		}
+		int index = 0;
+		for (Chromosome chromosome : list) {
+			deals.get(index++ % islands).add(chromosome);
+		}
+
+		List<ElitisticListPopulation> initial = new ArrayList<ElitisticListPopulation>();
+		for (List<Chromosome> deal : deals) {
+			initial.add(new ElitisticListPopulation(deal, Math.max(deal.size(), 2 * populationSize), elitismRate));
+		}
+
+		IslandGeneticAlgorithm algorithm = new IslandGeneticAlgorithm(0.5, crossoverRate, mutation, mutationRate,
+				tournamentArity, MIGRATION_INTERVAL, Math.max(1, (int) Math.round(elitismRate * populationSize)),
+				IslandGeneticAlgorithm.Migration.RING, PRNG.nextLong(), pool);
+
+		return IslandGeneticAlgorithm.merge(algorithm.evolve(initial, condition));
+	}
+
+	/**
+	 * Time limit combined with optional additional stopping condition.
+	 * 
+	 * @param milliseconds
+	 *            Optimization time.
+	 * @param stop
+	 *            Additional stopping condition, null for none.
+	 * 
+	 * @return Stopping condition.
+	 */
+	private static StoppingCondition limit(long milliseconds, StoppingCondition stop) {
+		StoppingCondition time = StoppingConditions.wallClock(milliseconds, TimeUnit.MILLISECONDS);
+		return (stop == null) ? time : StoppingConditions.any(time, stop);
 	}
 
 }
@@ -0,0 +1,363 @@
+import java.awt.Point;
+import java.awt.Polygon;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Exact planar geometry helpers. Polygons are kept in flat arrays of
+ * interleaved coordinates (x0, y0, x1, y1, ...) so the calculations do not
+ * allocate point objects.
+ *
+ * @author Todor Balabanov
+ */
+final class Geometry {
+
+	/**
+	 * Utility class.
+	 */
+	private Geometry() {
+	}
+
+	/**
+	 * Distance between line AB and point P.
+	 *
+	 * @param a
+	 *            First end of the line.
+	 * @param b
+	 *            Second end of the line.
+	 * @param p
+	 *            Point in 2D space.
+	 *
+	 * @return Distance between the point and the line.
+	 */
+	static double distance(Point a, Point b, Point p) {
+		return distance(a.x, a.y, b.x, b.y, p.x, p.y);
+	}
+
+	/**
+	 * Distance between line AB and point P given with coordinates.
+	 *
+	 * @param ax
+	 *            First end of the line x.
+	 * @param ay
+	 *            First end of the line y.
+	 * @param bx
+	 *            Second end of the line x.
+	 * @param by
+	 *            Second end of the line y.
+	 * @param px
+	 *            Point x.
+	 * @param py
+	 *            Point y.
+	 *
+	 * @return Distance between the point and the line.
+	 */
+	static double distance(double ax, double ay, double bx, double by, double px, double py) {
+		double normal = Math.sqrt((bx - ax) * (bx - ax) + (by - ay) * (by - ay));
+		return Math.abs((px - ax) * (by - ay) - (py - ay) * (bx - ax)) / normal;
+	}
+
+	/**
+	 * Signed area of a polygon (shoelace formula). Counter-clockwise polygons
+	 * in the mathematical orientation have positive area.
+	 *
+	 * @param xy
+	 *            Interleaved coordinates.
+	 * @param n
+	 *            Number of vertices.
+	 *
+	 * @return Signed area.
+	 */
+	static double area(double[] xy, int n) {
+		return area(xy, 0, n);
+	}
+
+	/**
+	 * Signed area of a polygon stored at some offset in a bigger array.
+	 *
+	 * @param xy
+	 *            Interleaved coordinates.
+	 * @param offset
+	 *            Index of the first value of the polygon.
+	 * @param n
+	 *            Number of vertices.
+	 *
+	 * @return Signed area.
+	 */
+	static double area(double[] xy, int offset, int n) {
+		double sum = 0;
+		for (int i = 0, j = n - 1; i < n; j = i++) {
+			sum += xy[offset + 2 * j] * xy[offset + 2 * i + 1] - xy[offset + 2 * i] * xy[offset + 2 * j + 1];
+		}
+		return sum / 2D;
+	}
+
+	/**
+	 * Integral of the linear function a*x + b*y + c over a polygon. It is
+	 * calculated with the first moments of area, so the result is signed in
+	 * the same way as the polygon area.
+	 *
+	 * @param xy
+	 *            Interleaved coordinates.
+	 * @param n
+	 *            Number of vertices.
+	 * @param a
+	 *            Coefficient in front of x.
+	 * @param b
+	 *            Coefficient in front of y.
+	 * @param c
+	 *            Free coefficient.
+	 *
+	 * @return Integral value.
+	 */
+	static double integral(double[] xy, int n, double a, double b, double c) {
+		double area = 0;
+		double mx = 0;
+		double my = 0;
+		for (int i = 0, j = n - 1; i < n; j = i++) {
+			double cross = xy[2 * j] * xy[2 * i + 1] - xy[2 * i] * xy[2 * j + 1];
+			area += cross;
+			mx += (xy[2 * j] + xy[2 * i]) * cross;
+			my += (xy[2 * j + 1] + xy[2 * i + 1]) * cross;
+		}
+		return a * mx / 6D + b * my / 6D + c * area / 2D;
+	}
+
+	/**
+	 * Sutherland-Hodgman clipping against the half-plane a*x + b*y + c >= 0.
+	 * The subject can be any polygon, the signed area of the result is exact.
+	 *
+	 * @param in
+	 *            Interleaved coordinates of the subject.
+	 * @param n
+	 *            Number of vertices in the subject.
+	 * @param a
+	 *            Coefficient in front of x.
+	 * @param b
+	 *            Coefficient in front of y.
+	 * @param c
+	 *            Free coefficient.
+	 * @param out
+	 *            Buffer for the result. It should have space for at least n+1
+	 *            vertices and it should be different from the input.
+	 *
+	 * @return Number of vertices in the result.
+	 */
+	static int clip(double[] in, int n, double a, double b, double c, double[] out) {
+		int m = 0;
+		if (n == 0) {
+			return m;
+		}
+
+		double px = in[2 * n - 2];
+		double py = in[2 * n - 1];
+		double pd = a * px + b * py + c;
+		for (int i = 0; i < n; i++) {
+			double qx = in[2 * i];
+			double qy = in[2 * i + 1];
+			double qd = a * qx + b * qy + c;
+
+			/*
+			 * Edge crosses the clipping line.
+			 */
+			if ((pd >= 0) != (qd >= 0)) {
+				double t = pd / (pd - qd);
+				out[2 * m] = px + t * (qx - px);
+				out[2 * m + 1] = py + t * (qy - py);
+				m++;
+			}
+
+			/*
+			 * Inside vertices are kept.
+			 */
+			if (qd >= 0) {
+				out[2 * m] = qx;
+				out[2 * m + 1] = qy;
+				m++;
+			}
+
+			px = qx;
+			py = qy;
+			pd = qd;
+		}
+
+		return m;
+	}
+
+	/**
+	 * Clip a polygon with a counter-clockwise triangle.
+	 *
+	 * @param in
+	 *            Interleaved coordinates of the subject. It is used as scratch
+	 *            space and its content is destroyed.
+	 * @param n
+	 *            Number of vertices in the subject.
+	 * @param triangle
+	 *            Triangles coordinates (six values per triangle).
+	 * @param offset
+	 *            Index of the first value of the triangle.
+	 * @param out
+	 *            Buffer for the result. Both buffers should have space for at
+	 *            least n+3 vertices.
+	 *
+	 * @return Number of vertices in the result.
+	 */
+	static int clip(double[] in, int n, double[] triangle, int offset, double[] out) {
+		double[] source = in;
+		double[] target = out;
+		for (int i = 0; i < 3 && n > 0; i++) {
+			double ax = triangle[offset + 2 * i];
+			double ay = triangle[offset + 2 * i + 1];
+			double bx = triangle[offset + (2 * i + 2) % 6];
+			double by = triangle[offset + (2 * i + 3) % 6];
+
+			/*
+			 * Left side of the directed edge is inside.
+			 */
+			n = clip(source, n, ay - by, bx - ax, ax * by - ay * bx, target);
+
+			double[] swap = source;
+			source = target;
+			target = swap;
+		}
+
+		/*
+		 * Early exit can leave the result in the input buffer.
+		 */
+		if (source != out) {
+			System.arraycopy(source, 0, out, 0, 2 * n);
+		}
+		return n;
+	}
+
+	/**
+	 * Ear clipping triangulation of a simple polygon. All triangles are
+	 * returned counter-clockwise.
+	 *
+	 * @param polygon
+	 *            Simple polygon.
+	 *
+	 * @return Triangles coordinates (six values per triangle).
+	 */
+	static double[] triangulate(Polygon polygon) {
+		int n = polygon.npoints;
+		double[] xy = new double[2 * n];
+		for (int i = 0; i < n; i++) {
+			xy[2 * i] = polygon.xpoints[i];
+			xy[2 * i + 1] = polygon.ypoints[i];
+		}
+
+		/*
+		 * Work with counter-clockwise order of the vertices.
+		 */
+		List<Integer> indices = new ArrayList<Integer>();
+		boolean clockwise = area(xy, n) < 0;
+		for (int i = 0; i < n; i++) {
+			indices.add(clockwise ? n - 1 - i : i);
+		}
+
+		double[] result = new double[6 * Math.max(0, n - 2)];
+		int count = 0;
+		int guard = 2 * n;
+		for (int i = 0; indices.size() > 3 && guard > 0;) {
+			int size = indices.size();
+			int a = indices.get((i + size - 1) % size);
+			int b = indices.get(i % size);
+			int c = indices.get((i + 1) % size);
+
+			if (ear(xy, indices, a, b, c) == true) {
+				triangle(xy, a, b, c, result, 6 * count++);
+				indices.remove(i % size);
+				guard = 2 * indices.size();
+			} else {
+				i = (i + 1) % size;
+				guard--;
+			}
+		}
+
+		/*
+		 * Last triangle (or the rest of a degenerate polygon as a fan).
+		 */
+		for (int i = 1; i + 1 < indices.size(); i++) {
+			int a = indices.get(0);
+			int b = indices.get(i);
+			int c = indices.get(i + 1);
+			triangle(xy, a, b, c, result, 6 * count++);
+		}
+
+		return Arrays.copyOf(result, 6 * count);
+	}
+
+	/**
+	 * Copy triangle vertices.
+	 *
+	 * @param xy
+	 *            Interleaved coordinates.
+	 * @param a
+	 *            First vertex.
+	 * @param b
+	 *            Second vertex.
+	 * @param c
+	 *            Third vertex.
+	 * @param result
+	 *            Triangles coordinates.
+	 * @param offset
+	 *            Index of the first value of the triangle.
+	 */
+	private static void triangle(double[] xy, int a, int b, int c, double[] result, int offset) {
+		result[offset] = xy[2 * a];
+		result[offset + 1] = xy[2 * a + 1];
+		result[offset + 2] = xy[2 * b];
+		result[offset + 3] = xy[2 * b + 1];
+		result[offset + 4] = xy[2 * c];
+		result[offset + 5] = xy[2 * c + 1];
+	}
+
+	/**
+	 * Check for an ear in the ear clipping triangulation.
+	 *
+	 * @param xy
+	 *            Interleaved coordinates.
+	 * @param indices
+	 *            Indices of the vertices still in the polygon.
+	 * @param a
+	 *            Previous vertex.
+	 * @param b
+	 *            Candidate tip of the ear.
+	 * @param c
+	 *            Next vertex.
+	 *
+	 * @return True if ABC is an ear, false otherwise.
+	 */
+	private static boolean ear(double[] xy, List<Integer> indices, int a, int b, int c) {
+		double ax = xy[2 * a], ay = xy[2 * a + 1];
+		double bx = xy[2 * b], by = xy[2 * b + 1];
+		double cx = xy[2 * c], cy = xy[2 * c + 1];
+
+		/*
+		 * Reflex vertices are not ears.
+		 */
+		if ((bx - ax) * (cy - ay) - (by - ay) * (cx - ax) <= 0) {
+			return false;
+		}
+
+		/*
+		 * No other vertex should be inside the triangle.
+		 */
+		for (int p : indices) {
+			if (p == a || p == b || p == c) {
+				continue;
+			}
+
+			double px = xy[2 * p], py = xy[2 * p + 1];
+			if ((bx - ax) * (py - ay) - (by - ay) * (px - ax) >= 0 && (cx - bx) * (py - by) - (cy - by) * (px - bx) >= 0
+					&& (ax - cx) * (py - cy) - (ay - cy) * (px - cx) >= 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+}
@@ -0,0 +1,617 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Streaming reader of the problem input. The polygon vertices and the pipe
+ * shares are parsed straight into primitive arrays, without an object tree.
+ * Three formats are supported:
+ *
+ * JSON (.json) - the original shape, an object with "vertices" array of
+ * objects with "x" and "y" and "shares" array. Numbers can be quoted.
+ *
+ * CSV (.csv) - one line per vertex with x, y and the share of the side which
+ * starts at the vertex, separated by commas or semicolons. Empty lines,
+ * comments starting with # and a header line are skipped.
+ *
+ * Binary (.bin) - big-endian magic number, version and count, followed by all
+ * x coordinates, all y coordinates and all shares.
+ *
+ * Coordinates are rounded to the nearest integer. The shares are validated to
+ * be as many as the vertices and to sum to 100.
+ *
+ * @author Todor Balabanov
+ */
+public final class InputReader {
+
+	/**
+	 * Magic number of the binary format, "PPOL" in ASCII.
+	 */
+	public static final int MAGIC = 0x50504F4C;
+
+	/**
+	 * Version of the binary format.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Allowed difference of the shares sum from 100.
+	 */
+	public static final double SHARE_TOLERANCE = 1E-3;
+
+	/**
+	 * Initial capacity of the growing arrays.
+	 */
+	private static final int CAPACITY = 16;
+
+	/**
+	 * Validated problem input.
+	 */
+	public static final class Input {
+
+		/**
+		 * Vertices x coordinates.
+		 */
+		private final int[] x;
+
+		/**
+		 * Vertices y coordinates.
+		 */
+		private final int[] y;
+
+		/**
+		 * Share of the side which starts at each vertex, in percent.
+		 */
+		private final double[] shares;
+
+		/**
+		 * Constructor with all parameters.
+		 *
+		 * @param x
+		 *            Vertices x coordinates.
+		 * @param y
+		 *            Vertices y coordinates.
+		 * @param shares
+		 *            Share of the side which starts at each vertex, in percent.
+		 */
+		Input(int[] x, int[] y, double[] shares) {
+			this.x = x;
+			this.y = y;
+			this.shares = shares;
+		}
+
+		/**
+		 * Number of vertices.
+		 *
+		 * @return Number of vertices and pipes.
+		 */
+		public int size() {
+			return x.length;
+		}
+
+		/**
+		 * Vertices x coordinates getter.
+		 *
+		 * @return Coordinates array.
+		 */
+		public int[] getX() {
+			return x;
+		}
+
+		/**
+		 * Vertices y coordinates getter.
+		 *
+		 * @return Coordinates array.
+		 */
+		public int[] getY() {
+			return y;
+		}
+
+		/**
+		 * Shares getter.
+		 *
+		 * @return Share of the side which starts at each vertex, in percent.
+		 */
+		public double[] getShares() {
+			return shares;
+		}
+	}
+
+	/**
+	 * Parser events handler which collects the vertices and the shares.
+	 */
+	private static final class Handler implements ContentHandler {
+
+		/**
+		 * Vertices x coordinates.
+		 */
+		private int[] x = new int[CAPACITY];
+
+		/**
+		 * Vertices y coordinates.
+		 */
+		private int[] y = new int[CAPACITY];
+
+		/**
+		 * Number of vertices.
+		 */
+		private int vertices = 0;
+
+		/**
+		 * Shares.
+		 */
+		private double[] shares = new double[CAPACITY];
+
+		/**
+		 * Number of shares.
+		 */
+		private int count = 0;
+
+		/**
+		 * Objects nesting level.
+		 */
+		private int depth = 0;
+
+		/**
+		 * Key of the current top level entry.
+		 */
+		private String section = null;
+
+		/**
+		 * Key of the current vertex entry.
+		 */
+		private String field = null;
+
+		/**
+		 * Current vertex x coordinate.
+		 */
+		private double vx = Double.NaN;
+
+		/**
+		 * Current vertex y coordinate.
+		 */
+		private double vy = Double.NaN;
+
+		/**
+		 * Other top level primitive values, null if they are not collected.
+		 */
+		private final Map<String, Object> extra;
+
+		/**
+		 * Constructor with all parameters.
+		 *
+		 * @param extra
+		 *            Output for the other top level primitive values, null if
+		 *            they are not needed.
+		 */
+		Handler(Map<String, Object> extra) {
+			this.extra = extra;
+		}
+
+		@Override
+		public void startJSON() {
+		}
+
+		@Override
+		public void endJSON() {
+		}
+
+		@Override
+		public boolean startObject() {
+			depth++;
+			if (depth == 2 && "vertices".equals(section) == true) {
+				vx = Double.NaN;
+				vy = Double.NaN;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean endObject() throws IOException {
+			if (depth == 2 && "vertices".equals(section) == true) {
+				if (Double.isNaN(vx) == true || Double.isNaN(vy) == true) {
+					throw new IOException("Vertex " + vertices + " should have x and y coordinates.");
+				}
+
+				if (vertices == x.length) {
+					x = Arrays.copyOf(x, 2 * vertices);
+					y = Arrays.copyOf(y, 2 * vertices);
+				}
+				x[vertices] = coordinate(vx);
+				y[vertices] = coordinate(vy);
+				vertices++;
+			}
+			depth--;
+			return true;
+		}
+
+		@Override
+		public boolean startObjectEntry(String key) {
+			if (depth == 1) {
+				section = key;
+			} else if (depth == 2) {
+				field = key;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean endObjectEntry() {
+			if (depth == 1) {
+				section = null;
+			} else if (depth == 2) {
+				field = null;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean startArray() {
+			return true;
+		}
+
+		@Override
+		public boolean endArray() {
+			return true;
+		}
+
+		@Override
+		public boolean primitive(Object value) throws IOException {
+			if (depth == 1 && "shares".equals(section) == true) {
+				if (count == shares.length) {
+					shares = Arrays.copyOf(shares, 2 * count);
+				}
+				shares[count++] = number(value);
+			} else if (depth == 1 && extra != null && section != null && "vertices".equals(section) == false) {
+				extra.put(section, value);
+			} else if (depth == 2 && "vertices".equals(section) == true) {
+				if ("x".equals(field) == true) {
+					vx = number(value);
+				} else if ("y".equals(field) == true) {
+					vy = number(value);
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Utility class.
+	 */
+	private InputReader() {
+	}
+
+	/**
+	 * Check for supported input file.
+	 *
+	 * @param name
+	 *            File name.
+	 *
+	 * @return True if the file has extension of a supported format.
+	 */
+	public static boolean accepts(String name) {
+		return name.endsWith(".json") || name.endsWith(".csv") || name.endsWith(".bin");
+	}
+
+	/**
+	 * Read input file, the format is selected by the file extension.
+	 *
+	 * @param file
+	 *            File name.
+	 *
+	 * @return Validated input.
+	 *
+	 * @throws IOException
+	 *             When the file can not be read or it is not valid.
+	 * @throws ParseException
+	 *             When the JSON syntax is broken.
+	 */
+	public static Input read(String file) throws IOException, ParseException {
+		if (file.endsWith(".csv") == true) {
+			try (Reader reader = new FileReader(file)) {
+				return csv(reader);
+			}
+		}
+
+		if (file.endsWith(".bin") == true) {
+			try (InputStream stream = new FileInputStream(file)) {
+				return binary(stream);
+			}
+		}
+
+		try (Reader reader = new FileReader(file)) {
+			return json(reader);
+		}
+	}
+
+	/**
+	 * Read JSON input.
+	 *
+	 * @param reader
+	 *            Input characters.
+	 *
+	 * @return Validated input.
+	 *
+	 * @throws IOException
+	 *             When the input can not be read or it is not valid.
+	 * @throws ParseException
+	 *             When the JSON syntax is broken.
+	 */
+	public static Input json(Reader reader) throws IOException, ParseException {
+		return json(reader, null);
+	}
+
+	/**
+	 * Read JSON input with additional top level values, for example request
+	 * parameters next to the polygon.
+	 *
+	 * @param reader
+	 *            Input characters.
+	 * @param extra
+	 *            Output for the other top level primitive values, null if
+	 *            they are not needed.
+	 *
+	 * @return Validated input.
+	 *
+	 * @throws IOException
+	 *             When the input can not be read or it is not valid.
+	 * @throws ParseException
+	 *             When the JSON syntax is broken.
+	 */
+	public static Input json(Reader reader, Map<String, Object> extra) throws IOException, ParseException {
+		Handler handler = new Handler(extra);
+		new JSONParser().parse(reader, handler);
+
+		return validate(handler.x, handler.y, handler.vertices, handler.shares, handler.count);
+	}
+
+	/**
+	 * Read CSV input.
+	 *
+	 * @param reader
+	 *            Input characters.
+	 *
+	 * @return Validated input.
+	 *
+	 * @throws IOException
+	 *             When the input can not be read or it is not valid.
+	 */
+	public static Input csv(Reader reader) throws IOException {
+		int[] x = new int[CAPACITY];
+		int[] y = new int[CAPACITY];
+		double[] shares = new double[CAPACITY];
+		int count = 0;
+
+		BufferedReader lines = new BufferedReader(reader);
+		int number = 0;
+		for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+			number++;
+			line = line.trim();
+
+			/*
+			 * Empty lines and comments are skipped.
+			 */
+			if (line.isEmpty() == true || line.startsWith("#") == true) {
+				continue;
+			}
+
+			String[] values = line.split("[,;]");
+			if (values.length != 3) {
+				throw new IOException("Line " + number + " should have x, y and share.");
+			}
+
+			/*
+			 * Header is a line before the data which does not start with a
+			 * number.
+			 */
+			if (count == 0 && values[0].trim().matches("[-+]?[0-9.].*") == false) {
+				continue;
+			}
+
+			if (count == x.length) {
+				x = Arrays.copyOf(x, 2 * count);
+				y = Arrays.copyOf(y, 2 * count);
+				shares = Arrays.copyOf(shares, 2 * count);
+			}
+
+			try {
+				x[count] = coordinate(Double.parseDouble(values[0].trim()));
+				y[count] = coordinate(Double.parseDouble(values[1].trim()));
+				shares[count] = Double.parseDouble(values[2].trim());
+			} catch (NumberFormatException exception) {
+				throw new IOException("Line " + number + " has invalid number.", exception);
+			}
+			count++;
+		}
+
+		return validate(x, y, count, shares, count);
+	}
+
+	/**
+	 * Read binary input.
+	 *
+	 * @param stream
+	 *            Input bytes.
+	 *
+	 * @return Validated input.
+	 *
+	 * @throws IOException
+	 *             When the input can not be read or it is not valid.
+	 */
+	public static Input binary(InputStream stream) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(stream));
+
+		if (data.readInt() != MAGIC) {
+			throw new IOException("Binary input should start with the magic number.");
+		}
+		int version = data.readInt();
+		if (version != VERSION) {
+			throw new IOException("Binary input version " + version + " is not supported.");
+		}
+		int count = data.readInt();
+		if (count < 0) {
+			throw new IOException("Binary input has negative count.");
+		}
+
+		/*
+		 * The count from the header is not trusted. The first array grows
+		 * with the values actually read, after that the other arrays are at
+		 * most twice the size of the read data.
+		 */
+		try {
+			int[] x = new int[Math.min(count, CAPACITY)];
+			for (int i = 0; i < count; i++) {
+				if (i == x.length) {
+					x = Arrays.copyOf(x, (int) Math.min(count, 2L * i));
+				}
+				x[i] = data.readInt();
+			}
+			int[] y = new int[count];
+			for (int i = 0; i < count; i++) {
+				y[i] = data.readInt();
+			}
+			double[] shares = new double[count];
+			for (int i = 0; i < count; i++) {
+				shares[i] = data.readDouble();
+			}
+
+			return validate(x, y, count, shares, count);
+		} catch (EOFException exception) {
+			throw new IOException("Binary input is shorter than its count of " + count + " vertices.", exception);
+		}
+	}
+
+	/**
+	 * Write input in the binary format.
+	 *
+	 * @param input
+	 *            Problem input.
+	 * @param stream
+	 *            Output bytes.
+	 *
+	 * @throws IOException
+	 *             When the output can not be written.
+	 */
+	public static void binary(Input input, OutputStream stream) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(stream));
+
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(input.size());
+		for (int value : input.x) {
+			data.writeInt(value);
+		}
+		for (int value : input.y) {
+			data.writeInt(value);
+		}
+		for (double value : input.shares) {
+			data.writeDouble(value);
+		}
+
+		data.flush();
+	}
+
+	/**
+	 * Numeric value of a JSON primitive, quoted numbers are accepted.
+	 *
+	 * @param value
+	 *            JSON primitive.
+	 *
+	 * @return Numeric value.
+	 *
+	 * @throws IOException
+	 *             When the value is not a number.
+	 */
+	private static double number(Object value) throws IOException {
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+
+		if (value instanceof String) {
+			try {
+				return Double.parseDouble(((String) value).trim());
+			} catch (NumberFormatException exception) {
+				throw new IOException("Value " + value + " should be a number.", exception);
+			}
+		}
+
+		throw new IOException("Value " + value + " should be a number.");
+	}
+
+	/**
+	 * Round coordinate to an integer.
+	 *
+	 * @param value
+	 *            Coordinate value.
+	 *
+	 * @return Nearest integer.
+	 *
+	 * @throws IOException
+	 *             When the value is not a finite number in the integer range.
+	 */
+	private static int coordinate(double value) throws IOException {
+		if (Double.isFinite(value) == false || Math.abs(value) > Integer.MAX_VALUE) {
+			throw new IOException("Coordinate " + value + " is out of range.");
+		}
+		return (int) Math.round(value);
+	}
+
+	/**
+	 * Validate the parsed values.
+	 *
+	 * @param x
+	 *            Vertices x coordinates, possibly with unused capacity.
+	 * @param y
+	 *            Vertices y coordinates, possibly with unused capacity.
+	 * @param vertices
+	 *            Number of vertices.
+	 * @param shares
+	 *            Shares, possibly with unused capacity.
+	 * @param count
+	 *            Number of shares.
+	 *
+	 * @return Validated input with trimmed arrays.
+	 *
+	 * @throws IOException
+	 *             When the values are not valid.
+	 */
+	private static Input validate(int[] x, int[] y, int vertices, double[] shares, int count) throws IOException {
+		if (vertices < 3) {
+			throw new IOException("Polygon should have at least three vertices, but it has " + vertices + ".");
+		}
+
+		if (vertices != count) {
+			throw new IOException("There should be a share for each of the " + vertices + " polygon sides, but there are "
+					+ count + " shares.");
+		}
+
+		double sum = 0;
+		for (int i = 0; i < count; i++) {
+			if (Double.isFinite(shares[i]) == false || shares[i] < 0) {
+				throw new IOException("Share " + i + " should be a non-negative number.");
+			}
+			sum += shares[i];
+		}
+		if (Math.abs(sum - 100) > SHARE_TOLERANCE) {
+			throw new IOException("Shares should sum to 100, but they sum to " + sum + ".");
+		}
+
+		return new Input(Arrays.copyOf(x, vertices), Arrays.copyOf(y, vertices), Arrays.copyOf(shares, count));
+	}
+
+}
@@ -0,0 +1,483 @@
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.math3.genetics.Chromosome;
+import org.apache.commons.math3.genetics.ChromosomePair;
+import org.apache.commons.math3.genetics.ElitisticListPopulation;
+import org.apache.commons.math3.genetics.MutationPolicy;
+import org.apache.commons.math3.genetics.StoppingCondition;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+
+/**
+ * Island model of the genetic algorithm. Each island has its own population
+ * and it is evolved on its own thread with uniform crossover, tournament
+ * selection and the mutation policy of the single population algorithm. After
+ * each epoch of a few generations the best chromosomes of each island migrate
+ * to another island, where they replace the worst chromosomes.
+ *
+ * The commons-math selection and crossover policies draw from a single static
+ * generator, so they are done here with a generator of each island. The
+ * generators of the islands are seeded from a master seed, which makes the
+ * selection, the crossover and the migration repeatable. The mutation policy
+ * keeps its own random draws.
+ *
+ * @author Todor Balabanov
+ */
+public class IslandGeneticAlgorithm {
+
+	/**
+	 * Choice of the island which receives the migrants.
+	 */
+	public enum Migration {
+		/**
+		 * Island i sends to island i+1.
+		 */
+		RING,
+
+		/**
+		 * Island i sends to a random other island.
+		 */
+		RANDOM
+	}
+
+	/**
+	 * Probability of a gene to come from the other parent in the uniform
+	 * crossover.
+	 */
+	private final double ratio;
+
+	/**
+	 * Crossover rate.
+	 */
+	private final double crossoverRate;
+
+	/**
+	 * Mutation policy.
+	 */
+	private final MutationPolicy mutationPolicy;
+
+	/**
+	 * Mutation rate.
+	 */
+	private final double mutationRate;
+
+	/**
+	 * Number of chromosomes in each selection tournament.
+	 */
+	private final int arity;
+
+	/**
+	 * Number of generations between two migrations.
+	 */
+	private final int interval;
+
+	/**
+	 * Number of chromosomes sent by each island.
+	 */
+	private final int migrants;
+
+	/**
+	 * Migration topology.
+	 */
+	private final Migration migration;
+
+	/**
+	 * Master seed of the island generators.
+	 */
+	private final long seed;
+
+	/**
+	 * Thread pool for the islands.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Number of generations done by all islands.
+	 */
+	private final AtomicInteger generations = new AtomicInteger(0);
+
+	/**
+	 * Stopping condition of the running evolution.
+	 */
+	private volatile StoppingCondition condition = null;
+
+	/**
+	 * Some island satisfied the stopping condition.
+	 */
+	private volatile boolean satisfied = false;
+
+	/**
+	 * Constructor with all parameters.
+	 *
+	 * @param ratio
+	 *            Probability of a gene to come from the other parent in the
+	 *            uniform crossover.
+	 * @param crossoverRate
+	 *            Crossover rate.
+	 * @param mutationPolicy
+	 *            Mutation policy.
+	 * @param mutationRate
+	 *            Mutation rate.
+	 * @param arity
+	 *            Number of chromosomes in each selection tournament.
+	 * @param interval
+	 *            Number of generations between two migrations.
+	 * @param migrants
+	 *            Number of chromosomes sent by each island.
+	 * @param migration
+	 *            Migration topology.
+	 * @param seed
+	 *            Master seed of the island generators.
+	 * @param pool
+	 *            Thread pool for the islands.
+	 */
+	public IslandGeneticAlgorithm(double ratio, double crossoverRate, MutationPolicy mutationPolicy,
+			double mutationRate, int arity, int interval, int migrants, Migration migration, long seed,
+			ForkJoinPool pool) {
+		super();
+
+		if (interval <= 0 || migrants < 0) {
+			throw new IllegalArgumentException("Migration interval should be positive and migrants non-negative.");
+		}
+		if (ratio < 0 || ratio > 1 || arity <= 0) {
+			throw new IllegalArgumentException("Crossover ratio should be in [0, 1] and tournament arity positive.");
+		}
+
+		this.ratio = ratio;
+		this.crossoverRate = crossoverRate;
+		this.mutationPolicy = mutationPolicy;
+		this.mutationRate = mutationRate;
+		this.arity = arity;
+		this.interval = interval;
+		this.migrants = migrants;
+		this.migration = migration;
+		this.seed = seed;
+		this.pool = pool;
+	}
+
+	/**
+	 * Number of generations getter.
+	 *
+	 * @return Number of generations done by all islands together in the last
+	 *         evolution.
+	 */
+	public int getGenerationsEvolved() {
+		return generations.get();
+	}
+
+	/**
+	 * Evolve the islands until the stopping condition is satisfied. The
+	 * condition is checked by each island after each generation and after
+	 * each epoch with all islands merged in a single population. It should be
+	 * safe for concurrent use.
+	 *
+	 * @param islands
+	 *            Initial populations of the islands.
+	 * @param condition
+	 *            Stopping condition.
+	 *
+	 * @return Evolved populations of the islands.
+	 */
+	public List<ElitisticListPopulation> evolve(List<ElitisticListPopulation> islands, StoppingCondition condition) {
+		List<ElitisticListPopulation> current = new ArrayList<ElitisticListPopulation>(islands);
+		this.generations.set(0);
+		this.condition = condition;
+		this.satisfied = false;
+
+		/*
+		 * Each island keeps its generator between the epochs, the master
+		 * generator draws the migration targets.
+		 */
+		RandomGenerator master = new Well19937c(seed);
+		List<RandomGenerator> generators = new ArrayList<RandomGenerator>();
+		for (int i = 0; i < current.size(); i++) {
+			generators.add(new Well19937c(master.nextLong()));
+		}
+
+		while (satisfied == false && condition.isSatisfied(merge(current)) == false) {
+			/*
+			 * Each island does an epoch on its own thread.
+			 */
+			List<Callable<ElitisticListPopulation>> tasks = new ArrayList<Callable<ElitisticListPopulation>>();
+			for (int i = 0; i < current.size(); i++) {
+				final int index = i;
+				final ElitisticListPopulation island = current.get(i);
+				final RandomGenerator random = generators.get(i);
+				tasks.add(() -> epoch(index, island, random));
+			}
+
+			List<ElitisticListPopulation> next = new ArrayList<ElitisticListPopulation>();
+			for (Future<ElitisticListPopulation> future : pool.invokeAll(tasks)) {
+				try {
+					next.add(future.get());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return current;
+				} catch (ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
+			}
+
+			current = migrate(next, master);
+		}
+
+		return current;
+	}
+
+	/**
+	 * All islands as a single population.
+	 *
+	 * @param islands
+	 *            Populations of the islands.
+	 *
+	 * @return Merged population.
+	 */
+	public static ElitisticListPopulation merge(List<ElitisticListPopulation> islands) {
+		List<Chromosome> list = new ArrayList<Chromosome>();
+		int limit = 0;
+		for (ElitisticListPopulation island : islands) {
+			list.addAll(island.getChromosomes());
+			limit += island.getPopulationLimit();
+		}
+
+		return new ElitisticListPopulation(list, Math.max(1, limit), islands.get(0).getElitismRate());
+	}
+
+	/**
+	 * Evolve single island for the generations between two migrations.
+	 *
+	 * @param index
+	 *            Index of the island.
+	 * @param island
+	 *            Population of the island.
+	 * @param random
+	 *            Generator of the island.
+	 *
+	 * @return Evolved population.
+	 */
+	private ElitisticListPopulation epoch(int index, ElitisticListPopulation island, RandomGenerator random) {
+		ElitisticListPopulation current = island;
+		for (int g = 0; g < interval && satisfied == false; g++) {
+			current = generation(index, current, random);
+
+			/*
+			 * All islands stop when one of them is done.
+			 */
+			if (condition.isSatisfied(current) == true) {
+				satisfied = true;
+			}
+		}
+
+		/*
+		 * Evaluate on the island thread.
+		 */
+		for (Chromosome chromosome : current) {
+			chromosome.getFitness();
+		}
+
+		return current;
+	}
+
+	/**
+	 * Single generation of an island, the same as in the commons-math
+	 * generational algorithm.
+	 *
+	 * @param index
+	 *            Index of the island.
+	 * @param current
+	 *            Current generation.
+	 * @param random
+	 *            Generator of the island.
+	 *
+	 * @return Next generation.
+	 */
+	private ElitisticListPopulation generation(int index, ElitisticListPopulation current, RandomGenerator random) {
+		long generation = generations.getAndIncrement();
+		boolean measured = Telemetry.generations();
+		long start = measured ? System.nanoTime() : 0;
+		long evaluations = measured ? Telemetry.evaluations(current) : 0;
+
+		/*
+		 * Evaluate before the elite is sorted out.
+		 */
+		for (Chromosome chromosome : current) {
+			chromosome.getFitness();
+		}
+		long evaluated = measured ? System.nanoTime() : 0;
+		evaluations = measured ? Telemetry.evaluations(current) - evaluations : 0;
+
+		ElitisticListPopulation next = (ElitisticListPopulation) current.nextGeneration();
+		while (next.getPopulationSize() < next.getPopulationLimit()) {
+			ChromosomePair pair = new ChromosomePair(tournament(current, random), tournament(current, random));
+
+			if (random.nextDouble() < crossoverRate) {
+				pair = crossover(pair, random);
+			}
+
+			if (random.nextDouble() < mutationRate) {
+				pair = new ChromosomePair(mutationPolicy.mutate(pair.getFirst()),
+						mutationPolicy.mutate(pair.getSecond()));
+			}
+
+			next.addChromosome(pair.getFirst());
+			if (next.getPopulationSize() < next.getPopulationLimit()) {
+				next.addChromosome(pair.getSecond());
+			}
+		}
+
+		if (measured == true) {
+			Telemetry.generation(current, index, generation, System.nanoTime() - start, evaluations,
+					evaluated - start);
+		}
+
+		return next;
+	}
+
+	/**
+	 * Tournament selection, the same as in commons-math but with the
+	 * generator of the island. The competitors are drawn without replacement.
+	 *
+	 * @param population
+	 *            Population to select from.
+	 * @param random
+	 *            Generator of the island.
+	 *
+	 * @return The fittest of the competitors.
+	 */
+	private Chromosome tournament(ElitisticListPopulation population, RandomGenerator random) {
+		List<Chromosome> chromosomes = population.getChromosomes();
+		if (chromosomes.size() < arity) {
+			throw new IllegalArgumentException("Tournament arity should not be bigger than the population.");
+		}
+
+		/*
+		 * The arity is small, so drawn indices are redrawn.
+		 */
+		int[] drawn = new int[arity];
+		Chromosome best = null;
+		for (int i = 0; i < arity; i++) {
+			drawn[i] = random.nextInt(chromosomes.size());
+			for (int j = 0; j < i; j++) {
+				if (drawn[j] == drawn[i]) {
+					drawn[i] = random.nextInt(chromosomes.size());
+					j = -1;
+				}
+			}
+
+			Chromosome competitor = chromosomes.get(drawn[i]);
+			if (best == null || competitor.compareTo(best) > 0) {
+				best = competitor;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Uniform crossover, the same as in commons-math but with the generator
+	 * of the island.
+	 *
+	 * @param parents
+	 *            Selected chromosomes.
+	 * @param random
+	 *            Generator of the island.
+	 *
+	 * @return Offspring, the parents if they are not polygon lists.
+	 */
+	private ChromosomePair crossover(ChromosomePair parents, RandomGenerator random) {
+		if (parents.getFirst() instanceof PolygonListChromosome == false
+				|| parents.getSecond() instanceof PolygonListChromosome == false) {
+			return parents;
+		}
+
+		PolygonListChromosome first = (PolygonListChromosome) parents.getFirst();
+		PolygonListChromosome second = (PolygonListChromosome) parents.getSecond();
+		List<List<Point>> mother = first.getRepresentation();
+		List<List<Point>> father = second.getRepresentation();
+		if (mother.size() != father.size()) {
+			throw new IllegalArgumentException("Parents should have the same number of sub-polygons.");
+		}
+
+		List<List<Point>> one = new ArrayList<List<Point>>(mother.size());
+		List<List<Point>> two = new ArrayList<List<Point>>(father.size());
+		for (int k = 0; k < mother.size(); k++) {
+			if (random.nextDouble() < ratio) {
+				one.add(father.get(k));
+				two.add(mother.get(k));
+			} else {
+				one.add(mother.get(k));
+				two.add(father.get(k));
+			}
+		}
+
+		return new ChromosomePair(first.newFixedLengthChromosome(one), second.newFixedLengthChromosome(two));
+	}
+
+	/**
+	 * Send the best chromosomes of each island to another island, where they
+	 * replace the worst chromosomes.
+	 *
+	 * @param islands
+	 *            Populations of the islands.
+	 * @param random
+	 *            Generator of the migration targets.
+	 *
+	 * @return Populations after the migration.
+	 */
+	private List<ElitisticListPopulation> migrate(List<ElitisticListPopulation> islands, RandomGenerator random) {
+		int size = islands.size();
+		if (size < 2 || migrants == 0) {
+			return islands;
+		}
+
+		Comparator<Chromosome> order = Collections.reverseOrder();
+
+		/*
+		 * Chromosomes of each island from the best to the worst.
+		 */
+		List<List<Chromosome>> sorted = new ArrayList<List<Chromosome>>();
+		for (ElitisticListPopulation island : islands) {
+			List<Chromosome> list = new ArrayList<Chromosome>(island.getChromosomes());
+			Collections.sort(list, order);
+			sorted.add(list);
+		}
+
+		List<List<Chromosome>> result = new ArrayList<List<Chromosome>>();
+		for (List<Chromosome> list : sorted) {
+			result.add(new ArrayList<Chromosome>(list));
+		}
+
+		/*
+		 * An island can receive from more than one island in the random
+		 * topology, so the replaced positions are counted.
+		 */
+		int[] replaced = new int[size];
+		for (int i = 0; i < size; i++) {
+			int target = (migration == Migration.RING) ? (i + 1) % size : (i + 1 + random.nextInt(size - 1)) % size;
+
+			List<Chromosome> from = sorted.get(i);
+			List<Chromosome> to = result.get(target);
+			int count = Math.min(migrants, Math.min(from.size(), to.size() - replaced[target]));
+			for (int m = 0; m < count; m++) {
+				to.set(to.size() - 1 - replaced[target]++, from.get(m));
+			}
+		}
+
+		List<ElitisticListPopulation> populations = new ArrayList<ElitisticListPopulation>();
+		for (int i = 0; i < size; i++) {
+			populations.add(new ElitisticListPopulation(result.get(i), islands.get(i).getPopulationLimit(),
+					islands.get(i).getElitismRate()));
+		}
+		return populations;
+	}
+
+}
@@ -5,19 +5,13 @@ import java.awt.Polygon;
 import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.imageio.ImageIO;
 
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 /**
@@ -28,14 +22,9 @@ import org.json.simple.parser.ParseException;
 public class Main {
 
 	/**
-	 * Pseudo-random number generator.
+	 * Global polygon with its pipes.
 	 */
-	private final static Random PRNG = new Random();
-
-	/**
-	 * List of pipes.
-	 */
-	private static List<Pipe> pipes = new ArrayList<Pipe>();
+	private static Problem problem = null;
 
 	/**
 	 * Output image for results reporting.
@@ -47,267 +36,68 @@ public class Main {
 	 */
 	private static Graphics g = null;
 
-	/**
-	 * Add more candidates on the boundaries.
-	 * 
-	 * @param pipe
-	 *            Pipe to be checked.
-	 */
-	private static void boundaries(Pipe pipe) {
-		for (int j = 1; j < output.getHeight() - 1; j++) {
-			for (int i = 1; i < output.getWidth() - 1; i++) {
-				/*
-				 * It should be part of this pipe area.
-				 */
-				if (output.getRGB(i, j) != pipe.color.getRGB()) {
-					continue;
-				}
-
-				/*
-				 * Check for empty neighbors.
-				 */
-				if (output.getRGB(i - 1, j) == Color.BLACK.getRGB()) {
-					pipe.candidates.add(new Point(i - 1, j));
-				}
-				if (output.getRGB(i, j - 1) == Color.BLACK.getRGB()) {
-					pipe.candidates.add(new Point(i, j - 1));
-				}
-				if (output.getRGB(i + 1, j) == Color.BLACK.getRGB()) {
-					pipe.candidates.add(new Point(i + 1, j));
-				}
-				if (output.getRGB(i, j + 1) == Color.BLACK.getRGB()) {
-					pipe.candidates.add(new Point(i, j + 1));
-				}
-			}
-		}
-	}
-
-	/**
-	 * Distance between line AB and point P.
-	 * 
-	 * @param a
-	 *            First end of the line.
-	 * @param b
-	 *            Second end of the line.
-	 * @param p
-	 *            Point in 2D space.
-	 * 
-	 * @return Distance between the point and the line.
-	 */
-	private static double distance(Point a, Point b, Point p) {
-		double normal = Math.sqrt((b.x - a.x) * (b.x - a.x) + (b.y - a.y) * (b.y - a.y));
-		return Math.abs((p.x - a.x) * (b.y - a.y) - (p.y - a.y) * (b.x - a.x)) / normal;
-	}
-
-	/**
-	 * Do Monte-Carlo flooding step.
-	 * 
-	 * @param refine
-	 *            Refine number of candidates.
-	 * 
-	 * @return True if a step was done, false otherwise.
-	 */
-	private static boolean step(int refine) {
-		boolean result = false;
-
-		/*
-		 * Draw position of pipes areas.
-		 */
-		for (Pipe pipe : pipes) {
-			/*
-			 * Do nothing if the share of this pipe is complete.
-			 */
-			if (pipe.occupied >= pipe.area) {
-				continue;
-			}
-
-			/*
-			 * If there is no candidates check the boundaries.
-			 */
-			if (pipe.candidates.size() <= 0) {
-				boundaries(pipe);
-
-				/*
-				 * If there is no candidate pixels do nothing.
-				 */
-				if (pipe.candidates.size() <= 0) {
-					continue;
-				}
-			}
-
-			/*
-			 * Select random pixel to flood.
-			 */
-			Point next = pipe.candidates.get(PRNG.nextInt(pipe.candidates.size()));
-			for (int r = refine; r > 0; r--) {
-				Point alternative = pipe.candidates.get(PRNG.nextInt(pipe.candidates.size()));
-
-				/*
-				 * Distance to the line.
-				 */
-				double distance1 = distance(pipe.vertex1, pipe.vertex2, alternative);
-				double distance2 = distance(pipe.vertex1, pipe.vertex2, next);
-
-				if (distance1 < distance2) {
-					next = alternative;
-				} else if (distance1 == distance2
-						&& alternative.distance(pipe.location) < next.distance(pipe.location)) {
-					next = alternative;
-				}
-			}
-			pipe.candidates.remove(next);
-
-			/*
-			 * Change color only for unused pixels.
-			 */
-			if (output.getRGB(next.x, next.y) == Color.BLACK.getRGB()
-					|| output.getRGB(next.x, next.y) == Color.WHITE.getRGB()) {
-				g.setColor(pipe.color);
-				g.drawLine(next.x, next.y, next.x, next.y);
-				pipe.occupied++;
-			}
-
-			/*
-			 * Add neighbors for next flooding steps.
-			 */
-			if (next.x > 0 && output.getRGB(next.x - 1, next.y) == Color.BLACK.getRGB()) {
-				pipe.candidates.add(new Point(next.x - 1, next.y));
-			}
-			if (next.y > 0 && output.getRGB(next.x, next.y - 1) == Color.BLACK.getRGB()) {
-				pipe.candidates.add(new Point(next.x, next.y - 1));
-			}
-			if (next.x < output.getWidth() - 1 && output.getRGB(next.x + 1, next.y) == Color.BLACK.getRGB()) {
-				pipe.candidates.add(new Point(next.x + 1, next.y));
-			}
-			if (next.y < output.getHeight() - 1 && output.getRGB(next.x, next.y + 1) == Color.BLACK.getRGB()) {
-				pipe.candidates.add(new Point(next.x, next.y + 1));
-			}
-
-			/*
-			 * Step was done.
-			 */
-			result = true;
-		}
-
-		return result;
-	}
-
 	/**
 	 * Second flood algorithm.
-	 * 
-	 * @param refine
-	 *            How many random attempts to be done in order to refine the
-	 *            selection.
 	 */
-	private static void flood(int refine) {
-		for (Pipe pipe : pipes) {
-			g.setColor(pipe.color);
-			g.drawLine(pipe.vertex1.x, pipe.vertex1.y, pipe.vertex2.x, pipe.vertex2.y);
-		}
-
-		while (step(refine) == true) {
-		}
+	private static void flood() {
+		FloodEngine engine = new FloodEngine(output, problem.getPipes(), problem.getViewport());
+		engine.flood();
+		engine.paint(output);
 	}
 
 	/**
 	 * Transform the picture in squares.
 	 * 
+	 * @param output
+	 *            Image to transform.
+	 * @param pipes
+	 *            Pipes description.
 	 * @param side
 	 *            Square side size.
 	 */
-	private static void squareization(int side) {
-		/*
-		 * Step on each square.
-		 */
-		for (int a = 0; a < output.getHeight(); a += side) {
-			for (int b = 0; b < output.getWidth(); b += side) {
-				Map<Integer, Integer> counters = new HashMap<Integer, Integer>();
-
-				/*
-				 * Count all colors.
-				 */
-				for (int j = a; j < a + side && j < output.getHeight(); j++) {
-					for (int i = b; i < b + side && i < output.getWidth(); i++) {
-						int pixel = output.getRGB(i, j);
-
-						/*
-						 * Do not count the white color.
-						 */
-						if (pixel == Color.WHITE.getRGB()) {
-							continue;
-						}
-
-						if (counters.containsKey(pixel) == false) {
-							counters.put(pixel, 1);
-						} else {
-							counters.put(pixel, counters.get(pixel) + 1);
-						}
-					}
-				}
-
-				/*
-				 * Find the most presented color.
-				 */
-				int max = 0;
-				int color = output.getRGB(a, b);
-				for (Integer key : counters.keySet()) {
-					if (counters.get(key) > max) {
-						color = key;
-						max = counters.get(key);
-					}
-				}
-
-				/*
-				 * Occupy the square.
-				 */
-				g.setColor(new Color(color));
-				for (int j = a; j < a + side && j < output.getHeight(); j++) {
-					for (int i = b; i < b + side && i < output.getWidth(); i++) {
-						/*
-						 * Do not change pixels with white color.
-						 */
-						if (output.getRGB(i, j) == Color.WHITE.getRGB()) {
-							continue;
-						}
-
-						g.drawLine(i, j, i, j);
-					}
-				}
-			}
-		}
+	static void squareization(BufferedImage output, List<Pipe> pipes, int side) {
+		FloodEngine engine = new FloodEngine(output, pipes);
+		engine.squareization(ForkJoinPool.commonPool(), side);
+		engine.paint(output);
 	}
 
 	/**
-	 * Application single entry point method.
+	 * Read problem description from JSON, CSV or binary input file.
+	 * 
+	 * @param file
+	 *            Path to the input file.
+	 * @param mode
+	 *            Raster or analytic fitness calculation.
+	 * @param scale
+	 *            Pixels per polygon unit of the raster calculations.
+	 * 
+	 * @return Global polygon with its pipes.
 	 * 
-	 * @param args
-	 *            Command line arguments.
 	 * @throws IOException
 	 *             When there is a problem with the input-output system.
 	 * @throws ParseException
 	 *             If there is a problem with JSON parsing.
 	 */
-	public static void main(String[] args) throws IOException, ParseException {
-		JSONParser parser = new JSONParser();
-		JSONObject json = (JSONObject) parser.parse(new FileReader("./dat/in03.json"));
-
-		/*
-		 * Read polygon vertices.
-		 */
-		List<Integer> x = new ArrayList<Integer>();
-		List<Integer> y = new ArrayList<Integer>();
-		for (Object value : (JSONArray) json.get("vertices")) {
-			x.add(Integer.valueOf("" + ((JSONObject) value).get("x")));
-			y.add(Integer.valueOf("" + ((JSONObject) value).get("y")));
-		}
+	static Problem read(String file, FitnessMode mode, double scale) throws IOException, ParseException {
+		return problem(InputReader.read(file), mode, scale);
+	}
 
-		/*
-		 * Read pipes shares.
-		 */
-		List<Double> shares = new ArrayList<Double>();
-		for (Object value : (JSONArray) json.get("shares")) {
-			shares.add(Double.valueOf("" + value));
-		}
+	/**
+	 * Problem description from validated input.
+	 * 
+	 * @param input
+	 *            Polygon vertices and pipes shares.
+	 * @param mode
+	 *            Raster or analytic fitness calculation.
+	 * @param scale
+	 *            Pixels per polygon unit of the raster calculations.
+	 * 
+	 * @return Global polygon with its pipes.
+	 */
+	static Problem problem(InputReader.Input input, FitnessMode mode, double scale) {
+		int[] x = input.getX();
+		int[] y = input.getY();
+		double[] shares = input.getShares();
 
 		/*
 		 * Pipes colors.
@@ -322,7 +112,7 @@ public class Main {
 			/*
 			 * Select random colors.
 			 */
-			for (int c = 0; c < shares.size(); c++) {
+			for (int c = 0; c < shares.length; c++) {
 				colors.add(new Color((float) Math.random(), (float) Math.random(), (float) Math.random()));
 			}
 
@@ -339,70 +129,84 @@ public class Main {
 		} while (colors.contains(Color.BLACK) || colors.contains(Color.WHITE));
 
 		/*
-		 * Save result.
+		 * Generate polygon.
 		 */
-		output = new BufferedImage(1000, 1000, BufferedImage.TYPE_INT_RGB);
-		g = output.getGraphics();
+		Polygon polygon = new Polygon(x, y, input.size());
 
 		/*
-		 * White background.
+		 * Calculate area in number of pixels, only the bounding box of the
+		 * polygon is scanned.
 		 */
-		g.setColor(Color.WHITE);
-		g.fillRect(0, 0, output.getWidth(), output.getHeight());
+		Viewport viewport = Viewport.of(polygon, scale);
+		int area = viewport.area(polygon);
 
 		/*
-		 * Generate polygon.
+		 * Fill pipes structure.
 		 */
-		Polygon polygon = new Polygon(x.stream().mapToInt(Integer::intValue).toArray(),
-				y.stream().mapToInt(Integer::intValue).toArray(), shares.size());
+		List<Pipe> pipes = new ArrayList<Pipe>();
+		for (int k = 0, l; k < shares.length; k++) {
+			l = (k + 1) % shares.length;
+			pipes.add(new Pipe(colors.get(k), new Point(x[k], y[k]), new Point(x[l], y[l]), area, shares[k]));
+		}
 
-		/*
-		 * Black initial area.
-		 */
-		g.setColor(Color.BLACK);
-		g.drawPolygon(polygon);
-		g.fillPolygon(polygon);
+		return new Problem(polygon, pipes, mode, new FitnessCache(Problem.DEFAULT_CACHE_CAPACITY), viewport);
+	}
 
-		/*
-		 * Calculate area in number of pixels.
-		 */
-		int area = 0;
-		for (int j = 0; j < output.getHeight(); j++) {
-			for (int i = 0; i < output.getWidth(); i++) {
-				if (output.getRGB(i, j) == Color.BLACK.getRGB()) {
-					area++;
-				}
-			}
+	/**
+	 * Draw solution over canvas.
+	 * 
+	 * @param image
+	 *            Canvas image of the problem viewport.
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param solution
+	 *            Sub-polygon for each pipe.
+	 */
+	static void draw(BufferedImage image, Problem problem, List<List<Point>> solution) {
+		Graphics graphics = image.getGraphics();
+
+		int index = 0;
+		for (List<Point> points : solution) {
+			Polygon shape = problem.getViewport().pixels(points);
+			graphics.setColor(problem.getPipes().get(index++).color);
+			graphics.drawPolygon(shape);
+			graphics.fillPolygon(shape);
 		}
+	}
+
+	/**
+	 * Application single entry point method.
+	 * 
+	 * @param args
+	 *            Command line arguments.
+	 * @throws IOException
+	 *             When there is a problem with the input-output system.
+	 * @throws ParseException
+	 *             If there is a problem with JSON parsing.
+	 */
+	public static void main(String[] args) throws IOException, ParseException {
+		problem = read("./dat/in03.json", FitnessMode.RASTER, 1);
 
 		/*
-		 * Fill pipes structure.
+		 * Save result.
 		 */
-		for (int k = 0, l; k < shares.size(); k++) {
-			l = (k + 1) % shares.size();
-			pipes.add(new Pipe(colors.get(k), new Point(x.get(k), y.get(k)), new Point(x.get(l), y.get(l)), area,
-					shares.get(k)));
-		}
+		output = problem.getViewport().canvas(problem.getPolygon());
+		g = output.getGraphics();
 
-		// flood(0);
+		// flood();
 
 		GeneticAlgorithmSolver ga = new GeneticAlgorithmSolver(37, 0.9, 0.01, 2, 0.1, 60);
-		List<List<Point>> solution = ga.solve(polygon, pipes);
-		int index = 0;
-		for (List<Point> points : solution) {
-			Polygon shape = new Polygon();
-			for (Point vertex : points) {
-				shape.addPoint(vertex.x, vertex.y);
-			}
-			g.setColor(pipes.get(index++).color);
-			g.drawPolygon(shape);
-			g.fillPolygon(shape);
-		}
+		List<List<Point>> solution = ga.solve(problem, StoppingConditions
+				.any(StoppingConditions.stagnation(1000), StoppingConditions.targetAreaError(0.005)));
+		draw(output, problem, solution);
 
 		/*
-		 * Store current image in an image file.
+		 * Store current image in an image file and the polygons in vector
+		 * files.
 		 */
 		ImageIO.write((RenderedImage) output, "png", new File("./bin/out.png"));
+		SolutionWriter.write(new File("./bin/out.svg"), problem, solution, null);
+		SolutionWriter.write(new File("./bin/out.geojson"), problem, solution, null);
 	}
 
 }
@@ -0,0 +1,226 @@
+import java.awt.Point;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable sub-polygon with the vertices packed in a single array of
+ * interleaved coordinates (x0, y0, x1, y1, ...). It is a list of points for
+ * compatibility, but each returned point is a copy, so the geometry can not
+ * be changed through it. Changes produce new polygons, which makes the
+ * sharing of unchanged sub-polygons between chromosomes safe.
+ *
+ * @author Todor Balabanov
+ */
+public final class PackedPolygon extends AbstractList<Point> implements RandomAccess {
+
+	/**
+	 * Interleaved coordinates.
+	 */
+	private final int[] xy;
+
+	/**
+	 * Cached hash code.
+	 */
+	private final int hash;
+
+	/**
+	 * Constructor which takes ownership of the coordinates array.
+	 *
+	 * @param xy
+	 *            Interleaved coordinates.
+	 */
+	private PackedPolygon(int[] xy) {
+		this.xy = xy;
+
+		/*
+		 * The same value as the list hash code of the points, with the point
+		 * hash code of Point2D computed inline.
+		 */
+		int result = 1;
+		for (int i = 0; i < xy.length; i += 2) {
+			long bits = Double.doubleToLongBits(xy[i]);
+			bits ^= Double.doubleToLongBits(xy[i + 1]) * 31;
+			result = 31 * result + (((int) bits) ^ ((int) (bits >> 32)));
+		}
+		this.hash = result;
+	}
+
+	/**
+	 * Packed copy of a list of points.
+	 *
+	 * @param points
+	 *            Vertices.
+	 *
+	 * @return Packed polygon, the same object if it is already packed.
+	 */
+	public static PackedPolygon of(List<Point> points) {
+		if (points instanceof PackedPolygon) {
+			return (PackedPolygon) points;
+		}
+
+		int[] xy = new int[2 * points.size()];
+		int i = 0;
+		for (Point point : points) {
+			xy[i++] = point.x;
+			xy[i++] = point.y;
+		}
+		return new PackedPolygon(xy);
+	}
+
+	/**
+	 * Polygon from interleaved coordinates.
+	 *
+	 * @param xy
+	 *            Interleaved coordinates, they are copied.
+	 *
+	 * @return Packed polygon.
+	 */
+	public static PackedPolygon of(int... xy) {
+		if (xy.length % 2 != 0) {
+			throw new IllegalArgumentException("Coordinates should be in pairs.");
+		}
+		return new PackedPolygon(xy.clone());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Point get(int index) {
+		return new Point(x(index), y(index));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return xy.length / 2;
+	}
+
+	/**
+	 * Vertex x coordinate.
+	 *
+	 * @param index
+	 *            Vertex index.
+	 *
+	 * @return Coordinate value.
+	 */
+	public int x(int index) {
+		return xy[2 * index];
+	}
+
+	/**
+	 * Vertex y coordinate.
+	 *
+	 * @param index
+	 *            Vertex index.
+	 *
+	 * @return Coordinate value.
+	 */
+	public int y(int index) {
+		return xy[2 * index + 1];
+	}
+
+	/**
+	 * Copy of the interleaved coordinates.
+	 *
+	 * @return Coordinates array.
+	 */
+	public int[] coordinates() {
+		return xy.clone();
+	}
+
+	/**
+	 * Polygon with a moved vertex.
+	 *
+	 * @param index
+	 *            Vertex index.
+	 * @param dx
+	 *            Change of the x coordinate.
+	 * @param dy
+	 *            Change of the y coordinate.
+	 *
+	 * @return New polygon.
+	 */
+	public PackedPolygon moved(int index, int dx, int dy) {
+		int[] result = xy.clone();
+		result[2 * index] += dx;
+		result[2 * index + 1] += dy;
+		return new PackedPolygon(result);
+	}
+
+	/**
+	 * Polygon with an additional vertex.
+	 *
+	 * @param index
+	 *            Index of the new vertex.
+	 * @param x
+	 *            Vertex x coordinate.
+	 * @param y
+	 *            Vertex y coordinate.
+	 *
+	 * @return New polygon.
+	 */
+	public PackedPolygon inserted(int index, int x, int y) {
+		int[] result = new int[xy.length + 2];
+		System.arraycopy(xy, 0, result, 0, 2 * index);
+		result[2 * index] = x;
+		result[2 * index + 1] = y;
+		System.arraycopy(xy, 2 * index, result, 2 * index + 2, xy.length - 2 * index);
+		return new PackedPolygon(result);
+	}
+
+	/**
+	 * Polygon without a vertex.
+	 *
+	 * @param index
+	 *            Index of the removed vertex.
+	 *
+	 * @return New polygon.
+	 */
+	public PackedPolygon removed(int index) {
+		int[] result = new int[xy.length - 2];
+		System.arraycopy(xy, 0, result, 0, 2 * index);
+		System.arraycopy(xy, 2 * index + 2, result, 2 * index, xy.length - 2 * index - 2);
+		return new PackedPolygon(result);
+	}
+
+	/**
+	 * Compare vertices of two polygons.
+	 *
+	 * @param index
+	 *            Vertex index in this polygon.
+	 * @param other
+	 *            Other polygon.
+	 * @param position
+	 *            Vertex index in the other polygon.
+	 *
+	 * @return True if the vertices have the same coordinates.
+	 */
+	public boolean same(int index, PackedPolygon other, int position) {
+		return xy[2 * index] == other.xy[2 * position] && xy[2 * index + 1] == other.xy[2 * position + 1];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if (object instanceof PackedPolygon) {
+			return hash == ((PackedPolygon) object).hash && Arrays.equals(xy, ((PackedPolygon) object).xy);
+		}
+		return super.equals(object);
+	}
+
+}
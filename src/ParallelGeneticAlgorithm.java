@@ -0,0 +1,100 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.math3.genetics.Chromosome;
+import org.apache.commons.math3.genetics.CrossoverPolicy;
+import org.apache.commons.math3.genetics.GeneticAlgorithm;
+import org.apache.commons.math3.genetics.MutationPolicy;
+import org.apache.commons.math3.genetics.Population;
+import org.apache.commons.math3.genetics.SelectionPolicy;
+
+/**
+ * Genetic algorithm which evaluates each generation concurrently before the
+ * selection. The commons-math implementation calculates the fitness lazily in
+ * the selection and sorting, which keeps a single core busy.
+ * 
+ * @author Todor Balabanov
+ */
+public class ParallelGeneticAlgorithm extends GeneticAlgorithm {
+
+	/**
+	 * Thread pool for fitness evaluation.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Number of generations done by this algorithm.
+	 */
+	private long generation = 0;
+
+	/**
+	 * Constructor with all parameters.
+	 * 
+	 * @param crossoverPolicy
+	 *            Crossover policy.
+	 * @param crossoverRate
+	 *            Crossover rate.
+	 * @param mutationPolicy
+	 *            Mutation policy.
+	 * @param mutationRate
+	 *            Mutation rate.
+	 * @param selectionPolicy
+	 *            Selection policy.
+	 * @param pool
+	 *            Thread pool for fitness evaluation.
+	 */
+	public ParallelGeneticAlgorithm(CrossoverPolicy crossoverPolicy, double crossoverRate,
+			MutationPolicy mutationPolicy, double mutationRate, SelectionPolicy selectionPolicy, ForkJoinPool pool) {
+		super(crossoverPolicy, crossoverRate, mutationPolicy, mutationRate, selectionPolicy);
+
+		this.pool = pool;
+	}
+
+	/**
+	 * Calculate fitness of all chromosomes in the population. Fitness values
+	 * are cached inside the chromosomes, so the selection does not calculate
+	 * them again.
+	 * 
+	 * @param population
+	 *            Population to evaluate.
+	 */
+	public void evaluate(Population population) {
+		List<Chromosome> chromosomes = new ArrayList<Chromosome>();
+		for (Chromosome chromosome : population) {
+			chromosomes.add(chromosome);
+		}
+
+		try {
+			pool.submit(() -> chromosomes.parallelStream().forEach(Chromosome::getFitness)).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Population nextGeneration(Population current) {
+		if (Telemetry.generations() == false) {
+			evaluate(current);
+			return super.nextGeneration(current);
+		}
+
+		long start = System.nanoTime();
+		long evaluations = Telemetry.evaluations(current);
+		evaluate(current);
+		long evaluated = System.nanoTime();
+		evaluations = Telemetry.evaluations(current) - evaluations;
+
+		Population next = super.nextGeneration(current);
+		Telemetry.generation(current, 0, generation++, System.nanoTime() - start, evaluations, evaluated - start);
+
+		return next;
+	}
+
+}
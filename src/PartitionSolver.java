@@ -0,0 +1,645 @@
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Deterministic partitioning without evolution. Each pipe owns the part of
+ * the global polygon which is closest to its side line, with the distances
+ * divided by a weight of the pipe. The border between two cells is a line and
+ * the border between the cells of two neighbouring sides goes through their
+ * common vertex, so in a convex polygon each cell is a convex polygon which
+ * contains its whole side.
+ *
+ * A bigger weight sweeps the cell further inward from its side. The weights
+ * are tuned with binary searches, one pipe at a time (Gauss-Seidel), until
+ * each cell area matches the pipe share within the tolerance. Non-convex
+ * polygons are partitioned as well, but reflex sides can take cells which do
+ * not touch them. Such cells can not always be written as a single
+ * sub-polygon starting with the pipe side, so the sub-polygons are checked
+ * against the cells and the solution is rejected when they do not match. The
+ * solution can be used as a seed of the genetic algorithm.
+ *
+ * Each side with a part of the polygon behind its line doubles the work of a
+ * single area calculation, so only polygons with a few such sides and a
+ * limited number of vertices are accepted. The search also stops at a time
+ * limit with the weights found so far. Other polygons are left to the genetic
+ * algorithm.
+ *
+ * @author Todor Balabanov
+ */
+public class PartitionSolver {
+
+	/**
+	 * Maximal number of vertices of an accepted polygon.
+	 */
+	public static final int MAX_VERTICES = 128;
+
+	/**
+	 * Maximal number of sides with a part of the polygon behind their line.
+	 */
+	public static final int MAX_CUTTING_SIDES = 6;
+
+	/**
+	 * Maximal ratio between the weights of two pipes is the square of it.
+	 */
+	private static final double WEIGHT_RANGE = 1E6;
+
+	/**
+	 * Number of bisections in a single weight search.
+	 */
+	private static final int BISECTIONS = 60;
+
+	/**
+	 * Vertices closer than this behind a side line are on the line.
+	 */
+	private static final double EPSILON = 1E-9;
+
+	/**
+	 * Area tolerance as part of the global polygon area.
+	 */
+	private final double tolerance;
+
+	/**
+	 * Maximal number of passes over all pipes.
+	 */
+	private final int sweeps;
+
+	/**
+	 * Time limit in milliseconds.
+	 */
+	private final long timeout;
+
+	/**
+	 * Constructor with default parameters.
+	 */
+	public PartitionSolver() {
+		this(1E-4, 100, 1000);
+	}
+
+	/**
+	 * Constructor with all parameters.
+	 *
+	 * @param tolerance
+	 *            Area tolerance as part of the global polygon area.
+	 * @param sweeps
+	 *            Maximal number of passes over all pipes.
+	 * @param timeout
+	 *            Time limit in milliseconds, the weights found until then are
+	 *            used.
+	 */
+	public PartitionSolver(double tolerance, int sweeps, long timeout) {
+		super();
+
+		if (tolerance <= 0 || sweeps <= 0 || timeout <= 0) {
+			throw new IllegalArgumentException("Tolerance, number of sweeps and time limit should be positive.");
+		}
+
+		this.tolerance = tolerance;
+		this.sweeps = sweeps;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Check whether a polygon is small enough for the deterministic
+	 * partitioning.
+	 *
+	 * @param polygon
+	 *            Global polygon.
+	 * @param pipes
+	 *            Pipes description.
+	 *
+	 * @return True if the number of vertices and the number of sides with a
+	 *         part of the polygon behind their line are within the limits.
+	 *         The search can still reject a non-convex polygon.
+	 */
+	public static boolean accepts(Polygon polygon, List<Pipe> pipes) {
+		if (polygon.npoints > MAX_VERTICES || pipes.size() > MAX_VERTICES) {
+			return false;
+		}
+
+		int count = 0;
+		for (boolean value : new Cells(polygon, pipes).cutting) {
+			if (value == true) {
+				count++;
+			}
+		}
+
+		return count <= MAX_CUTTING_SIDES;
+	}
+
+	/**
+	 * Check whether a problem is small enough for the deterministic
+	 * partitioning.
+	 *
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 *
+	 * @return True if the polygon is within the limits.
+	 */
+	public static boolean accepts(Problem problem) {
+		return accepts(problem.getPolygon(), problem.getPipes());
+	}
+
+	/**
+	 * Search for solution.
+	 *
+	 * @param polygon
+	 *            Global polygon.
+	 * @param pipes
+	 *            Pipes description.
+	 *
+	 * @return Sub-polygon for each pipe, starting with the pipe side.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If the polygon is not accepted.
+	 * @throws IllegalStateException
+	 *             If the sub-polygons do not match the cells.
+	 */
+	public List<List<Point>> solve(Polygon polygon, List<Pipe> pipes) {
+		if (accepts(polygon, pipes) == false) {
+			throw new IllegalArgumentException("Polygon is too big or has too many reflex sides for partitioning.");
+		}
+
+		Cells cells = new Cells(polygon, pipes);
+		int size = pipes.size();
+		long deadline = System.currentTimeMillis() + timeout;
+
+		loop: for (int sweep = 0; sweep < sweeps; sweep++) {
+			double error = 0;
+			for (int k = 0; k < size; k++) {
+				error = Math.max(error, Math.abs(cells.area(k) - cells.targets[k]));
+			}
+			if (error <= tolerance * cells.total) {
+				break;
+			}
+
+			for (int k = 0; k < size; k++) {
+				if (System.currentTimeMillis() > deadline) {
+					break loop;
+				}
+				cells.search(k);
+			}
+			cells.normalize();
+		}
+
+		List<List<Point>> solution = new ArrayList<List<Point>>();
+		for (int k = 0; k < size; k++) {
+			solution.add(vertices(merged(cells.pieces(k)), pipes.get(k), cells.lines, k));
+		}
+
+		if (matches(polygon, pipes, cells, solution) == false) {
+			throw new IllegalStateException("Sub-polygons do not match the cells of the partitioning.");
+		}
+
+		return solution;
+	}
+
+	/**
+	 * Search for solution.
+	 *
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 *
+	 * @return Sub-polygon for each pipe, starting with the pipe side.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If the polygon is not accepted.
+	 * @throws IllegalStateException
+	 *             If the sub-polygons do not match the cells.
+	 */
+	public List<List<Point>> solve(Problem problem) {
+		return solve(problem.getPolygon(), problem.getPipes());
+	}
+
+	/**
+	 * Cells of the pipes for the current weights. A cell is the set of points
+	 * in front of the pipe side with distance to the side line divided by the
+	 * pipe weight not bigger than the same ratio for any other side in front
+	 * of the point. Points behind the line of a side, which is possible only
+	 * for sides next to reflex vertices, are never owned by that side. Such a
+	 * side splits the cells in two convex pieces each, so the cells stay
+	 * exact and the cell area grows with the weight of its pipe.
+	 */
+	private static final class Cells {
+
+		/**
+		 * Interleaved coordinates of the global polygon.
+		 */
+		private final double[] xy;
+
+		/**
+		 * Number of vertices in the global polygon.
+		 */
+		private final int n;
+
+		/**
+		 * Absolute area of the global polygon.
+		 */
+		private final double total;
+
+		/**
+		 * Unit normal of each side line pointing inside, as a*x + b*y + c.
+		 */
+		private final double[] lines;
+
+		/**
+		 * Sides with a part of the global polygon behind their line.
+		 */
+		private final boolean[] cutting;
+
+		/**
+		 * Target area of each pipe.
+		 */
+		private final double[] targets;
+
+		/**
+		 * Weight of each pipe.
+		 */
+		private final double[] weights;
+
+		/**
+		 * Clipping buffer for each level of the recursion, allocated when
+		 * the level is reached.
+		 */
+		private final double[][] buffers;
+
+		/**
+		 * Constructor with all parameters.
+		 *
+		 * @param polygon
+		 *            Global polygon.
+		 * @param pipes
+		 *            Pipes description.
+		 */
+		private Cells(Polygon polygon, List<Pipe> pipes) {
+			n = polygon.npoints;
+			xy = new double[2 * n];
+			for (int i = 0; i < n; i++) {
+				xy[2 * i] = polygon.xpoints[i];
+				xy[2 * i + 1] = polygon.ypoints[i];
+			}
+			double signed = Geometry.area(xy, n);
+			double sign = (signed < 0) ? -1 : +1;
+			total = Math.abs(signed);
+
+			int size = pipes.size();
+			lines = new double[3 * size];
+			cutting = new boolean[size];
+			targets = new double[size];
+			for (int k = 0; k < size; k++) {
+				Pipe pipe = pipes.get(k);
+				double dx = pipe.vertex2.x - pipe.vertex1.x;
+				double dy = pipe.vertex2.y - pipe.vertex1.y;
+				double length = Math.hypot(dx, dy);
+				if (length == 0) {
+					throw new IllegalArgumentException("Pipe side " + k + " has zero length.");
+				}
+
+				lines[3 * k] = -sign * dy / length;
+				lines[3 * k + 1] = sign * dx / length;
+				lines[3 * k + 2] = sign * (pipe.vertex1.x * dy - pipe.vertex1.y * dx) / length;
+				for (int i = 0; i < n && cutting[k] == false; i++) {
+					cutting[k] = distance(k, xy[2 * i], xy[2 * i + 1]) < -EPSILON;
+				}
+				targets[k] = pipe.share * total / 100D;
+			}
+
+			weights = new double[size];
+			Arrays.fill(weights, 1D);
+			buffers = new double[size + 2][];
+			buffers[0] = new double[2 * n];
+		}
+
+		/**
+		 * Signed distance to a side line, positive inside.
+		 *
+		 * @param k
+		 *            Index of the side.
+		 * @param x
+		 *            Point x.
+		 * @param y
+		 *            Point y.
+		 *
+		 * @return Distance.
+		 */
+		private double distance(int k, double x, double y) {
+			return lines[3 * k] * x + lines[3 * k + 1] * y + lines[3 * k + 2];
+		}
+
+		/**
+		 * Binary search of a single weight, while all other weights are
+		 * fixed.
+		 *
+		 * @param k
+		 *            Index of the pipe.
+		 */
+		private void search(int k) {
+			double low = -Math.log(WEIGHT_RANGE);
+			double high = +Math.log(WEIGHT_RANGE);
+			for (int i = 0; i < BISECTIONS; i++) {
+				double middle = (low + high) / 2D;
+				weights[k] = Math.exp(middle);
+				if (area(k) < targets[k]) {
+					low = middle;
+				} else {
+					high = middle;
+				}
+			}
+			weights[k] = Math.exp((low + high) / 2D);
+		}
+
+		/**
+		 * Only the ratios of the weights matter, so their geometric mean is
+		 * kept at one.
+		 */
+		private void normalize() {
+			double mean = 0;
+			for (double weight : weights) {
+				mean += Math.log(weight);
+			}
+			mean = Math.exp(mean / weights.length);
+			for (int k = 0; k < weights.length; k++) {
+				weights[k] /= mean;
+			}
+		}
+
+		/**
+		 * Area of a single cell.
+		 *
+		 * @param k
+		 *            Index of the pipe.
+		 *
+		 * @return Absolute area.
+		 */
+		private double area(int k) {
+			return Math.abs(cell(k, null));
+		}
+
+		/**
+		 * Convex pieces of a single cell.
+		 *
+		 * @param k
+		 *            Index of the pipe.
+		 *
+		 * @return Interleaved coordinates of each piece.
+		 */
+		private List<double[]> pieces(int k) {
+			List<double[]> pieces = new ArrayList<double[]>();
+			cell(k, pieces);
+			return pieces;
+		}
+
+		/**
+		 * Clip the global polygon to a cell.
+		 *
+		 * @param k
+		 *            Index of the pipe.
+		 * @param pieces
+		 *            Output for the pieces, null if only the area is needed.
+		 *
+		 * @return Signed area.
+		 */
+		private double cell(int k, List<double[]> pieces) {
+			System.arraycopy(xy, 0, buffers[0], 0, 2 * n);
+			if (cutting[k] == false) {
+				return visit(0, n, k, 0, pieces);
+			}
+
+			return visit(1, clip(0, n, lines[3 * k], lines[3 * k + 1], lines[3 * k + 2]), k, 0, pieces);
+		}
+
+		/**
+		 * Recursive clipping with the borders to the other sides.
+		 *
+		 * @param level
+		 *            Recursion level, the index of the buffer with the
+		 *            subject.
+		 * @param m
+		 *            Number of vertices in the subject.
+		 * @param k
+		 *            Index of the pipe.
+		 * @param j
+		 *            Index of the next other side.
+		 * @param pieces
+		 *            Output for the pieces, null if only the area is needed.
+		 *
+		 * @return Signed area of the subject inside the cell.
+		 */
+		private double visit(int level, int m, int k, int j, List<double[]> pieces) {
+			if (j == k) {
+				j++;
+			}
+			if (m == 0) {
+				return 0;
+			}
+			if (j >= weights.length) {
+				if (pieces != null) {
+					pieces.add(Arrays.copyOf(buffers[level], 2 * m));
+				}
+				return Geometry.area(buffers[level], m);
+			}
+
+			/*
+			 * Half-plane d(j) / w(j) - d(k) / w(k) >= 0.
+			 */
+			double a = lines[3 * j] / weights[j] - lines[3 * k] / weights[k];
+			double b = lines[3 * j + 1] / weights[j] - lines[3 * k + 1] / weights[k];
+			double c = lines[3 * j + 2] / weights[j] - lines[3 * k + 2] / weights[k];
+			double sum = visit(level + 1, clip(level, m, a, b, c), k, j + 1, pieces);
+
+			/*
+			 * The part behind the side line is not owned by the side.
+			 */
+			if (cutting[j] == true) {
+				sum += visit(level + 1, clip(level, m, -lines[3 * j], -lines[3 * j + 1], -lines[3 * j + 2]), k,
+						j + 1, pieces);
+			}
+
+			return sum;
+		}
+
+		/**
+		 * Clip the subject of a level into the buffer of the next level.
+		 *
+		 * @param level
+		 *            Recursion level.
+		 * @param m
+		 *            Number of vertices in the subject.
+		 * @param a
+		 *            Coefficient in front of x.
+		 * @param b
+		 *            Coefficient in front of y.
+		 * @param c
+		 *            Free coefficient.
+		 *
+		 * @return Number of vertices in the result.
+		 */
+		private int clip(int level, int m, double a, double b, double c) {
+			/*
+			 * Each edge of the subject gives at most two vertices.
+			 */
+			if (buffers[level + 1] == null || buffers[level + 1].length < 4 * m) {
+				buffers[level + 1] = new double[4 * m];
+			}
+			return Geometry.clip(buffers[level], m, a, b, c, buffers[level + 1]);
+		}
+
+	}
+
+	/**
+	 * Check the sub-polygons against the cells. In a non-convex polygon the
+	 * bridges between the pieces of a cell and the pipe side put in front can
+	 * cross other pieces, then the sub-polygons overlap and miss parts of
+	 * their cells. Rounding to integer vertices moves each edge by at most half
+	 * a pixel diagonal, so the area of each sub-polygon inside the global
+	 * polygon should differ from its cell area by at most that much over its
+	 * perimeter, and the black area should be within the sum of these bounds.
+	 *
+	 * @param polygon
+	 *            Global polygon.
+	 * @param pipes
+	 *            Pipes description.
+	 * @param cells
+	 *            Cells of the found weights.
+	 * @param solution
+	 *            Sub-polygon for each pipe.
+	 *
+	 * @return True if the sub-polygons match the cells, false otherwise.
+	 */
+	private static boolean matches(Polygon polygon, List<Pipe> pipes, Cells cells, List<List<Point>> solution) {
+		AnalyticFitness.Evaluation evaluation = new AnalyticFitness(polygon, pipes).evaluation(solution);
+
+		double sum = 0;
+		for (int k = 0; k < solution.size(); k++) {
+			List<Point> points = solution.get(k);
+			double bound = EPSILON * cells.total;
+			for (int i = 0, j = points.size() - 1; i < points.size(); j = i++) {
+				bound += Math.sqrt(0.5D) * points.get(i).distance(points.get(j));
+			}
+
+			if (Math.abs(evaluation.area(k) - cells.area(k)) > bound) {
+				return false;
+			}
+			sum += bound;
+		}
+
+		return evaluation.black() <= sum;
+	}
+
+	/**
+	 * Join the pieces of a cell in a single polygon. Each piece is attached to
+	 * the closest vertex of the polygon with a bridge which is traversed in
+	 * both directions, so the area is the sum of the pieces areas.
+	 *
+	 * @param pieces
+	 *            Interleaved coordinates of each piece.
+	 *
+	 * @return Interleaved coordinates of the polygon.
+	 */
+	private static double[] merged(List<double[]> pieces) {
+		if (pieces.isEmpty() == true) {
+			return new double[0];
+		}
+
+		double[] result = pieces.get(0);
+		for (int p = 1; p < pieces.size(); p++) {
+			double[] piece = pieces.get(p);
+			int m = result.length / 2;
+			int l = piece.length / 2;
+
+			int from = 0;
+			int to = 0;
+			double distance = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < m; i++) {
+				for (int j = 0; j < l; j++) {
+					double value = Point2D.distanceSq(result[2 * i], result[2 * i + 1], piece[2 * j], piece[2 * j + 1]);
+					if (value < distance) {
+						distance = value;
+						from = i;
+						to = j;
+					}
+				}
+			}
+
+			double[] joined = new double[2 * (m + l + 2)];
+			int count = 0;
+			for (int i = 0; i <= from; i++) {
+				joined[count++] = result[2 * i];
+				joined[count++] = result[2 * i + 1];
+			}
+			for (int j = 0; j <= l; j++) {
+				joined[count++] = piece[2 * ((to + j) % l)];
+				joined[count++] = piece[2 * ((to + j) % l) + 1];
+			}
+			for (int i = from; i < m; i++) {
+				joined[count++] = result[2 * i];
+				joined[count++] = result[2 * i + 1];
+			}
+			result = joined;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Integer vertices of a cell, rotated so the pipe side comes first.
+	 *
+	 * @param cell
+	 *            Interleaved coordinates of the cell.
+	 * @param pipe
+	 *            Pipe of the cell.
+	 * @param lines
+	 *            Inside pointing side lines.
+	 * @param k
+	 *            Index of the pipe.
+	 *
+	 * @return Sub-polygon of the pipe.
+	 */
+	private static List<Point> vertices(double[] cell, Pipe pipe, double[] lines, int k) {
+		int m = cell.length / 2;
+		List<Point> points = new ArrayList<Point>();
+		points.add(pipe.vertex1);
+		points.add(pipe.vertex2);
+
+		/*
+		 * The cell vertices follow the order of the global polygon, so the
+		 * pair of consecutive vertices closest to the pipe side is replaced
+		 * by the side and the walk continues with all other vertices.
+		 */
+		int start = 0;
+		double distance = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < m; i++) {
+			int j = (i + 1) % m;
+			double value = pipe.vertex1.distanceSq(cell[2 * i], cell[2 * i + 1])
+					+ pipe.vertex2.distanceSq(cell[2 * j], cell[2 * j + 1]);
+			if (value < distance) {
+				distance = value;
+				start = i;
+			}
+		}
+		for (int i = 2; i < m; i++) {
+			int j = (start + i) % m;
+			Point point = new Point((int) Math.round(cell[2 * j]), (int) Math.round(cell[2 * j + 1]));
+			if (point.equals(points.get(points.size() - 1)) == false) {
+				points.add(point);
+			}
+		}
+		if (points.size() > 3 && points.get(points.size() - 1).equals(pipe.vertex1) == true) {
+			points.remove(points.size() - 1);
+		}
+
+		/*
+		 * Empty cell of a zero share is a thin triangle on the side.
+		 */
+		if (points.size() < 3) {
+			points.add(new Point((int) Math.round((pipe.vertex1.x + pipe.vertex2.x) / 2D + lines[3 * k]),
+					(int) Math.round((pipe.vertex1.y + pipe.vertex2.y) / 2D + lines[3 * k + 1])));
+		}
+
+		return points;
+	}
+
+}
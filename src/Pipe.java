@@ -1,8 +1,6 @@
 import java.awt.Color;
 import java.awt.Point;
 import java.awt.Polygon;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Pipe description.
@@ -46,11 +44,6 @@ class Pipe {
 	 */
 	public int occupied = 0;
 
-	/**
-	 * List of color flood candidate pixels.
-	 */
-	public List<Point> candidates = new ArrayList<Point>();
-
 	/**
 	 * It is used in genetic algorithm to adjust polygon vertices.
 	 */
@@ -82,10 +75,5 @@ class Pipe {
 				(int) Math.round((vertex1.y + vertex2.y) / 2D));
 		area = (int) Math.round(share * totalArea / 100D);
 		occupied = 0;
-
-		/*
-		 * Start flooding from initial location.
-		 */
-		candidates.add(location);
 	}
 }
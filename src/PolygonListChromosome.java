@@ -4,6 +4,7 @@ import java.awt.Point;
 import java.awt.Polygon;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,74 +14,58 @@ import org.apache.commons.math3.genetics.InvalidRepresentationException;
 
 /**
  * Chromosome with list of vertices. Chromosomes are list of polygons. Each
- * polygon is presented with list of points.
+ * polygon is presented with list of points, packed in an immutable polygon, so
+ * unchanged polygons are shared between parents and offspring.
  * 
  * @author Todor Balabanov
  */
 public class PolygonListChromosome extends AbstractListChromosome<List<Point>> {
 
 	/**
-	 * Reference to the global polygon.
+	 * Problem context with the global polygon and its pipes.
 	 */
-	private static Polygon polygon = null;
+	private final Problem problem;
 
 	/**
-	 * List of pipes references.
+	 * Chromosome this one was mutated from, it is kept only until the first
+	 * evaluation.
 	 */
-	private static List<Pipe> pipes = null;
+	private volatile PolygonListChromosome parent = null;
 
 	/**
-	 * Distance between line AB and point P.
-	 * 
-	 * @param a
-	 *            First end of the line.
-	 * @param b
-	 *            Second end of the line.
-	 * @param p
-	 *            Point in 2D space.
-	 * 
-	 * @return Distance between the point and the line.
+	 * Index of the only sub-polygon which differs from the parent.
 	 */
-	private double distance(Point a, Point b, Point p) {
-		double normal = Math.sqrt((b.x - a.x) * (b.x - a.x) + (b.y - a.y) * (b.y - a.y));
-		return Math.abs((p.x - a.x) * (b.y - a.y) - (p.y - a.y) * (b.x - a.x)) / normal;
-	}
+	private int changed = -1;
 
 	/**
-	 * Constructor with array representation.
-	 * 
-	 * @param representation
-	 *            Some solution.
-	 * 
-	 * @throws InvalidRepresentationException
-	 *             It is thrown if the chromosome would not be valid.
+	 * Mutation step size of the self-adaptive mutation, zero if not set.
 	 */
-	public PolygonListChromosome(List<Point>[] representation) throws InvalidRepresentationException {
-		this(representation, polygon, pipes);
-	}
+	private double step = 0;
+
+	/**
+	 * Per pipe aggregates of the analytic evaluation.
+	 */
+	private volatile AnalyticFitness.Evaluation evaluation = null;
 
 	/**
 	 * Constructor with array representation.
 	 * 
 	 * @param representation
 	 *            Some solution.
-	 * @param polygon
-	 *            Reference to the global polygon.
-	 * @param pipes
-	 *            Reference to the pipes structure.
+	 * @param problem
+	 *            Problem context.
 	 * 
 	 * @throws InvalidRepresentationException
 	 *             It is thrown if the chromosome would not be valid.
 	 */
-	public PolygonListChromosome(List<Point>[] representation, Polygon polygon, List<Pipe> pipes)
+	public PolygonListChromosome(List<Point>[] representation, Problem problem)
 			throws InvalidRepresentationException {
-		super(representation);
+		super(pack(Arrays.asList(representation)));
 
 		/*
-		 * Keep reference to the global polygon and its pipes.
+		 * Keep reference to the problem context.
 		 */
-		PolygonListChromosome.polygon = polygon;
-		PolygonListChromosome.pipes = pipes;
+		this.problem = problem;
 	}
 
 	/**
@@ -90,68 +75,88 @@ public class PolygonListChromosome extends AbstractListChromosome<List<Point>> {
 	 *            Some solution.
 	 * @param copy
 	 *            True for deep copy, false otherwise.
+	 * @param problem
+	 *            Problem context.
 	 */
-	public PolygonListChromosome(List<List<Point>> representation, boolean copy) {
-		this(representation, copy, polygon, pipes);
+	public PolygonListChromosome(List<List<Point>> representation, boolean copy, Problem problem) {
+		super(pack(representation), copy);
+
+		/*
+		 * Keep reference to the problem context.
+		 */
+		this.problem = problem;
 	}
 
 	/**
-	 * Constructor with list representation and flag for deep copyF.
+	 * Constructor with list representation.
 	 * 
 	 * @param representation
 	 *            Some solution.
-	 * @param copy
-	 *            True for deep copy, false otherwise.
-	 * @param polygon
-	 *            Reference to the global polygon.
-	 * @param pipes
-	 *            Reference to the pipes structure.
+	 * @param problem
+	 *            Problem context.
+	 * 
+	 * @throws InvalidRepresentationException
+	 *             It is thrown if the chromosome would not be valid.
 	 */
-	public PolygonListChromosome(List<List<Point>> representation, boolean copy, Polygon polygon, List<Pipe> pipes) {
-		super(representation, copy);
+	public PolygonListChromosome(List<List<Point>> representation, Problem problem)
+			throws InvalidRepresentationException {
+		super(pack(representation));
 
 		/*
-		 * Keep reference to the global polygon and its pipes.
+		 * Keep reference to the problem context.
 		 */
-		PolygonListChromosome.polygon = polygon;
-		PolygonListChromosome.pipes = pipes;
+		this.problem = problem;
 	}
 
 	/**
-	 * Constructor with list representation.
+	 * Pack the sub-polygons of a representation.
 	 * 
 	 * @param representation
-	 *            Some solution.
+	 *            List of polygons represented as lists of vertices.
 	 * 
-	 * @throws InvalidRepresentationException
-	 *             It is thrown if the chromosome would not be valid.
+	 * @return The same list if all polygons are packed, a list of packed
+	 *         polygons otherwise.
 	 */
-	public PolygonListChromosome(List<List<Point>> representation) throws InvalidRepresentationException {
-		this(representation, polygon, pipes);
+	private static List<List<Point>> pack(List<List<Point>> representation) {
+		for (int k = 0; k < representation.size(); k++) {
+			if (representation.get(k) instanceof PackedPolygon == false) {
+				List<List<Point>> result = new ArrayList<List<Point>>();
+				for (List<Point> points : representation) {
+					result.add(PackedPolygon.of(points));
+				}
+				return result;
+			}
+		}
+
+		return representation;
 	}
 
 	/**
-	 * Constructor with list representation.
+	 * Mutation step size getter.
 	 * 
-	 * @param representation
-	 *            Some solution.
-	 * @param polygon
-	 *            Reference to the global polygon.
-	 * @param pipes
-	 *            Reference to the pipes structure.
+	 * @return Step size of the self-adaptive mutation, zero if not set.
+	 */
+	double getStep() {
+		return step;
+	}
+
+	/**
+	 * Mutation step size setter.
 	 * 
-	 * @throws InvalidRepresentationException
-	 *             It is thrown if the chromosome would not be valid.
+	 * @param step
+	 *            Step size of the self-adaptive mutation, zero if not set.
 	 */
-	public PolygonListChromosome(List<List<Point>> representation, Polygon polygon, List<Pipe> pipes)
-			throws InvalidRepresentationException {
-		super(representation);
+	void setStep(double step) {
+		this.step = step;
+	}
 
-		/*
-		 * Keep reference to the global polygon and its pipes.
-		 */
-		PolygonListChromosome.polygon = polygon;
-		PolygonListChromosome.pipes = pipes;
+	/**
+	 * Problem context getter.
+	 * 
+	 * @return Problem context.
+	 */
+	public Problem getProblem() {
+		return problem;
 	}
 
 	/**
@@ -159,24 +164,163 @@ public class PolygonListChromosome extends AbstractListChromosome<List<Point>> {
 	 */
 	@Override
 	public double fitness() {
+		problem.evaluated();
+		Telemetry.EvaluationEvent event = Telemetry.evaluation();
+
 		/*
-		 * Form image to calculate on.
+		 * Same geometry for the same problem was evaluated before.
 		 */
-		BufferedImage image = new BufferedImage(1000, 1000, BufferedImage.TYPE_INT_RGB);
-		Graphics graphics = image.getGraphics();
+		FitnessCache cache = problem.getFitnessCache();
+		FitnessCache.Key key = null;
+		if (cache != null) {
+			key = new FitnessCache.Key(problem.getFingerprint(), getRepresentation());
+			FitnessCache.Result result = cache.get(key);
+			if (result != null) {
+				/*
+				 * Cached evaluation is the base for the incremental evaluation
+				 * of the offspring.
+				 */
+				evaluation = result.getEvaluation();
+				parent = null;
+				if (event != null) {
+					event.cached = true;
+				}
+				commit(event);
+				return result.getFitness();
+			}
+		}
+
+		double fitness = (problem.getFitnessMode() == FitnessMode.ANALYTIC) ? analyticFitness() : rasterFitness();
+
+		if (cache != null) {
+			cache.put(key, fitness, evaluation);
+		}
+		commit(event);
+
+		return fitness;
+	}
+
+	/**
+	 * Finish evaluation measurement.
+	 * 
+	 * @param event
+	 *            Evaluation event, null if it is not recorded.
+	 */
+	private void commit(Telemetry.EvaluationEvent event) {
+		if (event != null && event.shouldCommit() == true) {
+			event.problem = problem.getFingerprint();
+			event.analytic = problem.getFitnessMode() == FitnessMode.ANALYTIC;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Fitness calculated directly from the vertices.
+	 * 
+	 * @return Fitness value.
+	 */
+	public double analyticFitness() {
+		AnalyticFitness engine = problem.getAnalyticFitness();
 
 		/*
-		 * White background.
+		 * Offspring of an evaluated chromosome recalculate only the changed
+		 * part of the geometry.
 		 */
-		graphics.setColor(Color.WHITE);
-		graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+		PolygonListChromosome origin = parent;
+		AnalyticFitness.Evaluation base = (origin == null) ? null : origin.evaluation;
+		AnalyticFitness.Evaluation result = (base == null) ? engine.evaluation(getRepresentation())
+				: engine.evaluation(base, getRepresentation(), changed);
+
+		evaluation = result;
+		parent = null;
+
+		return engine.fitness(result);
+	}
+
+	/**
+	 * Relative area error of each pipe, calculated exactly from the vertices.
+	 * 
+	 * @return Difference between the sub-polygon area inside the global
+	 *         polygon and the pipe share, divided by the share.
+	 */
+	public double[] areaErrors() {
+		AnalyticFitness engine = problem.getAnalyticFitness();
+		List<List<Point>> representation = getRepresentation();
+
+		double[] errors = new double[representation.size()];
+		AnalyticFitness.Evaluation result = evaluation;
+		if (result != null) {
+			for (int k = 0; k < errors.length; k++) {
+				errors[k] = result.area(k);
+			}
+		} else {
+			engine.evaluate(representation, errors);
+		}
+
+		for (int k = 0; k < errors.length; k++) {
+			double target = engine.target(k);
+			errors[k] = (target == 0) ? errors[k] : (errors[k] - target) / target;
+		}
+
+		return errors;
+	}
+
+	/**
+	 * Create offspring which differs from this chromosome in a single
+	 * sub-polygon. The offspring is evaluated incrementally from the
+	 * aggregates of this chromosome.
+	 * 
+	 * @param index
+	 *            Index of the changed sub-polygon.
+	 * @param points
+	 *            New vertices of the sub-polygon.
+	 * 
+	 * @return Mutated chromosome.
+	 */
+	PolygonListChromosome mutated(int index, List<Point> points) {
+		return mutated(index, points, step);
+	}
+
+	/**
+	 * Create offspring which differs from this chromosome in a single
+	 * sub-polygon and has its own mutation step size.
+	 * 
+	 * @param index
+	 *            Index of the changed sub-polygon.
+	 * @param points
+	 *            New vertices of the sub-polygon.
+	 * @param step
+	 *            Mutation step size of the offspring.
+	 * 
+	 * @return Mutated chromosome.
+	 */
+	PolygonListChromosome mutated(int index, List<Point> points, double step) {
+		List<List<Point>> representation = new ArrayList<List<Point>>(getRepresentation());
+		representation.set(index, PackedPolygon.of(points));
+
+		PolygonListChromosome result = new PolygonListChromosome(representation, false, problem);
+		result.parent = this;
+		result.changed = index;
+		result.step = step;
+
+		return result;
+	}
+
+	/**
+	 * Fitness calculated by drawing of the solution and counting the pixels.
+	 * 
+	 * @return Fitness value.
+	 */
+	public double rasterFitness() {
+		Viewport viewport = problem.getViewport();
+		List<Pipe> pipes = problem.getPipes();
 
 		/*
-		 * Initial black area for the global polygon.
+		 * Form image to calculate on, only the bounding box of the global
+		 * polygon is covered.
 		 */
-		graphics.setColor(Color.BLACK);
-		graphics.drawPolygon(polygon);
-		graphics.fillPolygon(polygon);
+		BufferedImage image = viewport.canvas(problem.getPolygon());
+		Graphics graphics = image.getGraphics();
 
 		/*
 		 * Vertices counter.
@@ -192,34 +336,38 @@ public class PolygonListChromosome extends AbstractListChromosome<List<Point>> {
 		/*
 		 * Draw solution.
 		 */
-		for (Pipe pipe : pipes) {
+		int index = 0;
+		for (List<Point> points : getRepresentation()) {
+			Pipe pipe = pipes.get(index++);
+
 			/*
 			 * Start counters from zero.
 			 */
 			counters.put(pipe.color.getRGB(), 0);
 
 			/*
-			 * List all polygons.
+			 * Each polygon is drawn with the color of its pipe.
 			 */
-			for (List<Point> points : getRepresentation()) {
-				Polygon shape = new Polygon();
-				for (Point vertex : points) {
-					shape.addPoint(vertex.x, vertex.y);
-				}
-				graphics.setColor(pipe.color);
-				graphics.drawPolygon(shape);
-				graphics.fillPolygon(shape);
+			Polygon shape = viewport.pixels(points);
+			graphics.setColor(pipe.color);
+			graphics.drawPolygon(shape);
+			graphics.fillPolygon(shape);
 
-				numberOfVertices += shape.npoints;
-			}
+			numberOfVertices += shape.npoints;
 		}
 
 		/*
-		 * Map colors to polygon side.
+		 * Map colors to the line of the pipe side in pixel coordinates. The
+		 * lines are normalized once per problem, so the distances need no
+		 * square roots.
 		 */
+		AnalyticFitness lines = problem.getAnalyticFitness();
+		double scale = viewport.getScale();
 		Map<Integer, Object> map = new HashMap<Integer, Object>();
-		for (Pipe pipe : pipes) {
-			map.put(pipe.color.getRGB(), new Point[] { pipe.vertex1, pipe.vertex2 });
+		for (int k = 0; k < pipes.size(); k++) {
+			double[] line = lines.line(k);
+			line[2] = line[2] * scale - line[0] * viewport.x(0) - line[1] * viewport.y(0);
+			map.put(pipes.get(k).color.getRGB(), line);
 		}
 
 		/*
@@ -247,8 +395,8 @@ public class PolygonListChromosome extends AbstractListChromosome<List<Point>> {
 				/*
 				 * Closeness.
 				 */
-				Point side[] = (Point[]) map.get(key);
-				closeness += distance(side[0], side[1], new Point());
+				double line[] = (double[]) map.get(key);
+				closeness += Math.abs(line[0] * i + line[1] * j + line[2]);
 			}
 		}
 
@@ -295,7 +443,12 @@ public class PolygonListChromosome extends AbstractListChromosome<List<Point>> {
 	 */
 	@Override
 	public AbstractListChromosome<List<Point>> newFixedLengthChromosome(List<List<Point>> representation) {
-		return new PolygonListChromosome(representation, true, polygon, pipes);
+		/*
+		 * Crossover offspring inherit the step size of the first parent.
+		 */
+		PolygonListChromosome result = new PolygonListChromosome(representation, true, problem);
+		result.step = step;
+		return result;
 	}
 
 	/**
@@ -0,0 +1,316 @@
+import java.awt.Point;
+import java.awt.Polygon;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Problem context shared by all chromosomes of a single solve. It replaces
+ * global state, so different problems can be solved in the same virtual
+ * machine at the same time.
+ * 
+ * @author Todor Balabanov
+ */
+public class Problem {
+
+	/**
+	 * Number of fitness values cached for a problem by default.
+	 */
+	public static final int DEFAULT_CACHE_CAPACITY = 1 << 14;
+
+	/**
+	 * Reference to the global polygon.
+	 */
+	private final Polygon polygon;
+
+	/**
+	 * List of pipes references.
+	 */
+	private final List<Pipe> pipes;
+
+	/**
+	 * How the fitness value is calculated.
+	 */
+	private final FitnessMode mode;
+
+	/**
+	 * Exact geometric evaluator, it is immutable and safe for concurrent use.
+	 * It is available in raster mode as well for cross-checking.
+	 */
+	private final AnalyticFitness analytic;
+
+	/**
+	 * Spatial index of the global polygon edges, it is immutable and safe for
+	 * concurrent use.
+	 */
+	private final EdgeIndex index;
+
+	/**
+	 * Canonical hash of the polygon vertices, the pipes shares, the fitness
+	 * mode and the raster resolution.
+	 */
+	private final long fingerprint;
+
+	/**
+	 * Cache of already calculated fitness values, null if it is not used.
+	 */
+	private final FitnessCache cache;
+
+	/**
+	 * Working canvas for the raster calculations.
+	 */
+	private final Viewport viewport;
+
+	/**
+	 * Number of fitness evaluations, cache hits included.
+	 */
+	private final LongAdder evaluations = new LongAdder();
+
+	/**
+	 * Constructor with raster fitness calculation.
+	 * 
+	 * @param polygon
+	 *            Global polygon.
+	 * @param pipes
+	 *            Pipes description.
+	 */
+	public Problem(Polygon polygon, List<Pipe> pipes) {
+		this(polygon, pipes, FitnessMode.RASTER);
+	}
+
+	/**
+	 * Constructor with all parameters.
+	 * 
+	 * @param polygon
+	 *            Global polygon.
+	 * @param pipes
+	 *            Pipes description.
+	 * @param mode
+	 *            Raster or analytic fitness calculation.
+	 */
+	public Problem(Polygon polygon, List<Pipe> pipes, FitnessMode mode) {
+		this(polygon, pipes, mode, new FitnessCache(DEFAULT_CACHE_CAPACITY));
+	}
+
+	/**
+	 * Constructor with all parameters.
+	 * 
+	 * @param polygon
+	 *            Global polygon.
+	 * @param pipes
+	 *            Pipes description.
+	 * @param mode
+	 *            Raster or analytic fitness calculation.
+	 * @param cache
+	 *            Fitness cache, it can be shared between problems. Null
+	 *            disables caching.
+	 */
+	public Problem(Polygon polygon, List<Pipe> pipes, FitnessMode mode, FitnessCache cache) {
+		this(polygon, pipes, mode, cache, Viewport.of(polygon, 1));
+	}
+
+	/**
+	 * Constructor with all parameters.
+	 * 
+	 * @param polygon
+	 *            Global polygon.
+	 * @param pipes
+	 *            Pipes description.
+	 * @param mode
+	 *            Raster or analytic fitness calculation.
+	 * @param cache
+	 *            Fitness cache, it can be shared between problems. Null
+	 *            disables caching.
+	 * @param viewport
+	 *            Working canvas for the raster calculations. The pipes areas
+	 *            in pixels should be measured on the same canvas.
+	 */
+	public Problem(Polygon polygon, List<Pipe> pipes, FitnessMode mode, FitnessCache cache, Viewport viewport) {
+		super();
+
+		this.polygon = polygon;
+		this.pipes = pipes;
+		this.mode = mode;
+		this.analytic = new AnalyticFitness(polygon, pipes);
+		this.index = new EdgeIndex(polygon);
+		this.fingerprint = fingerprint(polygon, pipes, mode, viewport.getScale());
+		this.cache = cache;
+		this.viewport = viewport;
+	}
+
+	/**
+	 * Canonical hash of a problem.
+	 * 
+	 * @param polygon
+	 *            Global polygon.
+	 * @param pipes
+	 *            Pipes description.
+	 * @param mode
+	 *            Raster or analytic fitness calculation.
+	 * @param scale
+	 *            Resolution of the raster calculations.
+	 * 
+	 * @return Problem fingerprint.
+	 */
+	private static long fingerprint(Polygon polygon, List<Pipe> pipes, FitnessMode mode, double scale) {
+		long hash = 1125899906842597L;
+		for (int i = 0; i < polygon.npoints; i++) {
+			hash = 31 * hash + polygon.xpoints[i];
+			hash = 31 * hash + polygon.ypoints[i];
+		}
+		for (Pipe pipe : pipes) {
+			hash = 31 * hash + Double.doubleToLongBits(pipe.share);
+		}
+		hash = 31 * hash + mode.ordinal();
+		hash = 31 * hash + Double.doubleToLongBits(scale);
+
+		return hash;
+	}
+
+	/**
+	 * Global polygon getter.
+	 * 
+	 * @return Global polygon.
+	 */
+	public Polygon getPolygon() {
+		return polygon;
+	}
+
+	/**
+	 * Pipes getter.
+	 * 
+	 * @return Pipes description.
+	 */
+	public List<Pipe> getPipes() {
+		return pipes;
+	}
+
+	/**
+	 * Fitness mode getter.
+	 * 
+	 * @return Raster or analytic fitness calculation.
+	 */
+	public FitnessMode getFitnessMode() {
+		return mode;
+	}
+
+	/**
+	 * Exact geometric evaluator getter.
+	 * 
+	 * @return Evaluator.
+	 */
+	AnalyticFitness getAnalyticFitness() {
+		return analytic;
+	}
+
+	/**
+	 * Edge index getter.
+	 * 
+	 * @return Spatial index of the global polygon edges.
+	 */
+	EdgeIndex getEdgeIndex() {
+		return index;
+	}
+
+	/**
+	 * Problem fingerprint getter.
+	 * 
+	 * @return Canonical hash of the polygon, the shares, the fitness mode and
+	 *         the raster resolution.
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Fitness cache getter.
+	 * 
+	 * @return Fitness cache or null if caching is not used.
+	 */
+	public FitnessCache getFitnessCache() {
+		return cache;
+	}
+
+	/**
+	 * Viewport getter.
+	 * 
+	 * @return Working canvas for the raster calculations.
+	 */
+	public Viewport getViewport() {
+		return viewport;
+	}
+
+	/**
+	 * Count single fitness evaluation.
+	 */
+	void evaluated() {
+		evaluations.increment();
+	}
+
+	/**
+	 * Number of evaluations getter.
+	 * 
+	 * @return Number of fitness evaluations, cache hits included.
+	 */
+	public long getEvaluations() {
+		return evaluations.sum();
+	}
+
+	/**
+	 * Coarse version of the problem. The polygon coordinates are divided by
+	 * the factor, so the evaluations are cheaper and the unit steps of the
+	 * mutation are bigger relative to the polygon.
+	 * 
+	 * @param factor
+	 *            Downscaling factor.
+	 * 
+	 * @return Downscaled problem or null if the polygon degenerates at this
+	 *         factor.
+	 */
+	public Problem downscale(int factor) {
+		Polygon coarse = new Polygon();
+		for (int i = 0; i < polygon.npoints; i++) {
+			Point point = downscale(new Point(polygon.xpoints[i], polygon.ypoints[i]), factor);
+			coarse.addPoint(point.x, point.y);
+		}
+
+		/*
+		 * Sides should not collapse to points.
+		 */
+		for (int i = 0, j = coarse.npoints - 1; i < coarse.npoints; j = i++) {
+			if (coarse.xpoints[i] == coarse.xpoints[j] && coarse.ypoints[i] == coarse.ypoints[j]) {
+				return null;
+			}
+		}
+
+		Viewport canvas = Viewport.of(coarse, viewport.getScale());
+		int area = canvas.area(coarse);
+
+		/*
+		 * Pipes keep their own sides, they are not always in the order of the
+		 * polygon sides.
+		 */
+		List<Pipe> list = new ArrayList<Pipe>();
+		for (Pipe pipe : pipes) {
+			list.add(new Pipe(pipe.color, downscale(pipe.vertex1, factor), downscale(pipe.vertex2, factor), area,
+					pipe.share));
+		}
+
+		return new Problem(coarse, list, mode, cache, canvas);
+	}
+
+	/**
+	 * Coarse coordinates of a point.
+	 * 
+	 * @param point
+	 *            Point of the original problem.
+	 * @param factor
+	 *            Downscaling factor.
+	 * 
+	 * @return Point of the downscaled problem.
+	 */
+	private static Point downscale(Point point, int factor) {
+		return new Point((int) Math.round((double) point.x / factor), (int) Math.round((double) point.y / factor));
+	}
+
+}
@@ -1,6 +1,6 @@
 import java.awt.Point;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.commons.math3.exception.MathIllegalArgumentException;
 import org.apache.commons.math3.genetics.Chromosome;
@@ -13,11 +13,6 @@ import org.apache.commons.math3.genetics.MutationPolicy;
  */
 public class RandomVertexMutation implements MutationPolicy {
 
-	/**
-	 * Pseudo-random number generator.
-	 */
-	private final static Random PRNG = new Random();
-
 	/**
 	 * {@inheritDoc}
 	 */
@@ -34,46 +29,48 @@ public class RandomVertexMutation implements MutationPolicy {
 		 * Obtain point to mutate.
 		 */
 		List<List<Point>> representation = ((PolygonListChromosome) original).getRepresentation();
-		List<Point> polygon = representation.get(PRNG.nextInt(representation.size()));
-		Point vertex = polygon.get(2 + PRNG.nextInt(polygon.size() - 2));
+		int index = ThreadLocalRandom.current().nextInt(representation.size());
+
+		/*
+		 * Only the mutated polygon is replaced, the original stays untouched.
+		 */
+		PackedPolygon polygon = PackedPolygon.of(representation.get(index));
+		int vertex = 2 + ThreadLocalRandom.current().nextInt(polygon.size() - 2);
 
 		/*
 		 * Mutate by vertex move.
 		 */
-		switch (PRNG.nextInt(4)) {
+		switch (ThreadLocalRandom.current().nextInt(4)) {
 		case 0:
-			vertex.x++;
+			polygon = polygon.moved(vertex, +1, 0);
 			break;
 		case 1:
-			vertex.y++;
+			polygon = polygon.moved(vertex, 0, +1);
 			break;
 		case 2:
-			vertex.x--;
+			polygon = polygon.moved(vertex, -1, 0);
 			break;
 		case 3:
-			vertex.y--;
+			polygon = polygon.moved(vertex, 0, -1);
 			break;
 		}
 
 		/*
 		 * Mutate by vertex count change.
 		 */
-		if (PRNG.nextInt(1000) < 1) {
+		if (ThreadLocalRandom.current().nextInt(1000) < 1) {
 			// TODO Implement better way to control when number of vertices will
 			// be changed.
 
-			switch (PRNG.nextInt(2)) {
+			switch (ThreadLocalRandom.current().nextInt(2)) {
 			case 0:
 				/*
 				 * Add vertex.
 				 */
-				int index1 = 1 + PRNG.nextInt(polygon.size() - 1);
+				int index1 = 1 + ThreadLocalRandom.current().nextInt(polygon.size() - 1);
 				int index2 = (index1 + 1) % polygon.size();
-				Point vertex1 = polygon.get(index1);
-				Point vertex2 = polygon.get(index2);
-				Point middle = new Point((int) Math.round((vertex1.x + vertex2.x) / 2D),
-						(int) Math.round((vertex1.y + vertex2.y) / 2D));
-				polygon.add(index1, middle);
+				polygon = polygon.inserted(index1, (int) Math.round((polygon.x(index1) + polygon.x(index2)) / 2D),
+						(int) Math.round((polygon.y(index1) + polygon.y(index2)) / 2D));
 				break;
 
 			case 1:
@@ -81,13 +78,13 @@ public class RandomVertexMutation implements MutationPolicy {
 				 * Remove vertex.
 				 */
 				if (polygon.size() > 3) {
-					polygon.remove(2 + PRNG.nextInt(polygon.size() - 2));
+					polygon = polygon.removed(2 + ThreadLocalRandom.current().nextInt(polygon.size() - 2));
 				}
 				break;
 			}
 		}
 
-		PolygonListChromosome result = new PolygonListChromosome(representation, true);
+		PolygonListChromosome result = ((PolygonListChromosome) original).mutated(index, polygon);
 
 		return result;
 	}
@@ -0,0 +1,753 @@
+import java.awt.Point;
+import java.awt.Polygon;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent store of the best solutions, keyed by a canonical hash of the
+ * polygon vertices and the shares. It survives restarts of the solver, so the
+ * same problem is solved only once.
+ *
+ * The store is a folder with two files. The index is a memory-mapped open
+ * addressing table with a slot for each solution: the key, the polygon hash,
+ * the position and the length of the record and the time of the last use.
+ * The data file has the records one after another: the key, a checksum of
+ * the rest of the record, the number of pipes, the fitness, the shares, the
+ * area error of each pipe, the vertices of the global polygon and the vertices
+ * of each sub-polygon. When the data grows over the size limit or the index
+ * gets full, the least recently used solutions are evicted and the data file
+ * is compacted.
+ *
+ * A hit is returned only if the stored polygon and shares are the same as in
+ * the problem, not only their hash. Records with a wrong key or checksum, for
+ * example after a crash during compaction, are treated as missing.
+ *
+ * Solutions of the same polygon with other shares are near hits, they are
+ * suitable for warm start. The store is safe for concurrent use in a single
+ * process.
+ *
+ * @author Todor Balabanov
+ */
+public class SolutionStore implements Closeable {
+
+	/**
+	 * Stored solution.
+	 */
+	public static final class Entry {
+
+		/**
+		 * Sub-polygon for each pipe.
+		 */
+		private final List<List<Point>> solution;
+
+		/**
+		 * Fitness value of the solution.
+		 */
+		private final double fitness;
+
+		/**
+		 * Shares of the pipes.
+		 */
+		private final double[] shares;
+
+		/**
+		 * Relative area error of each pipe.
+		 */
+		private final double[] errors;
+
+		/**
+		 * Interleaved coordinates of the global polygon.
+		 */
+		private final int[] vertices;
+
+		/**
+		 * Constructor with all parameters.
+		 *
+		 * @param solution
+		 *            Sub-polygon for each pipe.
+		 * @param fitness
+		 *            Fitness value of the solution.
+		 * @param shares
+		 *            Shares of the pipes.
+		 * @param errors
+		 *            Relative area error of each pipe.
+		 * @param vertices
+		 *            Interleaved coordinates of the global polygon.
+		 */
+		Entry(List<List<Point>> solution, double fitness, double[] shares, double[] errors, int[] vertices) {
+			this.solution = solution;
+			this.fitness = fitness;
+			this.shares = shares;
+			this.errors = errors;
+			this.vertices = vertices;
+		}
+
+		/**
+		 * Solution getter.
+		 *
+		 * @return Sub-polygon for each pipe.
+		 */
+		public List<List<Point>> getSolution() {
+			return solution;
+		}
+
+		/**
+		 * Fitness getter.
+		 *
+		 * @return Fitness value of the solution.
+		 */
+		public double getFitness() {
+			return fitness;
+		}
+
+		/**
+		 * Area errors getter.
+		 *
+		 * @return Relative area error of each pipe.
+		 */
+		public double[] getErrors() {
+			return errors;
+		}
+
+		/**
+		 * Largest area error.
+		 *
+		 * @return Maximal absolute relative area error.
+		 */
+		public double getError() {
+			double error = 0;
+			for (double value : errors) {
+				error = Math.max(error, Math.abs(value));
+			}
+			return error;
+		}
+	}
+
+	/**
+	 * Magic number of the index, "PPST" in ASCII.
+	 */
+	private static final int MAGIC = 0x50505354;
+
+	/**
+	 * Version of the files format.
+	 */
+	private static final int VERSION = 2;
+
+	/**
+	 * Size of the index header (magic, version, capacity and count).
+	 */
+	private static final int HEADER = 16;
+
+	/**
+	 * Size of an index slot (key, polygon, offset, stamp, length and pipes).
+	 */
+	private static final int SLOT = 40;
+
+	/**
+	 * Size of a record header (key and checksum).
+	 */
+	private static final int RECORD = 12;
+
+	/**
+	 * Default number of index slots.
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 12;
+
+	/**
+	 * Part of the limits which stays after an eviction.
+	 */
+	private static final double EVICTION_KEEP = 0.75;
+
+	/**
+	 * Maximal load of the index.
+	 */
+	private static final double MAXIMUM_LOAD = 0.75;
+
+	/**
+	 * Folder of the store.
+	 */
+	private final File folder;
+
+	/**
+	 * Maximal size of the data file in bytes.
+	 */
+	private final long limit;
+
+	/**
+	 * Index file.
+	 */
+	private final RandomAccessFile file;
+
+	/**
+	 * Memory-mapped index.
+	 */
+	private final MappedByteBuffer index;
+
+	/**
+	 * Number of index slots, a power of two.
+	 */
+	private final int capacity;
+
+	/**
+	 * Number of used index slots.
+	 */
+	private int count;
+
+	/**
+	 * Data file.
+	 */
+	private FileChannel data;
+
+	/**
+	 * Open or create store with the default index capacity.
+	 *
+	 * @param folder
+	 *            Folder of the store.
+	 * @param limit
+	 *            Maximal size of the data file in bytes.
+	 *
+	 * @throws IOException
+	 *             When the store can not be opened.
+	 */
+	public SolutionStore(File folder, long limit) throws IOException {
+		this(folder, limit, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Open or create store.
+	 *
+	 * @param folder
+	 *            Folder of the store.
+	 * @param limit
+	 *            Maximal size of the data file in bytes.
+	 * @param capacity
+	 *            Number of index slots for a new store, it is rounded up to a
+	 *            power of two.
+	 *
+	 * @throws IOException
+	 *             When the store can not be opened.
+	 */
+	public SolutionStore(File folder, long limit, int capacity) throws IOException {
+		if (limit <= 0 || capacity <= 0) {
+			throw new IllegalArgumentException("Size limit and capacity should be positive.");
+		}
+
+		this.folder = folder;
+		this.limit = limit;
+		folder.mkdirs();
+
+		File name = new File(folder, "index");
+		boolean created = name.exists() == false || name.length() < HEADER;
+		file = new RandomAccessFile(name, "rw");
+
+		if (created == true) {
+			int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+			file.setLength(HEADER + (long) SLOT * size);
+			index = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+			index.putInt(0, MAGIC);
+			index.putInt(4, VERSION);
+			index.putInt(8, size);
+			index.putInt(12, 0);
+		} else {
+			index = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+			if (index.getInt(0) != MAGIC || index.getInt(4) != VERSION) {
+				file.close();
+				throw new IOException("Solution store index " + name + " has unknown format.");
+			}
+		}
+
+		this.capacity = index.getInt(8);
+		this.count = index.getInt(12);
+		if (Integer.bitCount(this.capacity) != 1 || file.length() != HEADER + (long) SLOT * this.capacity) {
+			file.close();
+			throw new IOException("Solution store index " + name + " is damaged.");
+		}
+
+		data = FileChannel.open(new File(folder, "data").toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * Canonical hash of the polygon vertices.
+	 *
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 *
+	 * @return Polygon hash, it is never zero.
+	 */
+	public static long polygon(Problem problem) {
+		long hash = 1125899906842597L;
+		for (int i = 0; i < problem.getPolygon().npoints; i++) {
+			hash = 31 * hash + problem.getPolygon().xpoints[i];
+			hash = 31 * hash + problem.getPolygon().ypoints[i];
+		}
+		return mix(hash);
+	}
+
+	/**
+	 * Canonical hash of the polygon vertices and the shares.
+	 *
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 *
+	 * @return Problem hash, it is never zero.
+	 */
+	public static long key(Problem problem) {
+		long hash = polygon(problem);
+		for (Pipe pipe : problem.getPipes()) {
+			hash = 31 * hash + Double.doubleToLongBits(pipe.share);
+		}
+		return mix(hash);
+	}
+
+	/**
+	 * Spread the hash bits, zero is reserved for the empty slots.
+	 *
+	 * @param hash
+	 *            Hash value.
+	 *
+	 * @return Mixed hash value.
+	 */
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return (hash == 0) ? 1 : hash;
+	}
+
+	/**
+	 * Position of an index slot.
+	 *
+	 * @param slot
+	 *            Slot number.
+	 *
+	 * @return Position in the index.
+	 */
+	private static int position(int slot) {
+		return HEADER + SLOT * slot;
+	}
+
+	/**
+	 * Find the slot of a key.
+	 *
+	 * @param key
+	 *            Problem hash.
+	 *
+	 * @return Slot with the key or the empty slot where it should be.
+	 */
+	private int slot(long key) {
+		int slot = (int) (key & (capacity - 1));
+		while (index.getLong(position(slot)) != 0 && index.getLong(position(slot)) != key) {
+			slot = (slot + 1) & (capacity - 1);
+		}
+		return slot;
+	}
+
+	/**
+	 * Exact hit for the same polygon and shares.
+	 *
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 *
+	 * @return Stored solution or null if there is none.
+	 *
+	 * @throws IOException
+	 *             When the data can not be read.
+	 */
+	public synchronized Entry get(Problem problem) throws IOException {
+		long key = key(problem);
+		int position = position(slot(key));
+		if (index.getLong(position) == 0 || index.getInt(position + 36) != problem.getPipes().size()) {
+			return null;
+		}
+
+		Entry entry = read(key, index.getLong(position + 16), index.getInt(position + 32));
+		if (matches(entry, problem, true) == false) {
+			return null;
+		}
+
+		index.putLong(position + 24, System.currentTimeMillis());
+		return entry;
+	}
+
+	/**
+	 * Compare a stored solution with a problem.
+	 *
+	 * @param entry
+	 *            Stored solution, null if the record is damaged.
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param shares
+	 *            Compare the shares as well.
+	 *
+	 * @return True if the solution is for the same polygon and, if required,
+	 *         for the same shares.
+	 */
+	private static boolean matches(Entry entry, Problem problem, boolean shares) {
+		Polygon polygon = problem.getPolygon();
+		List<Pipe> pipes = problem.getPipes();
+		if (entry == null || entry.vertices.length != 2 * polygon.npoints || entry.shares.length != pipes.size()) {
+			return false;
+		}
+
+		for (int i = 0; i < polygon.npoints; i++) {
+			if (entry.vertices[2 * i] != polygon.xpoints[i] || entry.vertices[2 * i + 1] != polygon.ypoints[i]) {
+				return false;
+			}
+		}
+
+		for (int k = 0; shares == true && k < pipes.size(); k++) {
+			if (Double.doubleToLongBits(entry.shares[k]) != Double.doubleToLongBits(pipes.get(k).share)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Near hits for the same polygon with other shares. They are ordered by
+	 * the difference of the shares.
+	 *
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param limit
+	 *            Maximal number of solutions.
+	 *
+	 * @return Stored solutions, the closest first.
+	 *
+	 * @throws IOException
+	 *             When the data can not be read.
+	 */
+	public synchronized List<List<List<Point>>> near(Problem problem, int limit) throws IOException {
+		long polygon = polygon(problem);
+		int pipes = problem.getPipes().size();
+
+		List<Entry> entries = new ArrayList<Entry>();
+		for (int slot = 0; slot < capacity; slot++) {
+			int position = position(slot);
+			if (index.getLong(position) != 0 && index.getLong(position + 8) == polygon
+					&& index.getInt(position + 36) == pipes) {
+				Entry entry = read(index.getLong(position), index.getLong(position + 16),
+						index.getInt(position + 32));
+				if (matches(entry, problem, false) == true) {
+					entries.add(entry);
+				}
+			}
+		}
+
+		final double[] shares = new double[pipes];
+		for (int k = 0; k < pipes; k++) {
+			shares[k] = problem.getPipes().get(k).share;
+		}
+		Collections.sort(entries, Comparator.comparingDouble((Entry entry) -> {
+			double distance = 0;
+			for (int k = 0; k < shares.length; k++) {
+				distance += Math.abs(entry.shares[k] - shares[k]);
+			}
+			return distance;
+		}).thenComparingDouble(Entry::getError));
+
+		List<List<List<Point>>> result = new ArrayList<List<List<Point>>>();
+		for (int i = 0; i < entries.size() && i < limit; i++) {
+			result.add(entries.get(i).solution);
+		}
+		return result;
+	}
+
+	/**
+	 * Store solution if it is better than the stored one. Solutions are
+	 * compared by the largest area error, because the fitness values of the
+	 * fitness modes are not comparable.
+	 *
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param solution
+	 *            Sub-polygon for each pipe.
+	 * @param fitness
+	 *            Fitness value of the solution.
+	 * @param errors
+	 *            Relative area error of each pipe.
+	 *
+	 * @throws IOException
+	 *             When the data can not be written.
+	 */
+	public synchronized void put(Problem problem, List<List<Point>> solution, double fitness, double[] errors)
+			throws IOException {
+		List<Pipe> pipes = problem.getPipes();
+		if (solution.size() != pipes.size() || errors.length != pipes.size()) {
+			throw new IllegalArgumentException("There should be a sub-polygon and an error for each pipe.");
+		}
+
+		long key = key(problem);
+		int position = position(slot(key));
+		if (index.getLong(position) != 0) {
+			Entry stored = read(key, index.getLong(position + 16), index.getInt(position + 32));
+			double error = 0;
+			for (double value : errors) {
+				error = Math.max(error, Math.abs(value));
+			}
+			if (matches(stored, problem, true) == true && stored.getError() <= error) {
+				index.putLong(position + 24, System.currentTimeMillis());
+				return;
+			}
+		}
+
+		/*
+		 * Serialize the record, the checksum is filled at the end.
+		 */
+		Polygon global = problem.getPolygon();
+		int length = RECORD + 4 + 8 + 16 * pipes.size() + 4 + 8 * global.npoints;
+		for (List<Point> points : solution) {
+			length += 4 + 8 * points.size();
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		buffer.putLong(key);
+		buffer.putInt(0);
+		buffer.putInt(pipes.size());
+		buffer.putDouble(fitness);
+		for (Pipe pipe : pipes) {
+			buffer.putDouble(pipe.share);
+		}
+		for (double error : errors) {
+			buffer.putDouble(error);
+		}
+		buffer.putInt(global.npoints);
+		for (int i = 0; i < global.npoints; i++) {
+			buffer.putInt(global.xpoints[i]);
+			buffer.putInt(global.ypoints[i]);
+		}
+		for (List<Point> points : solution) {
+			PackedPolygon polygon = PackedPolygon.of(points);
+			buffer.putInt(polygon.size());
+			for (int i = 0; i < polygon.size(); i++) {
+				buffer.putInt(polygon.x(i));
+				buffer.putInt(polygon.y(i));
+			}
+		}
+		buffer.flip();
+		buffer.putInt(8, checksum(buffer));
+
+		if (length > limit) {
+			return;
+		}
+
+		/*
+		 * Make room for the new record.
+		 */
+		if (data.size() + length > limit || (index.getLong(position) == 0 && count + 1 > capacity * MAXIMUM_LOAD)) {
+			compact(Math.max(0, (long) (limit * EVICTION_KEEP) - length),
+					(int) (capacity * MAXIMUM_LOAD * EVICTION_KEEP));
+			position = position(slot(key));
+		}
+
+		long offset = data.size();
+		while (buffer.hasRemaining() == true) {
+			data.write(buffer, offset + buffer.position());
+		}
+
+		if (index.getLong(position) == 0) {
+			count++;
+			index.putInt(12, count);
+		}
+		index.putLong(position, key);
+		index.putLong(position + 8, polygon(problem));
+		index.putLong(position + 16, offset);
+		index.putLong(position + 24, System.currentTimeMillis());
+		index.putInt(position + 32, length);
+		index.putInt(position + 36, pipes.size());
+	}
+
+	/**
+	 * Checksum of a record without its header.
+	 *
+	 * @param record
+	 *            Whole record, the position is not changed.
+	 *
+	 * @return CRC32 value.
+	 */
+	private static int checksum(ByteBuffer record) {
+		ByteBuffer content = record.duplicate();
+		content.position(RECORD);
+		CRC32 crc = new CRC32();
+		crc.update(content);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Read a record.
+	 *
+	 * @param key
+	 *            Expected problem hash.
+	 * @param offset
+	 *            Position in the data file.
+	 * @param length
+	 *            Size of the record.
+	 *
+	 * @return Stored solution or null if the record is damaged or it has
+	 *         other key.
+	 *
+	 * @throws IOException
+	 *             When the data can not be read.
+	 */
+	private Entry read(long key, long offset, int length) throws IOException {
+		if (length < RECORD || offset < 0 || offset + length > data.size()) {
+			return null;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining() == true) {
+			if (data.read(buffer, offset + buffer.position()) < 0) {
+				return null;
+			}
+		}
+		buffer.flip();
+
+		if (buffer.getLong() != key || buffer.getInt() != checksum(buffer)) {
+			return null;
+		}
+
+		int pipes = buffer.getInt();
+		double fitness = buffer.getDouble();
+		double[] shares = new double[pipes];
+		for (int k = 0; k < pipes; k++) {
+			shares[k] = buffer.getDouble();
+		}
+		double[] errors = new double[pipes];
+		for (int k = 0; k < pipes; k++) {
+			errors[k] = buffer.getDouble();
+		}
+		int[] vertices = new int[2 * buffer.getInt()];
+		for (int i = 0; i < vertices.length; i++) {
+			vertices[i] = buffer.getInt();
+		}
+
+		List<List<Point>> solution = new ArrayList<List<Point>>();
+		for (int k = 0; k < pipes; k++) {
+			int[] xy = new int[2 * buffer.getInt()];
+			for (int i = 0; i < xy.length; i++) {
+				xy[i] = buffer.getInt();
+			}
+			solution.add(PackedPolygon.of(xy));
+		}
+
+		return new Entry(Collections.unmodifiableList(solution), fitness, shares, errors, vertices);
+	}
+
+	/**
+	 * Evict the least recently used solutions and rewrite the data file
+	 * without the unused records.
+	 *
+	 * @param bytes
+	 *            Maximal size of the kept records.
+	 * @param entries
+	 *            Maximal number of the kept records.
+	 *
+	 * @throws IOException
+	 *             When the data can not be rewritten.
+	 */
+	private void compact(long bytes, int entries) throws IOException {
+		/*
+		 * Slots of the records from the most to the least recently used.
+		 */
+		List<long[]> slots = new ArrayList<long[]>();
+		for (int slot = 0; slot < capacity; slot++) {
+			int position = position(slot);
+			if (index.getLong(position) != 0) {
+				slots.add(new long[] { index.getLong(position), index.getLong(position + 8),
+						index.getLong(position + 16), index.getLong(position + 24), index.getInt(position + 32),
+						index.getInt(position + 36) });
+			}
+		}
+		Collections.sort(slots, Comparator.comparingLong((long[] slot) -> slot[3]).reversed());
+
+		File compacted = new File(folder, "data.tmp");
+		List<long[]> kept = new ArrayList<long[]>();
+		try (FileChannel output = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			long size = 0;
+			for (long[] slot : slots) {
+				if (kept.size() >= entries) {
+					break;
+				}
+
+				/*
+				 * Smaller and older records can still fit.
+				 */
+				if (size + slot[4] > bytes || slot[2] + slot[4] > data.size()) {
+					continue;
+				}
+
+				for (long copied = 0; copied < slot[4];) {
+					long count = data.transferTo(slot[2] + copied, slot[4] - copied, output);
+					if (count <= 0) {
+						throw new IOException("Solution store data is truncated.");
+					}
+					copied += count;
+				}
+				slot[2] = size;
+				size += slot[4];
+				kept.add(slot);
+			}
+		}
+
+		data.close();
+		Files.move(compacted.toPath(), new File(folder, "data").toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		data = FileChannel.open(new File(folder, "data").toPath(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+
+		/*
+		 * Rebuild the index with the kept records.
+		 */
+		for (int slot = 0; slot < capacity; slot++) {
+			index.putLong(position(slot), 0);
+		}
+		for (long[] slot : kept) {
+			int position = position(slot(slot[0]));
+			index.putLong(position, slot[0]);
+			index.putLong(position + 8, slot[1]);
+			index.putLong(position + 16, slot[2]);
+			index.putLong(position + 24, slot[3]);
+			index.putInt(position + 32, (int) slot[4]);
+			index.putInt(position + 36, (int) slot[5]);
+		}
+		count = kept.size();
+		index.putInt(12, count);
+	}
+
+	/**
+	 * Number of stored solutions.
+	 *
+	 * @return Number of used index slots.
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		index.force();
+		data.close();
+		file.close();
+	}
+
+}
@@ -0,0 +1,240 @@
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Writers of the solution polygons. The vector formats (SVG and GeoJSON) are
+ * written directly from the vertices, without a raster, together with the
+ * share, the achieved area and the color of each pipe. The achieved area is
+ * the exact area of the sub-polygon inside the global polygon.
+ *
+ * @author Todor Balabanov
+ */
+public final class SolutionWriter {
+
+	/**
+	 * Utility class.
+	 */
+	private SolutionWriter() {
+	}
+
+	/**
+	 * Check for supported output format.
+	 *
+	 * @param format
+	 *            Format name, the same as the file extension.
+	 *
+	 * @return True if the format can be written.
+	 */
+	public static boolean accepts(String format) {
+		return "png".equals(format) || "svg".equals(format) || "geojson".equals(format);
+	}
+
+	/**
+	 * Write solution in the format given by the file extension.
+	 *
+	 * @param file
+	 *            Output file with png, svg or geojson extension.
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param solution
+	 *            Sub-polygon for each pipe.
+	 * @param size
+	 *            Width and height of the image, null for the viewport size. It
+	 *            is not used for GeoJSON.
+	 *
+	 * @throws IOException
+	 *             When the file can not be written.
+	 */
+	public static void write(File file, Problem problem, List<List<Point>> solution, int[] size) throws IOException {
+		String name = file.getName();
+
+		if (name.endsWith(".png") == true) {
+			try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(file))) {
+				png(problem, solution, size, stream);
+			}
+			return;
+		}
+
+		/*
+		 * The file is not created for unsupported formats.
+		 */
+		if (name.endsWith(".svg") == false && name.endsWith(".geojson") == false) {
+			throw new IllegalArgumentException("Output format of " + name + " is not supported.");
+		}
+
+		try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+			if (name.endsWith(".svg") == true) {
+				svg(problem, solution, size, writer);
+			} else {
+				geoJson(problem, solution, writer);
+			}
+		}
+	}
+
+	/**
+	 * Write solution as PNG image. It is the only format which needs a
+	 * raster.
+	 *
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param solution
+	 *            Sub-polygon for each pipe.
+	 * @param size
+	 *            Width and height of the image, null for the viewport size.
+	 * @param stream
+	 *            Output bytes.
+	 *
+	 * @throws IOException
+	 *             When the output can not be written.
+	 */
+	public static void png(Problem problem, List<List<Point>> solution, int[] size, OutputStream stream)
+			throws IOException {
+		BufferedImage canvas = problem.getViewport().canvas(problem.getPolygon());
+		Main.draw(canvas, problem, solution);
+		if (size != null) {
+			canvas = Viewport.rescale(canvas, size[0], size[1]);
+		}
+		ImageIO.write(canvas, "png", stream);
+	}
+
+	/**
+	 * Write solution as SVG document. The global polygon is drawn in black
+	 * under the sub-polygons, as in the raster output.
+	 *
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param solution
+	 *            Sub-polygon for each pipe.
+	 * @param size
+	 *            Width and height of the image, null for the polygon bounds.
+	 * @param writer
+	 *            Output characters.
+	 *
+	 * @throws IOException
+	 *             When the output can not be written.
+	 */
+	public static void svg(Problem problem, List<List<Point>> solution, int[] size, Writer writer)
+			throws IOException {
+		Polygon polygon = problem.getPolygon();
+		Rectangle bounds = polygon.getBounds();
+		double[] areas = areas(problem, solution);
+
+		int width = (size == null) ? bounds.width : size[0];
+		int height = (size == null) ? bounds.height : size[1];
+		writer.write(String.format(Locale.ROOT,
+				"<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"%d\" height=\"%d\" viewBox=\"%d %d %d %d\">\n",
+				width, height, bounds.x, bounds.y, bounds.width, bounds.height));
+
+		writer.write("<polygon id=\"boundary\" fill=\"#000000\" points=\"");
+		for (int i = 0; i < polygon.npoints; i++) {
+			writer.write((i == 0 ? "" : " ") + polygon.xpoints[i] + "," + polygon.ypoints[i]);
+		}
+		writer.write("\"/>\n");
+
+		for (int k = 0; k < solution.size(); k++) {
+			Pipe pipe = problem.getPipes().get(k);
+			writer.write(String.format(Locale.ROOT,
+					"<polygon id=\"pipe%d\" fill=\"%s\" data-share=\"%s\" data-area=\"%s\" points=\"", k,
+					color(pipe.color), pipe.share, areas[k]));
+			boolean first = true;
+			for (Point point : solution.get(k)) {
+				writer.write((first ? "" : " ") + point.x + "," + point.y);
+				first = false;
+			}
+			writer.write(String.format(Locale.ROOT, "\"><title>pipe %d: share %s%%, area %s</title></polygon>\n", k,
+					pipe.share, areas[k]));
+		}
+
+		writer.write("</svg>\n");
+	}
+
+	/**
+	 * Write solution as GeoJSON feature collection. The global polygon is the
+	 * first feature and it is followed by a feature for each pipe. Polygon
+	 * rings are closed as the format requires.
+	 *
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param solution
+	 *            Sub-polygon for each pipe.
+	 * @param writer
+	 *            Output characters.
+	 *
+	 * @throws IOException
+	 *             When the output can not be written.
+	 */
+	public static void geoJson(Problem problem, List<List<Point>> solution, Writer writer) throws IOException {
+		Polygon polygon = problem.getPolygon();
+		double[] areas = areas(problem, solution);
+
+		writer.write("{\"type\":\"FeatureCollection\",\"features\":[\n");
+
+		writer.write("{\"type\":\"Feature\",\"properties\":{\"role\":\"boundary\"},");
+		writer.write("\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[[");
+		for (int i = 0; i <= polygon.npoints; i++) {
+			int j = i % polygon.npoints;
+			writer.write((i == 0 ? "" : ",") + "[" + polygon.xpoints[j] + "," + polygon.ypoints[j] + "]");
+		}
+		writer.write("]]}}");
+
+		for (int k = 0; k < solution.size(); k++) {
+			Pipe pipe = problem.getPipes().get(k);
+			writer.write(String.format(Locale.ROOT,
+					",\n{\"type\":\"Feature\",\"properties\":{\"role\":\"pipe\",\"pipe\":%d,\"share\":%s,\"area\":%s,\"color\":\"%s\"},",
+					k, pipe.share, areas[k], color(pipe.color)));
+			writer.write("\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[[");
+			List<Point> points = solution.get(k);
+			for (int i = 0; i <= points.size(); i++) {
+				Point point = points.get(i % points.size());
+				writer.write((i == 0 ? "" : ",") + "[" + point.x + "," + point.y + "]");
+			}
+			writer.write("]]}}");
+		}
+
+		writer.write("\n]}\n");
+	}
+
+	/**
+	 * Exact area of each sub-polygon inside the global polygon.
+	 *
+	 * @param problem
+	 *            Global polygon with its pipes.
+	 * @param solution
+	 *            Sub-polygon for each pipe.
+	 *
+	 * @return Areas in polygon units.
+	 */
+	private static double[] areas(Problem problem, List<List<Point>> solution) {
+		double[] areas = new double[solution.size()];
+		problem.getAnalyticFitness().evaluate(solution, areas);
+		return areas;
+	}
+
+	/**
+	 * Hexadecimal notation of a color.
+	 *
+	 * @param color
+	 *            Color.
+	 *
+	 * @return Color as #RRGGBB.
+	 */
+	private static String color(Color color) {
+		return String.format("#%06X", color.getRGB() & 0xFFFFFF);
+	}
+
+}
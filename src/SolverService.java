@@ -0,0 +1,557 @@
+import java.awt.Point;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.genetics.StoppingCondition;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONObject;
+
+/**
+ * Resident solver service. Requests are JSON lines with the same shape as the
+ * input files and optional parameters next to the polygon: "id" (echoed in the
+ * response), "budget" (seconds), "stagnation" (generations), "tolerance"
+ * (relative area error), "format" (comma separated geojson, svg and png) and
+ * "solver" (genetic, partition for the deterministic partitioning only or
+ * seeded for the genetic algorithm started from the partitioning). Polygons
+ * which are not accepted by the partitioning are solved with the genetic
+ * algorithm and the response names the solver used.
+ * Each response is a JSON line with the status, the quality of the solution
+ * and the solution in the requested formats, PNG encoded as Base64.
+ *
+ * Requests come from the standard input or from connections to a local port.
+ * They are solved by a fixed number of workers. Admission is controlled by a
+ * bounded queue, by a limit of the request length, by a limit of the polygon
+ * size and by a limit of the budget, so the service answers a burst with
+ * rejections instead of running out of memory or time. Longer requests are
+ * rejected before they are parsed and connections over the limit are rejected
+ * before they are read.
+ *
+ * @author Todor Balabanov
+ */
+public class SolverService {
+
+	/**
+	 * Workers with a bounded queue.
+	 */
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Number of threads for fitness evaluation in each job.
+	 */
+	private final int threads;
+
+	/**
+	 * Raster or analytic fitness calculation.
+	 */
+	private final FitnessMode mode;
+
+	/**
+	 * Pixels per polygon unit of the raster calculations.
+	 */
+	private final double scale;
+
+	/**
+	 * Default time budget of a job in seconds.
+	 */
+	private final long budget;
+
+	/**
+	 * Maximal time budget of a job in seconds.
+	 */
+	private final long maximum;
+
+	/**
+	 * Maximal number of polygon vertices.
+	 */
+	private final int vertices;
+
+	/**
+	 * Maximal length of a request in characters.
+	 */
+	private final int length;
+
+	/**
+	 * Persistent solution store, null for none.
+	 */
+	private final SolutionStore store;
+
+	/**
+	 * Constructor with all parameters.
+	 *
+	 * @param workers
+	 *            Number of concurrently solved jobs.
+	 * @param queue
+	 *            Maximal number of waiting jobs.
+	 * @param threads
+	 *            Number of threads for fitness evaluation in each job.
+	 * @param mode
+	 *            Raster or analytic fitness calculation.
+	 * @param scale
+	 *            Pixels per polygon unit of the raster calculations.
+	 * @param budget
+	 *            Default time budget of a job in seconds.
+	 * @param maximum
+	 *            Maximal time budget of a job in seconds.
+	 * @param vertices
+	 *            Maximal number of polygon vertices.
+	 * @param length
+	 *            Maximal length of a request in characters.
+	 * @param store
+	 *            Persistent solution store, null for none.
+	 */
+	public SolverService(int workers, int queue, int threads, FitnessMode mode, double scale, long budget,
+			long maximum, int vertices, int length, SolutionStore store) {
+		if (workers <= 0 || queue < 0 || budget <= 0 || maximum < budget || vertices < 3 || length <= 0) {
+			throw new IllegalArgumentException(
+					"Workers, budget and request length should be positive, the budget within the maximum and the polygon limit at least three.");
+		}
+
+		this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(Math.max(1, queue)), new ThreadPoolExecutor.AbortPolicy());
+		this.threads = threads;
+		this.mode = mode;
+		this.scale = scale;
+		this.budget = budget;
+		this.maximum = maximum;
+		this.vertices = vertices;
+		this.length = length;
+		this.store = store;
+	}
+
+	/**
+	 * Serve requests until the end of the input. Responses are written as
+	 * soon as the jobs finish, so their order can differ from the order of
+	 * the requests. The method returns after all accepted jobs are answered.
+	 *
+	 * @param requests
+	 *            JSON lines with the requests.
+	 * @param responses
+	 *            Output for the JSON lines with the responses.
+	 *
+	 * @throws IOException
+	 *             When the requests can not be read.
+	 */
+	@SuppressWarnings("unchecked")
+	public void serve(BufferedReader requests, Writer responses) throws IOException {
+		Phaser pending = new Phaser(1);
+
+		for (String line = line(requests, length); line != null; line = line(requests, length)) {
+			if (line.trim().isEmpty() == true) {
+				continue;
+			}
+
+			if (line.length() > length) {
+				JSONObject response = new JSONObject();
+				response.put("id", null);
+				response.put("status", "rejected");
+				response.put("reason", "request is longer than " + length + " characters");
+				respond(responses, response);
+				continue;
+			}
+
+			final String request = line;
+			final long received = System.nanoTime();
+			pending.register();
+			try {
+				executor.execute(() -> {
+					try {
+						respond(responses, solve(request, received));
+					} finally {
+						pending.arriveAndDeregister();
+					}
+				});
+			} catch (RejectedExecutionException exception) {
+				pending.arriveAndDeregister();
+
+				JSONObject response = new JSONObject();
+				response.put("id", identifier(request));
+				response.put("status", "rejected");
+				response.put("reason", executor.isShutdown() ? "service is stopping" : "queue is full");
+				respond(responses, response);
+			}
+		}
+
+		pending.arriveAndAwaitAdvance();
+	}
+
+	/**
+	 * Read a line with limited length. The characters after the limit are
+	 * skipped until the end of the line, so a too long line takes only a
+	 * little more memory than the limit.
+	 *
+	 * @param reader
+	 *            Source of the lines.
+	 * @param limit
+	 *            Maximal length of the line.
+	 *
+	 * @return Line without its terminator, longer than the limit if it was
+	 *         cut, or null at the end of the input.
+	 *
+	 * @throws IOException
+	 *             When the line can not be read.
+	 */
+	private static String line(Reader reader, int limit) throws IOException {
+		int character = reader.read();
+		if (character < 0) {
+			return null;
+		}
+
+		StringBuilder line = new StringBuilder();
+		for (; character >= 0 && character != '\n'; character = reader.read()) {
+			if (line.length() <= limit) {
+				line.append((char) character);
+			}
+		}
+
+		if (line.length() > 0 && line.length() <= limit && line.charAt(line.length() - 1) == '\r') {
+			line.setLength(line.length() - 1);
+		}
+
+		return line.toString();
+	}
+
+	/**
+	 * Write single response.
+	 *
+	 * @param responses
+	 *            Output for the JSON lines with the responses.
+	 * @param response
+	 *            Response.
+	 */
+	private static void respond(Writer responses, JSONObject response) {
+		synchronized (responses) {
+			try {
+				responses.write(response.toJSONString());
+				responses.write('\n');
+				responses.flush();
+			} catch (IOException exception) {
+				/*
+				 * The client is gone, there is nobody to answer.
+				 */
+			}
+		}
+	}
+
+	/**
+	 * Request identifier, it is read even from invalid requests.
+	 *
+	 * @param request
+	 *            JSON line.
+	 *
+	 * @return Identifier or null if there is none.
+	 */
+	private static Object identifier(String request) {
+		Map<String, Object> parameters = new HashMap<String, Object>();
+		try {
+			InputReader.json(new StringReader(request), parameters);
+		} catch (Exception exception) {
+			/*
+			 * The identifier can be read even if the polygon is not valid.
+			 */
+		}
+		return parameters.get("id");
+	}
+
+	/**
+	 * Solve single request.
+	 *
+	 * @param request
+	 *            JSON line.
+	 * @param received
+	 *            Time of the request in nanoseconds.
+	 *
+	 * @return Response.
+	 */
+	@SuppressWarnings("unchecked")
+	private JSONObject solve(String request, long received) {
+		long start = System.nanoTime();
+		JSONObject response = new JSONObject();
+		Map<String, Object> parameters = new HashMap<String, Object>();
+
+		try {
+			InputReader.Input input = InputReader.json(new StringReader(request), parameters);
+			response.put("id", parameters.get("id"));
+
+			if (input.size() > vertices) {
+				response.put("status", "rejected");
+				response.put("reason", "polygon has " + input.size() + " vertices, the limit is " + vertices);
+				return response;
+			}
+
+			long seconds = parameters.containsKey("budget") ? Long.parseLong("" + parameters.get("budget")) : budget;
+			if (seconds <= 0 || seconds > maximum) {
+				response.put("status", "rejected");
+				response.put("reason", "budget should be from 1 to " + maximum + " seconds");
+				return response;
+			}
+
+			String[] formats = ("" + parameters.getOrDefault("format", "geojson")).split(",");
+			for (String format : formats) {
+				if (SolutionWriter.accepts(format) == false) {
+					throw new IllegalArgumentException("Output format " + format + " is not supported.");
+				}
+			}
+
+			StoppingCondition condition = null;
+			if (parameters.containsKey("stagnation") == true) {
+				condition = StoppingConditions.stagnation(Integer.parseInt("" + parameters.get("stagnation")));
+			}
+			if (parameters.containsKey("tolerance") == true) {
+				StoppingCondition error = StoppingConditions
+						.targetAreaError(Double.parseDouble("" + parameters.get("tolerance")));
+				condition = (condition == null) ? error : StoppingConditions.any(condition, error);
+			}
+
+			String method = "" + parameters.getOrDefault("solver", "genetic");
+			if ("genetic".equals(method) == false && "partition".equals(method) == false
+					&& "seeded".equals(method) == false) {
+				throw new IllegalArgumentException("Solver " + method + " is not supported.");
+			}
+
+			Problem problem = Main.problem(input, mode, scale);
+
+			/*
+			 * Big or reflex-heavy polygons are too slow for the partitioning.
+			 */
+			if ("genetic".equals(method) == false && PartitionSolver.accepts(problem) == false) {
+				method = "genetic";
+			}
+
+			/*
+			 * The partitioning alone has the whole budget, as a seed it has a
+			 * tenth of it. Non-convex polygons can still be rejected by the
+			 * partitioning and then they are left to the genetic algorithm.
+			 */
+			List<List<Point>> partition = null;
+			if ("genetic".equals(method) == false) {
+				long timeout = ("partition".equals(method) == true) ? 1000L * seconds : 100L * seconds;
+				try {
+					partition = new PartitionSolver(1E-4, 100, timeout).solve(problem);
+				} catch (IllegalStateException exception) {
+					method = "genetic";
+				}
+			}
+			response.put("solver", method);
+
+			GeneticAlgorithmSolver solver = new GeneticAlgorithmSolver(37, 0.9, 0.01, 2, 0.1, seconds, threads);
+			List<List<Point>> solution;
+			if ("partition".equals(method) == true) {
+				solution = partition;
+			} else if ("seeded".equals(method) == true) {
+				solution = solver.solve(problem, Collections.singletonList(partition), condition);
+			} else if (store != null) {
+				solution = solver.solve(problem, store, null, null, condition);
+			} else {
+				solution = solver.solve(problem, condition);
+			}
+			long solved = System.nanoTime();
+
+			PolygonListChromosome best = new PolygonListChromosome(solution, problem);
+			response.put("status", "ok");
+			response.put("fitness", best.getFitness());
+			double error = 0;
+			for (double value : best.areaErrors()) {
+				error = Math.max(error, Math.abs(value));
+			}
+			response.put("error", error);
+			response.put("evaluations", problem.getEvaluations());
+			response.put("wait", (start - received) / 1E9);
+			response.put("solve", (solved - start) / 1E9);
+
+			/*
+			 * Vector formats are embedded as they are, PNG as Base64.
+			 */
+			for (String format : formats) {
+				if ("png".equals(format) == true) {
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					SolutionWriter.png(problem, solution, null, bytes);
+					response.put("png", Base64.getEncoder().encodeToString(bytes.toByteArray()));
+				} else if ("svg".equals(format) == true) {
+					StringWriter text = new StringWriter();
+					SolutionWriter.svg(problem, solution, null, text);
+					response.put("svg", text.toString());
+				} else {
+					StringWriter text = new StringWriter();
+					SolutionWriter.geoJson(problem, solution, text);
+					final String json = text.toString().replace("\n", "");
+					response.put("geojson", (JSONAware) () -> json);
+				}
+			}
+		} catch (Exception exception) {
+			response.put("id", parameters.get("id"));
+			response.put("status", "error");
+			response.put("reason", "" + exception);
+		}
+
+		return response;
+	}
+
+	/**
+	 * Stop accepting jobs and wait for the running ones.
+	 *
+	 * @throws InterruptedException
+	 *             When the waiting is interrupted.
+	 */
+	public void shutdown() throws InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+	}
+
+	/**
+	 * Service entry point.
+	 *
+	 * Usage: java SolverService [-workers N] [-queue N] [-threads N] [-mode
+	 * RASTER|ANALYTIC] [-scale pixels] [-budget seconds] [-maxbudget seconds]
+	 * [-maxvertices N] [-maxlength characters] [-store folder [-storesize
+	 * megabytes]] [-port N [-maxconnections N]]
+	 *
+	 * Without a port the requests are read from the standard input until its
+	 * end. With a port the service listens on the loopback interface and each
+	 * connection is a stream of requests. Connections over the limit get a
+	 * single rejection and they are closed.
+	 *
+	 * @param args
+	 *            Command line arguments.
+	 *
+	 * @throws Exception
+	 *             When the service can not be started.
+	 */
+	@SuppressWarnings("unchecked")
+	public static void main(String[] args) throws Exception {
+		int workers = Runtime.getRuntime().availableProcessors();
+		int queue = 4 * workers;
+		int threads = 1;
+		FitnessMode mode = FitnessMode.ANALYTIC;
+		double scale = 1;
+		long budget = 10;
+		long maximum = 300;
+		int vertices = 100000;
+		int length = 1 << 23;
+		File folder = null;
+		long megabytes = 256;
+		int port = -1;
+		int connections = 16;
+
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-workers":
+				workers = Integer.parseInt(args[++i]);
+				break;
+			case "-queue":
+				queue = Integer.parseInt(args[++i]);
+				break;
+			case "-threads":
+				threads = Integer.parseInt(args[++i]);
+				break;
+			case "-mode":
+				mode = FitnessMode.valueOf(args[++i]);
+				break;
+			case "-scale":
+				scale = Double.parseDouble(args[++i]);
+				break;
+			case "-budget":
+				budget = Long.parseLong(args[++i]);
+				break;
+			case "-maxbudget":
+				maximum = Long.parseLong(args[++i]);
+				break;
+			case "-maxvertices":
+				vertices = Integer.parseInt(args[++i]);
+				break;
+			case "-maxlength":
+				length = Integer.parseInt(args[++i]);
+				break;
+			case "-maxconnections":
+				connections = Integer.parseInt(args[++i]);
+				break;
+			case "-store":
+				folder = new File(args[++i]);
+				break;
+			case "-storesize":
+				megabytes = Long.parseLong(args[++i]);
+				break;
+			case "-port":
+				port = Integer.parseInt(args[++i]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+			}
+		}
+
+		SolutionStore store = (folder == null) ? null : new SolutionStore(folder, megabytes << 20);
+		final SolverService service = new SolverService(workers, queue, threads, mode, scale, budget, maximum,
+				vertices, length, store);
+
+		if (port < 0) {
+			service.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+					new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+		} else {
+			final Semaphore open = new Semaphore(connections);
+			try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+				while (true) {
+					final Socket socket = server.accept();
+					if (open.tryAcquire() == false) {
+						try (Socket client = socket) {
+							JSONObject response = new JSONObject();
+							response.put("id", null);
+							response.put("status", "rejected");
+							response.put("reason", "too many connections");
+							respond(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8), response);
+						} catch (IOException exception) {
+							/*
+							 * Rejected client is gone already.
+							 */
+						}
+						continue;
+					}
+
+					Thread connection = new Thread(() -> {
+						try (Socket client = socket) {
+							service.serve(
+									new BufferedReader(
+											new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8)),
+									new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+						} catch (IOException exception) {
+							/*
+							 * Broken connection does not stop the service.
+							 */
+						} finally {
+							open.release();
+						}
+					});
+					connection.setDaemon(true);
+					connection.start();
+				}
+			}
+		}
+
+		service.shutdown();
+		if (store != null) {
+			store.close();
+		}
+	}
+
+}
@@ -0,0 +1,195 @@
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.genetics.Chromosome;
+import org.apache.commons.math3.genetics.Population;
+import org.apache.commons.math3.genetics.StoppingCondition;
+
+/**
+ * Composable stopping conditions for the genetic algorithms. All conditions
+ * are safe for concurrent use, so they can be shared by the islands of the
+ * island model. Stateful conditions should not be reused between solves.
+ *
+ * @author Todor Balabanov
+ */
+public final class StoppingConditions {
+
+	/**
+	 * Utility class.
+	 */
+	private StoppingConditions() {
+	}
+
+	/**
+	 * Satisfied when the best fitness was not improved in a number of checks.
+	 * The genetic algorithm checks once per generation (once per island
+	 * generation in the island model). The cost is multiplied by the distance
+	 * of the sub-polygons to their sides, so a zero fitness means sub-polygons
+	 * without area. Such a degenerate population can not improve, but it is
+	 * not a solution, so its checks are not counted.
+	 *
+	 * @param generations
+	 *            Number of generations without improvement.
+	 *
+	 * @return Stopping condition.
+	 */
+	public static StoppingCondition stagnation(final int generations) {
+		return new StoppingCondition() {
+			/**
+			 * Best fitness seen so far.
+			 */
+			private double best = Double.NEGATIVE_INFINITY;
+
+			/**
+			 * Checks since the last improvement.
+			 */
+			private int count = 0;
+
+			@Override
+			public synchronized boolean isSatisfied(Population population) {
+				double fitness = population.getFittestChromosome().getFitness();
+				if (fitness >= 0) {
+					return false;
+				}
+
+				if (fitness > best) {
+					best = fitness;
+					count = 0;
+				} else {
+					count++;
+				}
+				return count >= generations;
+			}
+		};
+	}
+
+	/**
+	 * Satisfied when the best fitness reaches a target value.
+	 *
+	 * @param target
+	 *            Target fitness.
+	 *
+	 * @return Stopping condition.
+	 */
+	public static StoppingCondition targetFitness(final double target) {
+		return population -> population.getFittestChromosome().getFitness() >= target;
+	}
+
+	/**
+	 * Satisfied when each pipe of the best solution is close enough to its
+	 * share. The areas are calculated exactly from the vertices.
+	 *
+	 * @param tolerance
+	 *            Relative area error of a pipe, for example 0.005 for 0.5% of
+	 *            its share.
+	 *
+	 * @return Stopping condition.
+	 */
+	public static StoppingCondition targetAreaError(final double tolerance) {
+		return population -> {
+			Chromosome best = population.getFittestChromosome();
+			if (best instanceof PolygonListChromosome == false) {
+				return false;
+			}
+
+			for (double error : ((PolygonListChromosome) best).areaErrors()) {
+				if (Math.abs(error) > tolerance) {
+					return false;
+				}
+			}
+			return true;
+		};
+	}
+
+	/**
+	 * Satisfied when the fitness was evaluated a number of times for the
+	 * problem of the population.
+	 *
+	 * @param evaluations
+	 *            Maximum number of evaluations.
+	 *
+	 * @return Stopping condition.
+	 */
+	public static StoppingCondition maxEvaluations(final long evaluations) {
+		return population -> {
+			Chromosome best = population.getFittestChromosome();
+			if (best instanceof PolygonListChromosome == false) {
+				return false;
+			}
+
+			return ((PolygonListChromosome) best).getProblem().getEvaluations() >= evaluations;
+		};
+	}
+
+	/**
+	 * Satisfied when some time passed after the first check. Unlike
+	 * commons-math FixedElapsedTime it can be checked from many threads.
+	 *
+	 * @param duration
+	 *            Time budget.
+	 * @param unit
+	 *            Time unit of the budget.
+	 *
+	 * @return Stopping condition.
+	 */
+	public static StoppingCondition wallClock(final long duration, final TimeUnit unit) {
+		return new StoppingCondition() {
+			/**
+			 * End time in nanoseconds, it is set on the first check.
+			 */
+			private long end = 0;
+
+			/**
+			 * The end time is set.
+			 */
+			private boolean started = false;
+
+			@Override
+			public synchronized boolean isSatisfied(Population population) {
+				if (started == false) {
+					end = System.nanoTime() + unit.toNanos(duration);
+					started = true;
+				}
+				return System.nanoTime() >= end;
+			}
+		};
+	}
+
+	/**
+	 * Satisfied when any of the conditions is satisfied. All conditions are
+	 * checked each time, so stateful conditions see each generation.
+	 *
+	 * @param conditions
+	 *            Stopping conditions.
+	 *
+	 * @return Stopping condition.
+	 */
+	public static StoppingCondition any(final StoppingCondition... conditions) {
+		return population -> {
+			boolean result = false;
+			for (StoppingCondition condition : conditions) {
+				result |= condition.isSatisfied(population);
+			}
+			return result;
+		};
+	}
+
+	/**
+	 * Satisfied when all of the conditions are satisfied. All conditions are
+	 * checked each time, so stateful conditions see each generation.
+	 *
+	 * @param conditions
+	 *            Stopping conditions.
+	 *
+	 * @return Stopping condition.
+	 */
+	public static StoppingCondition all(final StoppingCondition... conditions) {
+		return population -> {
+			boolean result = conditions.length > 0;
+			for (StoppingCondition condition : conditions) {
+				result &= condition.isSatisfied(population);
+			}
+			return result;
+		};
+	}
+
+}
@@ -0,0 +1,472 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.math3.genetics.Chromosome;
+import org.apache.commons.math3.genetics.Population;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Solver telemetry. Metrics are emitted as custom flight recorder events and
+ * optionally as records in a trace sink. When flight recording of the events
+ * is off and there is no sink, the instrumented code only checks a flag.
+ *
+ * @author Todor Balabanov
+ */
+public final class Telemetry {
+
+	/**
+	 * Receiver of telemetry records.
+	 */
+	public interface Sink {
+
+		/**
+		 * Write single record.
+		 *
+		 * @param type
+		 *            Record type.
+		 * @param names
+		 *            Field names.
+		 * @param values
+		 *            Field values.
+		 */
+		void record(String type, String[] names, Object[] values);
+	}
+
+	/**
+	 * Trace sink which writes CSV or JSON lines. CSV records of each type are
+	 * preceded by a header line the first time the type is written.
+	 */
+	public static final class TraceSink implements Sink, Closeable {
+
+		/**
+		 * Output writer.
+		 */
+		private final Writer writer;
+
+		/**
+		 * JSON lines if true, CSV otherwise.
+		 */
+		private final boolean json;
+
+		/**
+		 * Record types with written CSV header.
+		 */
+		private final Set<String> headers = new HashSet<String>();
+
+		/**
+		 * Constructor with all parameters.
+		 *
+		 * @param writer
+		 *            Output writer.
+		 * @param json
+		 *            JSON lines if true, CSV otherwise.
+		 */
+		public TraceSink(Writer writer, boolean json) {
+			this.writer = writer;
+			this.json = json;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public synchronized void record(String type, String[] names, Object[] values) {
+			StringBuilder line = new StringBuilder();
+
+			if (json == true) {
+				line.append("{\"type\":\"").append(type).append('"');
+				for (int i = 0; i < names.length; i++) {
+					line.append(",\"").append(names[i]).append("\":");
+					if (values[i] instanceof Number || values[i] instanceof Boolean) {
+						line.append(values[i]);
+					} else {
+						line.append('"').append(values[i]).append('"');
+					}
+				}
+				line.append('}');
+			} else {
+				if (headers.add(type) == true) {
+					line.append("type");
+					for (String name : names) {
+						line.append(',').append(name);
+					}
+					line.append('\n');
+				}
+
+				line.append(type);
+				for (Object value : values) {
+					line.append(',').append(value);
+				}
+			}
+			line.append('\n');
+
+			try {
+				writer.write(line.toString());
+				writer.flush();
+			} catch (IOException exception) {
+				throw new RuntimeException(exception);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Single generation of the genetic algorithm.
+	 */
+	@Name("polygon.Generation")
+	@Label("Generation")
+	@Category("Polygon Partitioning")
+	@Description("Single generation of the genetic algorithm")
+	@StackTrace(false)
+	static final class GenerationEvent extends Event {
+		@Label("Problem")
+		long problem;
+
+		@Label("Island")
+		int island;
+
+		@Label("Generation")
+		long generation;
+
+		@Label("Latency")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+
+		@Label("Evaluations")
+		long evaluations;
+
+		@Label("Evaluations per Second")
+		double rate;
+
+		@Label("Best Fitness")
+		double best;
+
+		@Label("Mean Fitness")
+		double mean;
+
+		@Label("Worst Area Error")
+		double error;
+
+		@Label("Area Errors")
+		String errors;
+
+		@Label("Cache Hit Rate")
+		double hits;
+	}
+
+	/**
+	 * Single fitness evaluation, it is disabled by default.
+	 */
+	@Name("polygon.Evaluation")
+	@Label("Evaluation")
+	@Category("Polygon Partitioning")
+	@Description("Single fitness evaluation")
+	@StackTrace(false)
+	@Enabled(false)
+	static final class EvaluationEvent extends Event {
+		@Label("Problem")
+		long problem;
+
+		@Label("Analytic")
+		boolean analytic;
+
+		@Label("Cached")
+		boolean cached;
+	}
+
+	/**
+	 * Frontier sizes sampled during flooding.
+	 */
+	@Name("polygon.Frontier")
+	@Label("Frontier")
+	@Category("Polygon Partitioning")
+	@Description("Candidate frontier sizes during flooding")
+	@StackTrace(false)
+	static final class FrontierEvent extends Event {
+		@Label("Steps")
+		long steps;
+
+		@Label("Total Size")
+		long total;
+
+		@Label("Sizes")
+		String sizes;
+	}
+
+	/**
+	 * Complete flooding.
+	 */
+	@Name("polygon.Flood")
+	@Label("Flood")
+	@Category("Polygon Partitioning")
+	@Description("Complete flooding of the polygon")
+	@StackTrace(false)
+	static final class FloodEvent extends Event {
+		@Label("Flooding Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long elapsed;
+
+		@Label("Steps")
+		long steps;
+
+		@Label("Pixels")
+		long pixels;
+
+		@Label("Largest Frontier")
+		long frontier;
+	}
+
+	/**
+	 * Frontier sizes are sampled once in this number of flooding steps.
+	 */
+	static final int FRONTIER_SAMPLING = 1 << 12;
+
+	/**
+	 * Trace sink, null if not used.
+	 */
+	private static volatile Sink sink = null;
+
+	/**
+	 * Instance only used to check whether evaluation events are recorded.
+	 */
+	private static final EvaluationEvent EVALUATION = new EvaluationEvent();
+
+	/**
+	 * Instance only used to check whether generation events are recorded.
+	 */
+	private static final GenerationEvent GENERATION = new GenerationEvent();
+
+	/**
+	 * Instance only used to check whether flood events are recorded.
+	 */
+	private static final FloodEvent FLOOD = new FloodEvent();
+
+	/**
+	 * Instance only used to check whether frontier events are recorded.
+	 */
+	private static final FrontierEvent FRONTIER = new FrontierEvent();
+
+	/**
+	 * Utility class.
+	 */
+	private Telemetry() {
+	}
+
+	/**
+	 * Set trace sink.
+	 *
+	 * @param sink
+	 *            Trace sink, null to disable the tracing.
+	 */
+	public static void setSink(Sink sink) {
+		Telemetry.sink = sink;
+	}
+
+	/**
+	 * Check for generation metrics collection.
+	 *
+	 * @return True if the generations should be measured.
+	 */
+	static boolean generations() {
+		return sink != null || GENERATION.isEnabled();
+	}
+
+	/**
+	 * Check for flooding metrics collection.
+	 *
+	 * @return True if the flooding should be measured.
+	 */
+	static boolean floods() {
+		return sink != null || FLOOD.isEnabled() || FRONTIER.isEnabled();
+	}
+
+	/**
+	 * Number of fitness evaluations of the problem of a population.
+	 *
+	 * @param population
+	 *            Population of polygon list chromosomes.
+	 *
+	 * @return Number of evaluations or zero for other chromosomes.
+	 */
+	static long evaluations(Population population) {
+		for (Chromosome chromosome : population) {
+			if (chromosome instanceof PolygonListChromosome) {
+				return ((PolygonListChromosome) chromosome).getProblem().getEvaluations();
+			}
+			break;
+		}
+		return 0;
+	}
+
+	/**
+	 * Report evaluated generation.
+	 *
+	 * @param population
+	 *            Evaluated population.
+	 * @param island
+	 *            Island index, zero for a single population.
+	 * @param generation
+	 *            Generation index.
+	 * @param latency
+	 *            Generation time in nanoseconds.
+	 * @param evaluations
+	 *            Fitness evaluations in the generation.
+	 * @param duration
+	 *            Time of the evaluations in nanoseconds.
+	 */
+	static void generation(Population population, int island, long generation, long latency, long evaluations,
+			long duration) {
+		double best = Double.NEGATIVE_INFINITY;
+		double sum = 0;
+		int count = 0;
+		Chromosome fittest = null;
+		for (Chromosome chromosome : population) {
+			double fitness = chromosome.getFitness();
+			sum += fitness;
+			count++;
+			if (fittest == null || fitness > best) {
+				best = fitness;
+				fittest = chromosome;
+			}
+		}
+
+		long problem = 0;
+		double error = 0;
+		double[] errors = new double[0];
+		double hits = 0;
+		if (fittest instanceof PolygonListChromosome) {
+			Problem context = ((PolygonListChromosome) fittest).getProblem();
+			problem = context.getFingerprint();
+			errors = ((PolygonListChromosome) fittest).areaErrors();
+			for (double value : errors) {
+				error = Math.max(error, Math.abs(value));
+			}
+
+			FitnessCache cache = context.getFitnessCache();
+			if (cache != null && cache.getHits() + cache.getMisses() > 0) {
+				hits = (double) cache.getHits() / (cache.getHits() + cache.getMisses());
+			}
+		}
+
+		double mean = (count == 0) ? 0 : sum / count;
+		double rate = (duration == 0) ? 0 : evaluations * 1E9 / duration;
+
+		GenerationEvent event = new GenerationEvent();
+		if (event.shouldCommit() == true) {
+			event.problem = problem;
+			event.island = island;
+			event.generation = generation;
+			event.latency = latency;
+			event.evaluations = evaluations;
+			event.rate = rate;
+			event.best = best;
+			event.mean = mean;
+			event.error = error;
+			event.errors = Arrays.toString(errors);
+			event.hits = hits;
+			event.commit();
+		}
+
+		Sink output = sink;
+		if (output != null) {
+			output.record("generation",
+					new String[] { "time", "problem", "island", "generation", "latency", "evaluations", "rate", "best",
+							"mean", "error", "errors", "hits" },
+					new Object[] { System.currentTimeMillis(), problem, island, generation, latency, evaluations, rate,
+							best, mean, error, Arrays.toString(errors).replace(',', ' '), hits });
+		}
+	}
+
+	/**
+	 * Start fitness evaluation measurement.
+	 *
+	 * @return Event, null if evaluation events are not recorded.
+	 */
+	static EvaluationEvent evaluation() {
+		if (EVALUATION.isEnabled() == false) {
+			return null;
+		}
+
+		EvaluationEvent event = new EvaluationEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Report frontier sizes.
+	 *
+	 * @param steps
+	 *            Number of flooding steps so far.
+	 * @param sizes
+	 *            Frontier size of each pipe.
+	 */
+	static void frontiers(long steps, int[] sizes) {
+		long total = 0;
+		for (int size : sizes) {
+			total += size;
+		}
+
+		FrontierEvent event = new FrontierEvent();
+		if (event.shouldCommit() == true) {
+			event.steps = steps;
+			event.total = total;
+			event.sizes = Arrays.toString(sizes);
+			event.commit();
+		}
+
+		Sink output = sink;
+		if (output != null) {
+			output.record("frontier", new String[] { "time", "steps", "total", "sizes" }, new Object[] {
+					System.currentTimeMillis(), steps, total, Arrays.toString(sizes).replace(',', ' ') });
+		}
+	}
+
+	/**
+	 * Report complete flooding.
+	 *
+	 * @param start
+	 *            Start time in nanoseconds.
+	 * @param steps
+	 *            Number of flooding steps (rounds in concurrent flooding).
+	 * @param pixels
+	 *            Number of flooded pixels.
+	 * @param frontier
+	 *            Largest total frontier size.
+	 */
+	static void flood(long start, long steps, long pixels, long frontier) {
+		FloodEvent event = new FloodEvent();
+		if (event.shouldCommit() == true) {
+			event.elapsed = System.nanoTime() - start;
+			event.steps = steps;
+			event.pixels = pixels;
+			event.frontier = frontier;
+			event.commit();
+		}
+
+		Sink output = sink;
+		if (output != null) {
+			output.record("flood", new String[] { "time", "duration", "steps", "pixels", "frontier" }, new Object[] {
+					System.currentTimeMillis(), System.nanoTime() - start, steps, pixels, frontier });
+		}
+	}
+
+}
@@ -0,0 +1,249 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * Working canvas of a problem. It covers only the bounding box of the global
+ * polygon and it has configurable resolution, so the raster calculations do
+ * not depend on a fixed image size. Image pixel (i, j) is the polygon point
+ * (left + i / scale, top + j / scale).
+ *
+ * @author Todor Balabanov
+ */
+public class Viewport {
+
+	/**
+	 * Empty pixels around the polygon.
+	 */
+	private static final int MARGIN = 1;
+
+	/**
+	 * Polygon coordinates of the top left pixel.
+	 */
+	private final int left, top;
+
+	/**
+	 * Size of the canvas in pixels.
+	 */
+	private final int width, height;
+
+	/**
+	 * Pixels per polygon unit.
+	 */
+	private final double scale;
+
+	/**
+	 * Constructor with all parameters.
+	 *
+	 * @param left
+	 *            Polygon x coordinate of the top left pixel.
+	 * @param top
+	 *            Polygon y coordinate of the top left pixel.
+	 * @param width
+	 *            Width in pixels.
+	 * @param height
+	 *            Height in pixels.
+	 * @param scale
+	 *            Pixels per polygon unit.
+	 */
+	public Viewport(int left, int top, int width, int height, double scale) {
+		super();
+
+		if (width <= 0 || height <= 0 || scale <= 0) {
+			throw new IllegalArgumentException("Viewport size and scale should be positive.");
+		}
+
+		this.left = left;
+		this.top = top;
+		this.width = width;
+		this.height = height;
+		this.scale = scale;
+	}
+
+	/**
+	 * Viewport over the bounding box of a polygon.
+	 *
+	 * @param polygon
+	 *            Global polygon.
+	 * @param scale
+	 *            Pixels per polygon unit.
+	 *
+	 * @return Canvas description.
+	 */
+	public static Viewport of(Polygon polygon, double scale) {
+		Rectangle box = polygon.getBounds();
+		return new Viewport(box.x - MARGIN, box.y - MARGIN, (int) Math.ceil((box.width + 2 * MARGIN + 1) * scale),
+				(int) Math.ceil((box.height + 2 * MARGIN + 1) * scale), scale);
+	}
+
+	/**
+	 * Width getter.
+	 *
+	 * @return Width in pixels.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Height getter.
+	 *
+	 * @return Height in pixels.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Scale getter.
+	 *
+	 * @return Pixels per polygon unit.
+	 */
+	public double getScale() {
+		return scale;
+	}
+
+	/**
+	 * Polygon x coordinate to pixel column.
+	 *
+	 * @param x
+	 *            Polygon coordinate.
+	 *
+	 * @return Pixel coordinate.
+	 */
+	public double x(double x) {
+		return (x - left) * scale;
+	}
+
+	/**
+	 * Polygon y coordinate to pixel row.
+	 *
+	 * @param y
+	 *            Polygon coordinate.
+	 *
+	 * @return Pixel coordinate.
+	 */
+	public double y(double y) {
+		return (y - top) * scale;
+	}
+
+	/**
+	 * Polygon point to pixel.
+	 *
+	 * @param point
+	 *            Polygon point.
+	 *
+	 * @return Pixel coordinates.
+	 */
+	public Point pixel(Point point) {
+		return new Point((int) Math.round(x(point.x)), (int) Math.round(y(point.y)));
+	}
+
+	/**
+	 * Polygon in pixel coordinates.
+	 *
+	 * @param polygon
+	 *            Polygon in polygon coordinates.
+	 *
+	 * @return Polygon in pixel coordinates.
+	 */
+	public Polygon pixels(Polygon polygon) {
+		Polygon result = new Polygon();
+		for (int i = 0; i < polygon.npoints; i++) {
+			result.addPoint((int) Math.round(x(polygon.xpoints[i])), (int) Math.round(y(polygon.ypoints[i])));
+		}
+		return result;
+	}
+
+	/**
+	 * Polygon in pixel coordinates.
+	 *
+	 * @param points
+	 *            Polygon vertices in polygon coordinates.
+	 *
+	 * @return Polygon in pixel coordinates.
+	 */
+	public Polygon pixels(List<Point> points) {
+		Polygon result = new Polygon();
+		for (Point point : points) {
+			result.addPoint((int) Math.round(x(point.x)), (int) Math.round(y(point.y)));
+		}
+		return result;
+	}
+
+	/**
+	 * Empty canvas with white background and black initial area.
+	 *
+	 * @param polygon
+	 *            Global polygon.
+	 *
+	 * @return Canvas image.
+	 */
+	public BufferedImage canvas(Polygon polygon) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics graphics = image.getGraphics();
+
+		/*
+		 * White background.
+		 */
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, width, height);
+
+		/*
+		 * Black initial area.
+		 */
+		Polygon shape = pixels(polygon);
+		graphics.setColor(Color.BLACK);
+		graphics.drawPolygon(shape);
+		graphics.fillPolygon(shape);
+
+		return image;
+	}
+
+	/**
+	 * Area of a polygon in pixels on this canvas.
+	 *
+	 * @param polygon
+	 *            Global polygon.
+	 *
+	 * @return Number of pixels inside the polygon.
+	 */
+	public int area(Polygon polygon) {
+		BufferedImage image = canvas(polygon);
+		int area = 0;
+		for (int pixel : image.getRGB(0, 0, width, height, null, 0, width)) {
+			if (pixel == Color.BLACK.getRGB()) {
+				area++;
+			}
+		}
+		return area;
+	}
+
+	/**
+	 * Rescale an image to the requested output size.
+	 *
+	 * @param image
+	 *            Source image.
+	 * @param width
+	 *            Output width.
+	 * @param height
+	 *            Output height.
+	 *
+	 * @return Rescaled image.
+	 */
+	public static BufferedImage rescale(BufferedImage image, int width, int height) {
+		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = result.createGraphics();
+		graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		graphics.drawImage(image, 0, 0, width, height, null);
+		graphics.dispose();
+		return result;
+	}
+
+}
@@ -0,0 +1,299 @@
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.geom.Area;
+import java.awt.geom.PathIterator;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.genetics.MutationPolicy;
+import org.junit.Test;
+
+/**
+ * Exact geometry tests of the analytic fitness against known areas and
+ * against the constructive area geometry of the AWT.
+ *
+ * @author Todor Balabanov
+ */
+public class AnalyticFitnessTest {
+
+	/**
+	 * Square global polygon of side 100.
+	 */
+	private static final Polygon SQUARE = new Polygon(new int[] { 0, 100, 100, 0 }, new int[] { 0, 0, 100, 100 }, 4);
+
+	/**
+	 * Pipes on the sides of a polygon with equal shares.
+	 *
+	 * @param polygon
+	 *            Global polygon.
+	 * @param count
+	 *            Number of pipes, they are on the first sides.
+	 *
+	 * @return Pipes.
+	 */
+	private static List<Pipe> pipes(Polygon polygon, int count) {
+		List<Pipe> pipes = new ArrayList<Pipe>();
+		for (int k = 0; k < count; k++) {
+			int next = (k + 1) % polygon.npoints;
+			pipes.add(new Pipe(Color.RED, new Point(polygon.xpoints[k], polygon.ypoints[k]),
+					new Point(polygon.xpoints[next], polygon.ypoints[next]), 0, 100D / count));
+		}
+		return pipes;
+	}
+
+	/**
+	 * Polygon from coordinates pairs.
+	 *
+	 * @param xy
+	 *            Interleaved coordinates.
+	 *
+	 * @return List of vertices.
+	 */
+	private static List<Point> points(int... xy) {
+		List<Point> points = new ArrayList<Point>();
+		for (int i = 0; i < xy.length; i += 2) {
+			points.add(new Point(xy[i], xy[i + 1]));
+		}
+		return points;
+	}
+
+	/**
+	 * Random star shaped polygon, it is simple but usually not convex.
+	 *
+	 * @param random
+	 *            Pseudo-random numbers generator.
+	 * @param bounds
+	 *            Size of the area for the center.
+	 *
+	 * @return List of vertices.
+	 */
+	private static List<Point> star(Random random, int bounds) {
+		int cx = random.nextInt(bounds);
+		int cy = random.nextInt(bounds);
+		int count = 4 + random.nextInt(8);
+
+		/*
+		 * Gaps between the angles are less than a half turn, so the polygon
+		 * does not intersect itself.
+		 */
+		List<Point> points = new ArrayList<Point>();
+		for (int i = 0; i < count; i++) {
+			double angle = 2 * Math.PI * (i + random.nextDouble() / 2) / count;
+			double radius = bounds / 20D + random.nextDouble() * bounds / 2D;
+			points.add(new Point((int) Math.round(cx + radius * Math.cos(angle)),
+					(int) Math.round(cy + radius * Math.sin(angle))));
+		}
+		return points;
+	}
+
+	/**
+	 * Area of a shape with straight edges.
+	 *
+	 * @param shape
+	 *            Shape.
+	 *
+	 * @return Area in square pixels.
+	 */
+	private static double area(Area shape) {
+		double sum = 0;
+		double[] coordinates = new double[6];
+		double sx = 0, sy = 0, px = 0, py = 0;
+		for (PathIterator iterator = shape.getPathIterator(null); iterator.isDone() == false; iterator.next()) {
+			int type = iterator.currentSegment(coordinates);
+			if (type == PathIterator.SEG_MOVETO) {
+				sx = px = coordinates[0];
+				sy = py = coordinates[1];
+			} else if (type == PathIterator.SEG_LINETO) {
+				sum += px * coordinates[1] - coordinates[0] * py;
+				px = coordinates[0];
+				py = coordinates[1];
+			} else {
+				sum += px * sy - sx * py;
+				px = sx;
+				py = sy;
+			}
+		}
+		return Math.abs(sum / 2D);
+	}
+
+	/**
+	 * Shape of a list of vertices.
+	 *
+	 * @param points
+	 *            Vertices.
+	 *
+	 * @return Shape.
+	 */
+	private static Area shape(List<Point> points) {
+		Polygon polygon = new Polygon();
+		for (Point point : points) {
+			polygon.addPoint(point.x, point.y);
+		}
+		return new Area(polygon);
+	}
+
+	/**
+	 * Triangles of the input polygons cover the polygon area.
+	 *
+	 * @throws Exception
+	 *             If an input file can not be read.
+	 */
+	@Test
+	public void triangulation() throws Exception {
+		for (File file : new File("dat").listFiles()) {
+			if (InputReader.accepts(file.getName()) == false) {
+				continue;
+			}
+
+			InputReader.Input input = InputReader.read(file.getPath());
+			Polygon polygon = new Polygon(input.getX(), input.getY(), input.size());
+
+			double[] triangles = Geometry.triangulate(polygon);
+			double sum = 0;
+			for (int t = 0; t < triangles.length; t += 6) {
+				sum += Geometry.area(triangles, t, 3);
+			}
+
+			assertEquals(file.getName(), area(new Area(polygon)), sum, 1E-6);
+		}
+	}
+
+	/**
+	 * Triangles from the sides of a square to its center have known areas and
+	 * known integrated distances to the sides.
+	 */
+	@Test
+	public void knownSolution() {
+		AnalyticFitness engine = new AnalyticFitness(SQUARE, pipes(SQUARE, 4));
+		List<List<Point>> solution = Arrays.asList(points(0, 0, 100, 0, 50, 50), points(100, 0, 100, 100, 50, 50),
+				points(100, 100, 0, 100, 50, 50), points(0, 100, 0, 0, 50, 50));
+
+		AnalyticFitness.Evaluation evaluation = engine.evaluation(solution);
+		for (int k = 0; k < 4; k++) {
+			assertEquals(2500, evaluation.area(k), 1E-9);
+		}
+		assertEquals(0, evaluation.black(), 1E-9);
+
+		/*
+		 * Distance y integrated over a triangle with base 100 and height 50.
+		 */
+		double closeness = 125000 - 250000 / 3D;
+		assertEquals(-4 * closeness * 12, engine.fitness(evaluation), 1E-6);
+	}
+
+	/**
+	 * Points covered by three sub-polygons are covered once.
+	 */
+	@Test
+	public void tripleOverlap() {
+		AnalyticFitness engine = new AnalyticFitness(SQUARE, pipes(SQUARE, 3));
+		List<Point> half = points(0, 0, 50, 0, 50, 100, 0, 100);
+
+		AnalyticFitness.Evaluation evaluation = engine.evaluation(Arrays.asList(half, half, half));
+		assertEquals(5000, evaluation.black(), 1E-9);
+
+		List<Point> quarter = points(50, 0, 100, 0, 100, 50, 50, 50);
+		evaluation = engine.evaluation(Arrays.asList(half, quarter, half));
+		assertEquals(2500, evaluation.black(), 1E-9);
+	}
+
+	/**
+	 * Random sub-polygons of the input polygons, the areas inside the global
+	 * polygon and the black area are compared with the constructive area
+	 * geometry. The order of the pipes does not change the black area.
+	 *
+	 * @throws Exception
+	 *             If an input file can not be read.
+	 */
+	@Test
+	public void randomSolutions() throws Exception {
+		Random random = new Random(0);
+		for (File file : new File("dat").listFiles()) {
+			if (InputReader.accepts(file.getName()) == false) {
+				continue;
+			}
+
+			InputReader.Input input = InputReader.read(file.getPath());
+			Polygon polygon = new Polygon(input.getX(), input.getY(), input.size());
+			Area global = new Area(polygon);
+			int size = Math.max(polygon.getBounds().width, polygon.getBounds().height);
+			int count = Math.min(polygon.npoints, 6);
+			AnalyticFitness engine = new AnalyticFitness(polygon, pipes(polygon, count));
+
+			for (int s = 0; s < 50; s++) {
+				List<List<Point>> solution = new ArrayList<List<Point>>();
+				Area union = new Area();
+				for (int k = 0; k < count; k++) {
+					List<Point> points = star(random, size);
+					for (Point point : points) {
+						point.translate(polygon.getBounds().x, polygon.getBounds().y);
+					}
+					solution.add(points);
+					union.add(shape(points));
+				}
+				union.intersect(global);
+
+				AnalyticFitness.Evaluation evaluation = engine.evaluation(solution);
+				for (int k = 0; k < count; k++) {
+					Area expected = shape(solution.get(k));
+					expected.intersect(global);
+					assertEquals(file.getName(), area(expected), evaluation.area(k), 1E-6 * engine.area());
+				}
+				assertEquals(file.getName(), engine.area() - area(union), evaluation.black(), 1E-6 * engine.area());
+
+				List<List<Point>> reversed = new ArrayList<List<Point>>(solution);
+				Collections.reverse(reversed);
+				assertEquals(file.getName(), evaluation.black(), engine.evaluation(reversed).black(),
+						1E-6 * engine.area());
+			}
+		}
+	}
+
+	/**
+	 * Chains of random mutations evaluated incrementally get the same fitness
+	 * and the same areas as the full evaluation. Small moves often produce
+	 * near duplicate and collinear vertices.
+	 *
+	 * @throws Exception
+	 *             If an input file can not be read.
+	 */
+	@Test
+	public void incrementalEvaluation() throws Exception {
+		MutationPolicy[] mutations = { new RandomVertexMutation(), new AdaptiveVertexMutation() };
+		for (File file : new File("dat").listFiles()) {
+			if (InputReader.accepts(file.getName()) == false) {
+				continue;
+			}
+
+			Problem problem = Main.read(file.getPath(), FitnessMode.ANALYTIC, 1);
+			problem = new Problem(problem.getPolygon(), problem.getPipes(), FitnessMode.ANALYTIC, null);
+			AnalyticFitness engine = problem.getAnalyticFitness();
+
+			for (MutationPolicy mutation : mutations) {
+				PolygonListChromosome chromosome = ProblemTest.triangles(problem);
+				chromosome.fitness();
+				for (int i = 0; i < 300; i++) {
+					chromosome = (PolygonListChromosome) mutation.mutate(chromosome);
+					double actual = chromosome.fitness();
+
+					AnalyticFitness.Evaluation expected = engine.evaluation(chromosome.getRepresentation());
+					assertEquals(file.getName(), engine.fitness(expected), actual,
+							1E-9 * Math.abs(engine.fitness(expected)));
+					double[] errors = chromosome.areaErrors();
+					for (int k = 0; k < errors.length; k++) {
+						double target = engine.target(k);
+						assertEquals(file.getName(), expected.area(k), target + errors[k] * target,
+								1E-9 * engine.area());
+					}
+				}
+			}
+		}
+	}
+}
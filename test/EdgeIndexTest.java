@@ -0,0 +1,115 @@
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Point in polygon tests of the edge index against the AWT.
+ *
+ * @author Todor Balabanov
+ */
+public class EdgeIndexTest {
+
+	/**
+	 * Compare all integer points of a polygon bounding box and some margin
+	 * around it.
+	 *
+	 * @param polygon
+	 *            Polygon to check.
+	 */
+	private static void compare(Polygon polygon) {
+		EdgeIndex index = new EdgeIndex(polygon);
+
+		Rectangle bounds = polygon.getBounds();
+		for (int y = bounds.y - 2; y <= bounds.y + bounds.height + 2; y++) {
+			for (int x = bounds.x - 2; x <= bounds.x + bounds.width + 2; x++) {
+				assertEquals("(" + x + ", " + y + ") in " + polygon.npoints + " vertices",
+						polygon.contains(x, y), index.contains(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Random polygon with integer vertices, it can be self-intersecting.
+	 *
+	 * @param random
+	 *            Pseudo-random numbers generator.
+	 * @param size
+	 *            Range of the coordinates.
+	 *
+	 * @return Polygon.
+	 */
+	private static Polygon random(Random random, int size) {
+		Polygon polygon = new Polygon();
+		int count = 3 + random.nextInt(10);
+		for (int i = 0; i < count; i++) {
+			polygon.addPoint(random.nextInt(size), random.nextInt(size));
+		}
+		return polygon;
+	}
+
+	/**
+	 * Point on a sloped edge, it was reported as outside.
+	 */
+	@Test
+	public void pointOnSlopedEdge() {
+		Polygon polygon = new Polygon(new int[] { 499, 681, 600 }, new int[] { 158, 186, 400 }, 3);
+		EdgeIndex index = new EdgeIndex(polygon);
+
+		assertEquals(polygon.contains(616, 176), index.contains(616, 176));
+		assertEquals(polygon.contains(new Point(616, 176)), index.contains(new Point(616, 176)));
+		compare(polygon);
+	}
+
+	/**
+	 * Input polygons from the data folder.
+	 *
+	 * @throws Exception
+	 *             If an input file can not be read.
+	 */
+	@Test
+	public void inputPolygons() throws Exception {
+		for (File file : new File("dat").listFiles()) {
+			if (InputReader.accepts(file.getName()) == false) {
+				continue;
+			}
+
+			InputReader.Input input = InputReader.read(file.getPath());
+			compare(new Polygon(input.getX(), input.getY(), input.size()));
+		}
+	}
+
+	/**
+	 * Small random polygons, so many integer points are on the edges and on
+	 * the vertices.
+	 */
+	@Test
+	public void integerPoints() {
+		Random random = new Random(0);
+		for (int p = 0; p < 2000; p++) {
+			compare(random(random, 40));
+		}
+	}
+
+	/**
+	 * Random points with fractional coordinates.
+	 */
+	@Test
+	public void doublePoints() {
+		Random random = new Random(0);
+		for (int p = 0; p < 500; p++) {
+			Polygon polygon = random(random, 1000);
+			EdgeIndex index = new EdgeIndex(polygon);
+			for (int i = 0; i < 2000; i++) {
+				double x = -10 + 1020 * random.nextDouble();
+				double y = -10 + 1020 * random.nextDouble();
+				assertEquals("(" + x + ", " + y + ")", polygon.contains(x, y), index.contains(x, y));
+			}
+		}
+	}
+}
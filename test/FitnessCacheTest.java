@@ -0,0 +1,105 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Eviction and hit tests of the fitness cache.
+ *
+ * @author Todor Balabanov
+ */
+public class FitnessCacheTest {
+
+	/**
+	 * Key of a single triangle.
+	 *
+	 * @param problem
+	 *            Fingerprint of the problem.
+	 * @param x
+	 *            Coordinate of the first vertex.
+	 *
+	 * @return Cache key.
+	 */
+	private static FitnessCache.Key key(long problem, int x) {
+		List<List<Point>> representation = new ArrayList<List<Point>>();
+		representation.add(Arrays.asList(new Point(x, 0), new Point(x + 10, 0), new Point(x, 10)));
+		return new FitnessCache.Key(problem, representation);
+	}
+
+	/**
+	 * Keys of packed and not packed polygons with the same vertices are equal,
+	 * keys of different problems are not.
+	 */
+	@Test
+	public void keys() {
+		List<List<Point>> packed = new ArrayList<List<Point>>();
+		packed.add(PackedPolygon.of(0, 0, 10, 0, 0, 10));
+
+		assertEquals(key(1, 0), new FitnessCache.Key(1, packed));
+		assertEquals(key(1, 0).hashCode(), new FitnessCache.Key(1, packed).hashCode());
+		assertNotEquals(key(1, 0), key(2, 0));
+		assertNotEquals(key(1, 0), key(1, 1));
+	}
+
+	/**
+	 * The least recently used value is evicted and the size never exceeds the
+	 * capacity.
+	 */
+	@Test
+	public void eviction() {
+		FitnessCache cache = new FitnessCache(1);
+		cache.put(key(1, 0), -1, null);
+		cache.put(key(1, 1), -2, null);
+		assertNull(cache.get(key(1, 0)));
+		assertEquals(-2, cache.get(key(1, 1)).getFitness(), 0);
+
+		cache = new FitnessCache(100);
+		for (int x = 0; x < 1000; x++) {
+			cache.put(key(1, x), -x, null);
+			assertTrue(cache.size() <= cache.getCapacity());
+		}
+		assertEquals(-999, cache.get(key(1, 999)).getFitness(), 0);
+		assertTrue(cache.size() > cache.getCapacity() / 2);
+	}
+
+	/**
+	 * A copy of an evaluated chromosome is found in the cache with its
+	 * analytic evaluation, so its offspring get the same fitness as without
+	 * the cache.
+	 *
+	 * @throws Exception
+	 *             If an input file can not be read.
+	 */
+	@Test
+	public void hits() throws Exception {
+		Problem problem = Main.read("dat/in01.json", FitnessMode.ANALYTIC, 1);
+		Problem uncached = new Problem(problem.getPolygon(), problem.getPipes(), FitnessMode.ANALYTIC, null);
+		FitnessCache cache = problem.getFitnessCache();
+
+		PolygonListChromosome chromosome = ProblemTest.triangles(problem);
+		double fitness = chromosome.fitness();
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		PolygonListChromosome copy = new PolygonListChromosome(chromosome.getRepresentation(), problem);
+		assertEquals(fitness, copy.fitness(), 0);
+		assertEquals(1, cache.getHits());
+		assertNotNull(cache.get(new FitnessCache.Key(problem.getFingerprint(), copy.getRepresentation()))
+				.getEvaluation());
+
+		RandomVertexMutation mutation = new RandomVertexMutation();
+		for (int i = 0; i < 50; i++) {
+			PolygonListChromosome offspring = (PolygonListChromosome) mutation.mutate(copy);
+			double expected = new PolygonListChromosome(offspring.getRepresentation(), uncached).fitness();
+			assertEquals(expected, offspring.fitness(), 1E-9 * Math.abs(expected));
+		}
+	}
+}
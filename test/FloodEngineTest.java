@@ -0,0 +1,235 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Sequential and concurrent flooding tests.
+ *
+ * @author Todor Balabanov
+ */
+public class FloodEngineTest {
+
+	/**
+	 * Flooding variants.
+	 */
+	private enum Variant {
+		SEQUENTIAL, CONCURRENT, DETERMINISTIC
+	}
+
+	/**
+	 * Flood the canvas of a problem.
+	 *
+	 * @param problem
+	 *            Problem context.
+	 * @param variant
+	 *            Flooding variant.
+	 * @param pool
+	 *            Threads for the concurrent flooding.
+	 * @param batch
+	 *            Pixels proposed by a pipe in each deterministic round.
+	 *
+	 * @return Pipe index of each pixel, negative for free and outside pixels.
+	 */
+	private static int[] flood(Problem problem, Variant variant, ForkJoinPool pool, int batch) {
+		List<Pipe> pipes = problem.getPipes();
+		for (Pipe pipe : pipes) {
+			pipe.occupied = 0;
+		}
+
+		BufferedImage image = problem.getViewport().canvas(problem.getPolygon());
+		FloodEngine engine = new FloodEngine(image, pipes, problem.getViewport());
+		switch (variant) {
+		case SEQUENTIAL:
+			engine.flood();
+			break;
+		case CONCURRENT:
+			engine.flood(pool, false, batch);
+			break;
+		case DETERMINISTIC:
+			engine.flood(pool, true, batch);
+			break;
+		}
+		engine.paint(image);
+
+		int[] labels = new int[image.getWidth() * image.getHeight()];
+		for (int p = 0; p < labels.length; p++) {
+			int rgb = image.getRGB(p % image.getWidth(), p / image.getWidth());
+			labels[p] = -1;
+			for (int k = 0; k < pipes.size(); k++) {
+				if (pipes.get(k).color.getRGB() == rgb) {
+					labels[p] = k;
+				}
+			}
+		}
+		return labels;
+	}
+
+	/**
+	 * Check that the pixels of each pipe are connected and that the pipes do
+	 * not take more than their shares.
+	 *
+	 * @param problem
+	 *            Problem context.
+	 * @param labels
+	 *            Pipe index of each pixel.
+	 * @param name
+	 *            Name of the checked flooding.
+	 */
+	private static void check(Problem problem, int[] labels, String name) {
+		int width = problem.getViewport().canvas(problem.getPolygon()).getWidth();
+		List<Pipe> pipes = problem.getPipes();
+
+		for (int k = 0; k < pipes.size(); k++) {
+			int count = 0;
+			int first = -1;
+			for (int p = 0; p < labels.length; p++) {
+				if (labels[p] == k) {
+					count++;
+					first = (first == -1) ? p : first;
+				}
+			}
+			assertTrue(name, pipes.get(k).occupied <= pipes.get(k).area);
+			assertTrue(name, count >= pipes.get(k).occupied);
+			if (first == -1) {
+				continue;
+			}
+
+			/*
+			 * Pipe sides are drawn as lines, so diagonal neighbors are
+			 * connected as well.
+			 */
+			boolean[] visited = new boolean[labels.length];
+			Deque<Integer> queue = new ArrayDeque<Integer>();
+			queue.add(first);
+			visited[first] = true;
+			int reached = 0;
+			while (queue.isEmpty() == false) {
+				int p = queue.poll();
+				reached++;
+				int x = p % width, y = p / width;
+				for (int dy = -1; dy <= 1; dy++) {
+					for (int dx = -1; dx <= 1; dx++) {
+						int nx = x + dx, ny = y + dy, q = ny * width + nx;
+						if (nx >= 0 && ny >= 0 && nx < width && q < labels.length && labels[q] == k
+								&& visited[q] == false) {
+							visited[q] = true;
+							queue.add(q);
+						}
+					}
+				}
+			}
+			assertEquals(name + " pipe " + k, count, reached);
+		}
+	}
+
+	/**
+	 * A single pipe grows in the same order with all flooding variants.
+	 *
+	 * @throws Exception
+	 *             If an input file can not be read.
+	 */
+	@Test
+	public void singlePipe() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		for (File file : new File("dat").listFiles()) {
+			if (InputReader.accepts(file.getName()) == false) {
+				continue;
+			}
+
+			Problem problem = Main.read(file.getPath(), FitnessMode.RASTER, 1);
+			problem = new Problem(problem.getPolygon(), problem.getPipes().subList(0, 1), FitnessMode.RASTER, null,
+					problem.getViewport());
+
+			int[] sequential = flood(problem, Variant.SEQUENTIAL, pool, 1);
+			check(problem, sequential, file.getName() + " sequential");
+			for (Variant variant : new Variant[] { Variant.CONCURRENT, Variant.DETERMINISTIC }) {
+				int[] labels = flood(problem, variant, pool, 1);
+				for (int p = 0; p < labels.length; p++) {
+					assertEquals(file.getName() + " " + variant, sequential[p], labels[p]);
+				}
+			}
+		}
+		pool.shutdown();
+	}
+
+	/**
+	 * Pipes flooded at the same time stay connected and within their shares,
+	 * deterministic flooding gives the same result on each run.
+	 *
+	 * @throws Exception
+	 *             If an input file can not be read.
+	 */
+	@Test
+	public void concurrentFlooding() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		for (File file : new File("dat").listFiles()) {
+			if (InputReader.accepts(file.getName()) == false) {
+				continue;
+			}
+
+			Problem problem = Main.read(file.getPath(), FitnessMode.RASTER, 1);
+			check(problem, flood(problem, Variant.SEQUENTIAL, pool, 0), file.getName() + " sequential");
+			for (int r = 0; r < 3; r++) {
+				check(problem, flood(problem, Variant.CONCURRENT, pool, 0), file.getName() + " concurrent");
+			}
+
+			int[] deterministic = flood(problem, Variant.DETERMINISTIC, pool, 64);
+			check(problem, deterministic, file.getName() + " deterministic");
+			int[] again = flood(problem, Variant.DETERMINISTIC, pool, 64);
+			for (int p = 0; p < again.length; p++) {
+				assertEquals(file.getName(), deterministic[p], again[p]);
+			}
+		}
+		pool.shutdown();
+	}
+
+	/**
+	 * Each tile of the squareization takes a single label, the pixels outside
+	 * of the polygon are not changed.
+	 *
+	 * @throws Exception
+	 *             If an input file can not be read.
+	 */
+	@Test
+	public void squareization() throws Exception {
+		Problem problem = Main.read("dat/in04.json", FitnessMode.RASTER, 1);
+
+		BufferedImage image = problem.getViewport().canvas(problem.getPolygon());
+		FloodEngine engine = new FloodEngine(image, problem.getPipes(), problem.getViewport());
+		engine.flood();
+		engine.paint(image);
+		int[] before = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+
+		int side = 10;
+		for (int r = 0; r < 2; r++) {
+			Main.squareization(image, problem.getPipes(), side);
+		}
+		int[] after = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+
+		int white = Color.WHITE.getRGB();
+		for (int top = 0; top < image.getHeight(); top += side) {
+			for (int left = 0; left < image.getWidth(); left += side) {
+				int color = white;
+				for (int y = top; y < Math.min(image.getHeight(), top + side); y++) {
+					for (int x = left; x < Math.min(image.getWidth(), left + side); x++) {
+						int p = y * image.getWidth() + x;
+						assertEquals(before[p] == white, after[p] == white);
+						if (after[p] != white) {
+							assertTrue(color == white || color == after[p]);
+							color = after[p];
+						}
+					}
+				}
+			}
+		}
+	}
+}
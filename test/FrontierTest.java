@@ -0,0 +1,103 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Order tests of the flood frontier.
+ *
+ * @author Todor Balabanov
+ */
+public class FrontierTest {
+
+	/**
+	 * Offer random pixels and check that they are taken ordered by the
+	 * distance to the side and then by the distance to the location.
+	 *
+	 * @param width
+	 *            Width of the canvas.
+	 * @param height
+	 *            Height of the canvas.
+	 * @param vertex1
+	 *            First end of the pipe side.
+	 * @param vertex2
+	 *            Second end of the pipe side.
+	 * @param location
+	 *            Location of the pipe.
+	 */
+	private static void compare(int width, int height, Point vertex1, Point vertex2, Point location) {
+		Frontier frontier = new Frontier(width, height, vertex1, vertex2, location);
+		Random random = new Random(0);
+
+		int count = 0;
+		for (int i = 0; i < 5000; i++) {
+			int pixel = random.nextInt(width * height);
+			if (frontier.contains(pixel) == false) {
+				count++;
+			}
+			frontier.offer(pixel);
+		}
+		assertEquals(count, frontier.size());
+
+		double a = vertex2.y - vertex1.y;
+		double b = vertex1.x - vertex2.x;
+		double c = (double) vertex2.x * vertex1.y - (double) vertex1.x * vertex2.y;
+		double previous = -1;
+		double closest = -1;
+		for (int pixel = frontier.poll(); pixel != -1; pixel = frontier.poll()) {
+			count--;
+			double x = pixel % width;
+			double y = pixel / width;
+			double cross = Math.abs(a * x + b * y + c);
+			double distance = (x - location.x) * (x - location.x) + (y - location.y) * (y - location.y);
+
+			assertTrue(cross >= previous);
+			if (cross == previous) {
+				assertTrue(distance >= closest);
+			}
+			previous = cross;
+			closest = distance;
+		}
+		assertEquals(0, count);
+	}
+
+	/**
+	 * Pixels are taken closest to the side first.
+	 */
+	@Test
+	public void order() {
+		compare(100, 100, new Point(0, 0), new Point(99, 30), new Point(50, 15));
+	}
+
+	/**
+	 * Distances of a long side and a far location do not fit in the halves of
+	 * the key without clamping.
+	 */
+	@Test
+	public void longSide() {
+		compare(40, 40000, new Point(0, 0), new Point(100000, 0), new Point(60000, 0));
+	}
+
+	/**
+	 * Removed pixels are not taken.
+	 */
+	@Test
+	public void removal() {
+		Frontier frontier = new Frontier(10, 10, new Point(0, 0), new Point(9, 0), new Point(5, 0));
+		for (int pixel = 0; pixel < 100; pixel++) {
+			frontier.offer(pixel);
+		}
+		for (int pixel = 0; pixel < 100; pixel += 2) {
+			frontier.remove(pixel);
+		}
+		assertEquals(50, frontier.size());
+
+		for (int pixel = frontier.poll(); pixel != -1; pixel = frontier.poll()) {
+			assertEquals(1, pixel % 2);
+		}
+		assertEquals(0, frontier.size());
+	}
+}
@@ -0,0 +1,168 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Parsing and validation tests of the JSON, CSV and binary inputs.
+ *
+ * @author Todor Balabanov
+ */
+public class InputReaderTest {
+
+	/**
+	 * Square with four shares in JSON.
+	 */
+	private static final String JSON = "{\"vertices\": [{\"x\": \"10\", \"y\": 10}, {\"x\": 10, \"y\": 90.4},"
+			+ " {\"x\": 90, \"y\": 90}, {\"y\": 10, \"x\": 89.6}], \"shares\": [\"40.0\", 30, 20, 10],"
+			+ " \"time\": 5}";
+
+	/**
+	 * Check the square input.
+	 *
+	 * @param input
+	 *            Parsed input.
+	 */
+	private static void square(InputReader.Input input) {
+		assertEquals(4, input.size());
+		assertArrayEquals(new int[] { 10, 10, 90, 90 }, input.getX());
+		assertArrayEquals(new int[] { 10, 90, 90, 10 }, input.getY());
+		assertArrayEquals(new double[] { 40, 30, 20, 10 }, input.getShares(), 0);
+	}
+
+	/**
+	 * Input which should be rejected.
+	 *
+	 * @param csv
+	 *            CSV lines.
+	 */
+	private static void invalid(String csv) {
+		try {
+			InputReader.csv(new StringReader(csv));
+			fail(csv);
+		} catch (IOException exception) {
+		}
+	}
+
+	/**
+	 * Quoted and plain numbers, other top level values are collected.
+	 *
+	 * @throws Exception
+	 *             If the input can not be parsed.
+	 */
+	@Test
+	public void json() throws Exception {
+		square(InputReader.json(new StringReader(JSON)));
+
+		Map<String, Object> extra = new HashMap<String, Object>();
+		square(InputReader.json(new StringReader(JSON), extra));
+		assertEquals(5L, extra.get("time"));
+	}
+
+	/**
+	 * JSON vertex without a coordinate is rejected.
+	 *
+	 * @throws Exception
+	 *             If the JSON syntax is broken.
+	 */
+	@Test(expected = IOException.class)
+	public void jsonMissingCoordinate() throws Exception {
+		InputReader.json(new StringReader(JSON.replace("\"x\": 90, ", "")));
+	}
+
+	/**
+	 * Comments, empty lines, header and both separators are accepted.
+	 *
+	 * @throws Exception
+	 *             If the input can not be parsed.
+	 */
+	@Test
+	public void csv() throws Exception {
+		square(InputReader.csv(new StringReader("# square\nx,y,share\n\n10,10,40\n10;90.4;30\n 90 , 90 , 20 \n89.6,10,10\n")));
+	}
+
+	/**
+	 * Broken CSV lines and invalid shares are rejected.
+	 */
+	@Test
+	public void csvErrors() {
+		invalid("10,10\n10,90,50\n90,90,50\n");
+		invalid("10,10,40\n10,x,30\n90,90,30\n");
+		invalid("10,10,50\n10,90,50\n");
+		invalid("10,10,40\n10,90,30\n90,90,20\n");
+		invalid("10,10,110\n10,90,-10\n90,90,0\n");
+		invalid("10,10,NaN\n10,90,50\n90,90,50\n");
+		invalid("1e10,10,40\n10,90,30\n90,90,30\n");
+	}
+
+	/**
+	 * Binary output is read back.
+	 *
+	 * @throws Exception
+	 *             If the input can not be parsed.
+	 */
+	@Test
+	public void binary() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		InputReader.binary(InputReader.json(new StringReader(JSON)), bytes);
+		square(InputReader.binary(new ByteArrayInputStream(bytes.toByteArray())));
+	}
+
+	/**
+	 * Binary input with a wrong header or shorter than its count is rejected.
+	 *
+	 * @throws Exception
+	 *             If the test data can not be written.
+	 */
+	@Test
+	public void binaryErrors() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		InputReader.binary(InputReader.json(new StringReader(JSON)), bytes);
+		byte[] valid = bytes.toByteArray();
+
+		byte[] magic = valid.clone();
+		magic[0]++;
+		byte[] version = valid.clone();
+		version[7]++;
+		byte[] truncated = new byte[valid.length - 1];
+		System.arraycopy(valid, 0, truncated, 0, truncated.length);
+
+		bytes = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(bytes);
+		data.writeInt(InputReader.MAGIC);
+		data.writeInt(InputReader.VERSION);
+		data.writeInt(Integer.MAX_VALUE);
+		data.writeInt(1);
+		byte[] huge = bytes.toByteArray();
+
+		for (byte[] broken : new byte[][] { magic, version, truncated, huge }) {
+			try {
+				InputReader.binary(new ByteArrayInputStream(broken));
+				fail();
+			} catch (IOException exception) {
+			}
+		}
+	}
+
+	/**
+	 * Formats are selected by the file extension.
+	 */
+	@Test
+	public void accepts() {
+		assertTrue(InputReader.accepts("in01.json"));
+		assertTrue(InputReader.accepts("in01.csv"));
+		assertTrue(InputReader.accepts("in01.bin"));
+		assertFalse(InputReader.accepts("in01.txt"));
+	}
+}
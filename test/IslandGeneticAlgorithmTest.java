@@ -0,0 +1,124 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.math3.genetics.Chromosome;
+import org.apache.commons.math3.genetics.ElitisticListPopulation;
+import org.apache.commons.math3.genetics.GeneticAlgorithm;
+import org.junit.Test;
+
+/**
+ * Island model tests.
+ *
+ * @author Todor Balabanov
+ */
+public class IslandGeneticAlgorithmTest {
+
+	/**
+	 * Number of islands.
+	 */
+	private static final int ISLANDS = 4;
+
+	/**
+	 * Number of chromosomes on each island.
+	 */
+	private static final int SIZE = 10;
+
+	/**
+	 * Initial populations of the islands.
+	 *
+	 * @param problem
+	 *            Problem context.
+	 *
+	 * @return Islands.
+	 */
+	private static List<ElitisticListPopulation> islands(Problem problem) {
+		RandomVertexMutation mutation = new RandomVertexMutation();
+		List<ElitisticListPopulation> islands = new ArrayList<ElitisticListPopulation>();
+		for (int i = 0; i < ISLANDS; i++) {
+			List<Chromosome> list = new ArrayList<Chromosome>();
+			for (int j = 0; j < SIZE; j++) {
+				Chromosome chromosome = ProblemTest.triangles(problem);
+				for (int m = 0; m < 10; m++) {
+					chromosome = mutation.mutate(chromosome);
+				}
+				list.add(chromosome);
+			}
+			islands.add(new ElitisticListPopulation(list, SIZE, 0.2));
+		}
+		return islands;
+	}
+
+	/**
+	 * Evolve the islands for a number of epochs. The mutation is switched
+	 * off, so all random draws come from the generators of the islands.
+	 *
+	 * @param initial
+	 *            Initial populations of the islands.
+	 * @param seed
+	 *            Master seed.
+	 * @param pool
+	 *            Threads for the islands.
+	 *
+	 * @return Solutions of the evolved islands.
+	 */
+	private static List<List<List<Point>>> evolve(List<ElitisticListPopulation> initial, long seed,
+			ForkJoinPool pool) {
+		IslandGeneticAlgorithm algorithm = new IslandGeneticAlgorithm(0.5, 0.9, new RandomVertexMutation(), 0, 2, 3,
+				2, IslandGeneticAlgorithm.Migration.RANDOM, seed, pool);
+
+		/*
+		 * Only the merged population stops the evolution, so the islands do
+		 * not depend on each other.
+		 */
+		AtomicInteger epochs = new AtomicInteger(0);
+		List<ElitisticListPopulation> islands = algorithm.evolve(initial,
+				population -> population.getPopulationLimit() == ISLANDS * SIZE && epochs.incrementAndGet() > 5);
+		assertEquals(5 * 3 * ISLANDS, algorithm.getGenerationsEvolved());
+
+		List<List<List<Point>>> result = new ArrayList<List<List<Point>>>();
+		for (ElitisticListPopulation island : islands) {
+			assertEquals(SIZE, island.getPopulationSize());
+			for (Chromosome chromosome : island) {
+				result.add(((PolygonListChromosome) chromosome).getRepresentation());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The same master seed gives the same islands, a different seed gives
+	 * different islands.
+	 *
+	 * @throws Exception
+	 *             If an input file can not be read.
+	 */
+	@Test
+	public void repeatable() throws Exception {
+		Problem problem = Main.read("dat/in04.json", FitnessMode.ANALYTIC, 1);
+		List<ElitisticListPopulation> initial = islands(problem);
+		ForkJoinPool pool = new ForkJoinPool(ISLANDS);
+
+		List<List<List<Point>>> expected = evolve(initial, 7, pool);
+		assertEquals(expected, evolve(initial, 7, pool));
+		assertTrue(expected.equals(evolve(initial, 8, pool)) == false);
+
+		pool.shutdown();
+	}
+
+	/**
+	 * The islands do not replace the commons-math generator, so it can still
+	 * be seeded.
+	 */
+	@Test
+	public void sharedGenerator() {
+		new IslandGeneticAlgorithm(0.5, 0.9, new RandomVertexMutation(), 0.1, 2, 3, 1,
+				IslandGeneticAlgorithm.Migration.RING, 0, ForkJoinPool.commonPool());
+		GeneticAlgorithm.getRandomGenerator().setSeed(0);
+	}
+}
@@ -0,0 +1,167 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.geom.Area;
+import java.awt.geom.PathIterator;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Deterministic partitioning tests. The sub-polygons are compared with the
+ * constructive area geometry of the AWT.
+ *
+ * @author Todor Balabanov
+ */
+public class PartitionSolverTest {
+
+	/**
+	 * Pipes on all sides of a polygon.
+	 *
+	 * @param polygon
+	 *            Global polygon.
+	 * @param shares
+	 *            Share of each side.
+	 *
+	 * @return Pipes.
+	 */
+	private static List<Pipe> pipes(Polygon polygon, double... shares) {
+		List<Pipe> pipes = new ArrayList<Pipe>();
+		for (int k = 0; k < polygon.npoints; k++) {
+			int next = (k + 1) % polygon.npoints;
+			pipes.add(new Pipe(Color.RED, new Point(polygon.xpoints[k], polygon.ypoints[k]),
+					new Point(polygon.xpoints[next], polygon.ypoints[next]), 0, shares[k]));
+		}
+		return pipes;
+	}
+
+	/**
+	 * Area of a shape with straight edges.
+	 *
+	 * @param shape
+	 *            Shape.
+	 *
+	 * @return Area in square pixels.
+	 */
+	private static double area(Area shape) {
+		double sum = 0;
+		double[] coordinates = new double[6];
+		double sx = 0, sy = 0, px = 0, py = 0;
+		for (PathIterator iterator = shape.getPathIterator(null); iterator.isDone() == false; iterator.next()) {
+			int type = iterator.currentSegment(coordinates);
+			if (type == PathIterator.SEG_MOVETO) {
+				sx = px = coordinates[0];
+				sy = py = coordinates[1];
+			} else if (type == PathIterator.SEG_LINETO) {
+				sum += px * coordinates[1] - coordinates[0] * py;
+				px = coordinates[0];
+				py = coordinates[1];
+			} else {
+				sum += px * sy - sx * py;
+				px = sx;
+				py = sy;
+			}
+		}
+		return Math.abs(sum / 2D);
+	}
+
+	/**
+	 * Check that the sub-polygons start with their pipe sides, have the pipe
+	 * shares and cover the global polygon without overlaps. The tolerance is
+	 * for the rounding of the vertices.
+	 *
+	 * @param polygon
+	 *            Global polygon.
+	 * @param pipes
+	 *            Pipes description.
+	 * @param solution
+	 *            Sub-polygon for each pipe.
+	 * @param tolerance
+	 *            Area tolerance as part of the global polygon area.
+	 */
+	private static void check(Polygon polygon, List<Pipe> pipes, List<List<Point>> solution, double tolerance) {
+		Area global = new Area(polygon);
+		double total = area(global);
+
+		Area union = new Area();
+		double sum = 0;
+		for (int k = 0; k < pipes.size(); k++) {
+			List<Point> points = solution.get(k);
+			assertEquals(pipes.get(k).vertex1, points.get(0));
+			assertEquals(pipes.get(k).vertex2, points.get(1));
+
+			Polygon shape = new Polygon();
+			for (Point point : points) {
+				shape.addPoint(point.x, point.y);
+			}
+			Area cell = new Area(shape);
+			cell.intersect(global);
+			double value = area(cell);
+			assertEquals("Pipe " + k, pipes.get(k).share, 100D * value / total, 100D * tolerance);
+
+			union.add(cell);
+			sum += value;
+		}
+
+		assertEquals(total, area(union), tolerance * total);
+		assertEquals(area(union), sum, tolerance * total);
+	}
+
+	/**
+	 * Convex polygons are partitioned exactly up to the rounding.
+	 */
+	@Test
+	public void convex() {
+		Polygon rectangle = new Polygon(new int[] { 0, 900, 900, 0 }, new int[] { 0, 0, 600, 600 }, 4);
+		List<Pipe> pipes = pipes(rectangle, 20, 30, 20, 30);
+		assertTrue(PartitionSolver.accepts(rectangle, pipes));
+		check(rectangle, pipes, new PartitionSolver().solve(rectangle, pipes), 1E-3);
+
+		Polygon hexagon = new Polygon(new int[] { 300, 700, 1000, 700, 300, 0 },
+				new int[] { 0, 0, 500, 1000, 1000, 500 }, 6);
+		pipes = pipes(hexagon, 5, 25, 10, 30, 0, 30);
+		assertTrue(PartitionSolver.accepts(hexagon, pipes));
+		check(hexagon, pipes, new PartitionSolver().solve(hexagon, pipes), 1E-3);
+	}
+
+	/**
+	 * Cells of the reflex sides in a U shape are spread over both legs and
+	 * can not be written as non-overlapping sub-polygons, so the partitioning
+	 * is rejected instead of returning them.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void nonConvex() {
+		Polygon shape = new Polygon(new int[] { 0, 900, 900, 600, 600, 300, 300, 0 },
+				new int[] { 0, 0, 900, 900, 300, 300, 900, 900 }, 8);
+		List<Pipe> pipes = pipes(shape, 10, 15, 10, 15, 15, 10, 15, 10);
+		assertTrue(PartitionSolver.accepts(shape, pipes));
+		new PartitionSolver().solve(shape, pipes);
+	}
+
+	/**
+	 * Accepted input polygons are partitioned without overlaps.
+	 *
+	 * @throws Exception
+	 *             If an input file can not be read.
+	 */
+	@Test
+	public void inputs() throws Exception {
+		for (File file : new File("dat").listFiles()) {
+			if (InputReader.accepts(file.getName()) == false) {
+				continue;
+			}
+
+			Problem problem = Main.read(file.getPath(), FitnessMode.ANALYTIC, 1);
+			if (PartitionSolver.accepts(problem) == false) {
+				continue;
+			}
+
+			check(problem.getPolygon(), problem.getPipes(), new PartitionSolver().solve(problem), 1E-2);
+		}
+	}
+}
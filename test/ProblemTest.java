@@ -0,0 +1,112 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Polygon;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Problem context tests.
+ *
+ * @author Todor Balabanov
+ */
+public class ProblemTest {
+
+	/**
+	 * Solution with a triangle from each pipe side to the middle of the
+	 * polygon bounds.
+	 *
+	 * @param problem
+	 *            Problem context.
+	 *
+	 * @return Chromosome.
+	 */
+	static PolygonListChromosome triangles(Problem problem) {
+		Point middle = new Point((int) problem.getPolygon().getBounds().getCenterX(),
+				(int) problem.getPolygon().getBounds().getCenterY());
+
+		List<List<Point>> representation = new ArrayList<List<Point>>();
+		for (Pipe pipe : problem.getPipes()) {
+			List<Point> points = new ArrayList<Point>();
+			points.add(pipe.vertex1);
+			points.add(pipe.vertex2);
+			points.add(middle);
+			representation.add(points);
+		}
+
+		return new PolygonListChromosome(representation, problem);
+	}
+
+	/**
+	 * Chromosomes of different problems evaluated at the same time get the
+	 * same fitness as evaluated one by one.
+	 *
+	 * @throws Exception
+	 *             If an input file can not be read.
+	 */
+	@Test
+	public void concurrentProblems() throws Exception {
+		Problem first = Main.read("dat/in01.json", FitnessMode.ANALYTIC, 1);
+		Problem second = Main.read("dat/in04.json", FitnessMode.RASTER, 1);
+		first = new Problem(first.getPolygon(), first.getPipes(), FitnessMode.ANALYTIC, null);
+		second = new Problem(second.getPolygon(), second.getPipes(), FitnessMode.RASTER, null);
+		assertNotEquals(first.getFingerprint(), second.getFingerprint());
+
+		RandomVertexMutation mutation = new RandomVertexMutation();
+		List<PolygonListChromosome> chromosomes = new ArrayList<PolygonListChromosome>();
+		for (Problem problem : new Problem[] { first, second }) {
+			PolygonListChromosome chromosome = triangles(problem);
+			for (int i = 0; i < 50; i++) {
+				chromosome = (PolygonListChromosome) mutation.mutate(chromosome);
+				chromosomes.add(new PolygonListChromosome(chromosome.getRepresentation(), problem));
+			}
+		}
+
+		double[] expected = new double[chromosomes.size()];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = chromosomes.get(i).fitness();
+		}
+
+		double[] actual = new double[chromosomes.size()];
+		ForkJoinPool pool = new ForkJoinPool(4);
+		for (int i = 0; i < actual.length; i++) {
+			final int index = i;
+			PolygonListChromosome copy = new PolygonListChromosome(chromosomes.get(i).getRepresentation(),
+					chromosomes.get(i).getProblem());
+			pool.execute(() -> actual[index] = copy.fitness());
+		}
+		pool.shutdown();
+		pool.awaitTermination(1, TimeUnit.MINUTES);
+
+		for (int i = 0; i < actual.length; i++) {
+			assertEquals(expected[i], actual[i], 1E-9 * Math.abs(expected[i]));
+		}
+		assertEquals(2 * expected.length, first.getEvaluations() + second.getEvaluations());
+	}
+
+	/**
+	 * Pipes of a downscaled problem keep their own sides, also when they are
+	 * not in the order of the polygon sides.
+	 */
+	@Test
+	public void downscale() {
+		Polygon polygon = new Polygon(new int[] { 0, 1000, 1000, 0 }, new int[] { 0, 0, 1000, 1000 }, 4);
+		List<Pipe> pipes = new ArrayList<Pipe>();
+		pipes.add(new Pipe(Color.RED, new Point(1000, 1000), new Point(0, 1000), 0, 40));
+		pipes.add(new Pipe(Color.GREEN, new Point(1000, 0), new Point(1000, 1000), 0, 60));
+
+		Problem coarse = new Problem(polygon, pipes, FitnessMode.ANALYTIC, null).downscale(10);
+		assertEquals(new Point(100, 100), coarse.getPipes().get(0).vertex1);
+		assertEquals(new Point(0, 100), coarse.getPipes().get(0).vertex2);
+		assertEquals(new Point(100, 0), coarse.getPipes().get(1).vertex1);
+		assertEquals(new Point(100, 100), coarse.getPipes().get(1).vertex2);
+		assertEquals(40, coarse.getPipes().get(0).share, 0);
+		assertEquals(100 * 100, coarse.getAnalyticFitness().area(), 1E-9);
+	}
+}
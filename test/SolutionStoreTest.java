@@ -0,0 +1,254 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Polygon;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Persistence, eviction, corruption and near hits tests of the solution
+ * store.
+ *
+ * @author Todor Balabanov
+ */
+public class SolutionStoreTest {
+
+	/**
+	 * Size of a record of a square with four triangles.
+	 */
+	private static final int RECORD = 236;
+
+	/**
+	 * Folder of the store.
+	 */
+	private File folder;
+
+	/**
+	 * Create an empty folder.
+	 *
+	 * @throws IOException
+	 *             If the folder can not be created.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		folder = Files.createTempDirectory("store").toFile();
+	}
+
+	/**
+	 * Remove the folder.
+	 */
+	@After
+	public void tearDown() {
+		for (File file : folder.listFiles()) {
+			file.delete();
+		}
+		folder.delete();
+	}
+
+	/**
+	 * Square with a pipe on each side.
+	 *
+	 * @param side
+	 *            Side of the square.
+	 * @param shares
+	 *            Share of each pipe.
+	 *
+	 * @return Problem context.
+	 */
+	private static Problem problem(int side, double... shares) {
+		Polygon square = new Polygon(new int[] { 0, side, side, 0 }, new int[] { 0, 0, side, side }, 4);
+		List<Pipe> pipes = new ArrayList<Pipe>();
+		for (int k = 0; k < 4; k++) {
+			pipes.add(new Pipe(Color.RED, new Point(square.xpoints[k], square.ypoints[k]),
+					new Point(square.xpoints[(k + 1) % 4], square.ypoints[(k + 1) % 4]), 0, shares[k]));
+		}
+		return new Problem(square, pipes, FitnessMode.ANALYTIC, null);
+	}
+
+	/**
+	 * Store the triangles solution of a problem.
+	 *
+	 * @param store
+	 *            Solution store.
+	 * @param problem
+	 *            Problem context.
+	 * @param error
+	 *            Area error of each pipe.
+	 *
+	 * @throws IOException
+	 *             If the solution can not be stored.
+	 */
+	private static void put(SolutionStore store, Problem problem, double error) throws IOException {
+		store.put(problem, ProblemTest.triangles(problem).getRepresentation(), -error,
+				new double[] { error, -error, error, -error });
+	}
+
+	/**
+	 * Wait for a new time of the last use.
+	 *
+	 * @throws InterruptedException
+	 *             If the sleep is interrupted.
+	 */
+	private static void tick() throws InterruptedException {
+		Thread.sleep(5);
+	}
+
+	/**
+	 * Solutions survive reopening, worse solutions do not replace better
+	 * ones.
+	 *
+	 * @throws Exception
+	 *             If the store can not be used.
+	 */
+	@Test
+	public void persistence() throws Exception {
+		Problem problem = problem(100, 25, 25, 25, 25);
+		try (SolutionStore store = new SolutionStore(folder, 1 << 20)) {
+			assertNull(store.get(problem));
+			put(store, problem, 0.1);
+			put(store, problem, 0.2);
+			assertEquals(1, store.size());
+		}
+
+		try (SolutionStore store = new SolutionStore(folder, 1 << 20)) {
+			SolutionStore.Entry entry = store.get(problem);
+			assertNotNull(entry);
+			assertEquals(ProblemTest.triangles(problem).getRepresentation(), entry.getSolution());
+			assertEquals(0.1, entry.getError(), 0);
+			assertEquals(-0.1, entry.getFitness(), 0);
+			assertArrayEquals(new double[] { 0.1, -0.1, 0.1, -0.1 }, entry.getErrors(), 0);
+
+			put(store, problem, 0.05);
+			assertEquals(0.05, store.get(problem).getError(), 0);
+			assertNull(store.get(problem(100, 10, 40, 25, 25)));
+			assertNull(store.get(problem(200, 25, 25, 25, 25)));
+		}
+	}
+
+	/**
+	 * The least recently used solutions are evicted when the data grows over
+	 * the limit.
+	 *
+	 * @throws Exception
+	 *             If the store can not be used.
+	 */
+	@Test
+	public void sizeEviction() throws Exception {
+		Problem[] problems = new Problem[5];
+		for (int i = 0; i < problems.length; i++) {
+			problems[i] = problem(100, 25 + i, 25 - i, 25, 25);
+		}
+
+		try (SolutionStore store = new SolutionStore(folder, 4 * RECORD + 10)) {
+			for (int i = 0; i < 4; i++) {
+				put(store, problems[i], 0.1);
+				tick();
+			}
+			assertNotNull(store.get(problems[0]));
+			tick();
+			put(store, problems[4], 0.1);
+
+			assertNotNull(store.get(problems[0]));
+			assertNull(store.get(problems[1]));
+			assertNull(store.get(problems[2]));
+			assertNotNull(store.get(problems[3]));
+			assertNotNull(store.get(problems[4]));
+			assertEquals(3, store.size());
+			assertTrue(new File(folder, "data").length() <= 4 * RECORD + 10);
+		}
+	}
+
+	/**
+	 * The index is never filled over its load limit.
+	 *
+	 * @throws Exception
+	 *             If the store can not be used.
+	 */
+	@Test
+	public void capacityEviction() throws Exception {
+		try (SolutionStore store = new SolutionStore(folder, 1 << 20, 4)) {
+			for (int i = 0; i < 20; i++) {
+				Problem problem = problem(100 + i, 25, 25, 25, 25);
+				put(store, problem, 0.1);
+				assertNotNull(store.get(problem));
+				assertTrue(store.size() <= 3);
+				tick();
+			}
+		}
+	}
+
+	/**
+	 * Damaged records are missing, damaged index is rejected.
+	 *
+	 * @throws Exception
+	 *             If the store can not be used.
+	 */
+	@Test
+	public void corruption() throws Exception {
+		Problem first = problem(100, 25, 25, 25, 25);
+		Problem second = problem(100, 40, 10, 25, 25);
+		try (SolutionStore store = new SolutionStore(folder, 1 << 20)) {
+			put(store, first, 0.1);
+			put(store, second, 0.1);
+		}
+
+		try (RandomAccessFile data = new RandomAccessFile(new File(folder, "data"), "rw")) {
+			data.seek(RECORD - 1);
+			int value = data.read();
+			data.seek(RECORD - 1);
+			data.write(value ^ 1);
+		}
+		try (SolutionStore store = new SolutionStore(folder, 1 << 20)) {
+			assertNull(store.get(first));
+			assertNotNull(store.get(second));
+			assertEquals(1, store.near(first, 10).size());
+		}
+
+		try (RandomAccessFile index = new RandomAccessFile(new File(folder, "index"), "rw")) {
+			index.writeInt(0);
+		}
+		try {
+			new SolutionStore(folder, 1 << 20).close();
+			fail();
+		} catch (IOException exception) {
+		}
+	}
+
+	/**
+	 * Solutions of the same polygon with other shares are ordered by the
+	 * difference of the shares.
+	 *
+	 * @throws Exception
+	 *             If the store can not be used.
+	 */
+	@Test
+	public void nearHits() throws Exception {
+		try (SolutionStore store = new SolutionStore(folder, 1 << 20)) {
+			put(store, problem(100, 40, 10, 25, 25), 0.1);
+			put(store, problem(100, 30, 20, 25, 25), 0.2);
+			put(store, problem(100, 20, 30, 25, 25), 0.1);
+			put(store, problem(200, 25, 25, 25, 25), 0.1);
+
+			Problem problem = problem(100, 27, 23, 25, 25);
+			List<List<List<Point>>> near = store.near(problem, 10);
+			assertEquals(3, near.size());
+			assertEquals(store.get(problem(100, 30, 20, 25, 25)).getSolution(), near.get(0));
+			assertEquals(2, store.near(problem, 2).size());
+			assertEquals(0, store.near(problem(300, 25, 25, 25, 25), 10).size());
+		}
+	}
+}
@@ -0,0 +1,186 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Output formats tests on a square with a triangle for each side.
+ *
+ * @author Todor Balabanov
+ */
+public class SolutionWriterTest {
+
+	/**
+	 * Colors of the pipes.
+	 */
+	private static final Color[] COLORS = { Color.RED, Color.GREEN, Color.BLUE, Color.YELLOW };
+
+	/**
+	 * Square of side 100 with four equal pipes.
+	 *
+	 * @return Problem context.
+	 */
+	private static Problem problem() {
+		Polygon square = new Polygon(new int[] { 0, 100, 100, 0 }, new int[] { 0, 0, 100, 100 }, 4);
+		List<Pipe> pipes = new ArrayList<Pipe>();
+		for (int k = 0; k < 4; k++) {
+			pipes.add(new Pipe(COLORS[k], new Point(square.xpoints[k], square.ypoints[k]),
+					new Point(square.xpoints[(k + 1) % 4], square.ypoints[(k + 1) % 4]), 0, 25));
+		}
+		return new Problem(square, pipes, FitnessMode.ANALYTIC, null);
+	}
+
+	/**
+	 * Triangle from each side to the center.
+	 *
+	 * @param problem
+	 *            Problem context.
+	 *
+	 * @return Solution.
+	 */
+	private static List<List<Point>> solution(Problem problem) {
+		return ProblemTest.triangles(problem).getRepresentation();
+	}
+
+	/**
+	 * SVG has the boundary and a polygon for each pipe with its share, area
+	 * and color.
+	 *
+	 * @throws Exception
+	 *             If the document can not be written or parsed.
+	 */
+	@Test
+	public void svg() throws Exception {
+		Problem problem = problem();
+		StringWriter writer = new StringWriter();
+		SolutionWriter.svg(problem, solution(problem), new int[] { 200, 150 }, writer);
+
+		Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+				.parse(new ByteArrayInputStream(writer.toString().getBytes("UTF-8")));
+		Element root = document.getDocumentElement();
+		assertEquals("200", root.getAttribute("width"));
+		assertEquals("150", root.getAttribute("height"));
+		assertEquals("0 0 100 100", root.getAttribute("viewBox"));
+
+		NodeList polygons = document.getElementsByTagName("polygon");
+		assertEquals(5, polygons.getLength());
+		assertEquals("0,0 100,0 100,100 0,100", ((Element) polygons.item(0)).getAttribute("points"));
+		for (int k = 0; k < 4; k++) {
+			Element polygon = (Element) polygons.item(k + 1);
+			assertEquals("pipe" + k, polygon.getAttribute("id"));
+			assertEquals(String.format("#%06X", COLORS[k].getRGB() & 0xFFFFFF), polygon.getAttribute("fill"));
+			assertEquals(25, Double.parseDouble(polygon.getAttribute("data-share")), 0);
+			assertEquals(2500, Double.parseDouble(polygon.getAttribute("data-area")), 1E-9);
+			assertEquals(3, polygon.getAttribute("points").split(" ").length);
+		}
+	}
+
+	/**
+	 * GeoJSON has closed rings for the boundary and for each pipe.
+	 *
+	 * @throws Exception
+	 *             If the document can not be written or parsed.
+	 */
+	@Test
+	public void geoJson() throws Exception {
+		Problem problem = problem();
+		StringWriter writer = new StringWriter();
+		SolutionWriter.geoJson(problem, solution(problem), writer);
+
+		JSONObject collection = (JSONObject) new JSONParser().parse(writer.toString());
+		assertEquals("FeatureCollection", collection.get("type"));
+		JSONArray features = (JSONArray) collection.get("features");
+		assertEquals(5, features.size());
+
+		for (int f = 0; f < features.size(); f++) {
+			JSONObject feature = (JSONObject) features.get(f);
+			JSONObject properties = (JSONObject) feature.get("properties");
+			JSONArray ring = (JSONArray) ((JSONArray) ((JSONObject) feature.get("geometry")).get("coordinates"))
+					.get(0);
+			assertEquals(ring.get(0), ring.get(ring.size() - 1));
+
+			if (f == 0) {
+				assertEquals("boundary", properties.get("role"));
+				assertEquals(5, ring.size());
+			} else {
+				assertEquals("pipe", properties.get("role"));
+				assertEquals((long) f - 1, properties.get("pipe"));
+				assertEquals(2500, ((Number) properties.get("area")).doubleValue(), 1E-9);
+				assertEquals(4, ring.size());
+			}
+		}
+	}
+
+	/**
+	 * PNG has the requested size and the colors of the pipes.
+	 *
+	 * @throws Exception
+	 *             If the image can not be written or read.
+	 */
+	@Test
+	public void png() throws Exception {
+		Problem problem = problem();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		SolutionWriter.png(problem, solution(problem), new int[] { 50, 50 }, bytes);
+
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(50, image.getWidth());
+		assertEquals(50, image.getHeight());
+		assertEquals(COLORS[0].getRGB(), image.getRGB(25, 5));
+		assertEquals(COLORS[2].getRGB(), image.getRGB(25, 45));
+	}
+
+	/**
+	 * Files are written in the format of their extension, files of other
+	 * formats are not created.
+	 *
+	 * @throws Exception
+	 *             If a file can not be written.
+	 */
+	@Test
+	public void write() throws Exception {
+		Problem problem = problem();
+		File directory = Files.createTempDirectory("solution").toFile();
+		for (String format : Arrays.asList("png", "svg", "geojson")) {
+			assertTrue(SolutionWriter.accepts(format));
+			File file = new File(directory, "out." + format);
+			SolutionWriter.write(file, problem, solution(problem), null);
+			assertTrue(file.length() > 0);
+			file.delete();
+		}
+		assertFalse(SolutionWriter.accepts("txt"));
+
+		File file = new File(directory, "out.txt");
+		try {
+			SolutionWriter.write(file, problem, solution(problem), null);
+			fail();
+		} catch (IllegalArgumentException exception) {
+		}
+		assertFalse(file.exists());
+		directory.delete();
+	}
+}
@@ -0,0 +1,177 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Polygon;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.genetics.Chromosome;
+import org.apache.commons.math3.genetics.ElitisticListPopulation;
+import org.apache.commons.math3.genetics.Population;
+import org.apache.commons.math3.genetics.StoppingCondition;
+import org.junit.Test;
+
+/**
+ * Stopping conditions tests.
+ *
+ * @author Todor Balabanov
+ */
+public class StoppingConditionsTest {
+
+	/**
+	 * Population with a single chromosome of known fitness.
+	 *
+	 * @param fitness
+	 *            Fitness value.
+	 *
+	 * @return Population.
+	 */
+	private static Population population(final double fitness) {
+		Chromosome chromosome = new Chromosome() {
+			@Override
+			public double fitness() {
+				return fitness;
+			}
+		};
+		return new ElitisticListPopulation(Arrays.asList(chromosome), 1, 0);
+	}
+
+	/**
+	 * Condition which is satisfied for the chosen checks.
+	 *
+	 * @param results
+	 *            Result of each check.
+	 *
+	 * @return Stopping condition.
+	 */
+	private static StoppingCondition sequence(final boolean... results) {
+		return new StoppingCondition() {
+			/**
+			 * Number of checks.
+			 */
+			private int count = 0;
+
+			@Override
+			public boolean isSatisfied(Population population) {
+				return results[count++];
+			}
+		};
+	}
+
+	/**
+	 * Stagnation is counted from the last improvement.
+	 */
+	@Test
+	public void stagnation() {
+		StoppingCondition condition = StoppingConditions.stagnation(2);
+		assertFalse(condition.isSatisfied(population(-10)));
+		assertFalse(condition.isSatisfied(population(-10)));
+		assertFalse(condition.isSatisfied(population(-5)));
+		assertFalse(condition.isSatisfied(population(-5)));
+		assertTrue(condition.isSatisfied(population(-6)));
+	}
+
+	/**
+	 * Degenerate populations with zero fitness do not stagnate.
+	 */
+	@Test
+	public void degenerateStagnation() {
+		StoppingCondition condition = StoppingConditions.stagnation(2);
+		for (int i = 0; i < 10; i++) {
+			assertFalse(condition.isSatisfied(population(-0.0)));
+		}
+		assertFalse(condition.isSatisfied(population(-1)));
+		assertFalse(condition.isSatisfied(population(-1)));
+		assertTrue(condition.isSatisfied(population(-1)));
+	}
+
+	/**
+	 * Target fitness is reached from below.
+	 */
+	@Test
+	public void targetFitness() {
+		StoppingCondition condition = StoppingConditions.targetFitness(-1);
+		assertFalse(condition.isSatisfied(population(-2)));
+		assertTrue(condition.isSatisfied(population(-1)));
+	}
+
+	/**
+	 * Each pipe should be close enough to its share.
+	 */
+	@Test
+	public void targetAreaError() {
+		Polygon square = new Polygon(new int[] { 0, 100, 100, 0 }, new int[] { 0, 0, 100, 100 }, 4);
+		List<Pipe> pipes = new ArrayList<Pipe>();
+		for (int k = 0; k < 4; k++) {
+			pipes.add(new Pipe(Color.RED, new Point(square.xpoints[k], square.ypoints[k]),
+					new Point(square.xpoints[(k + 1) % 4], square.ypoints[(k + 1) % 4]), 0, (k < 2) ? 24 : 26));
+		}
+		Problem problem = new Problem(square, pipes, FitnessMode.ANALYTIC, null);
+		Population population = new ElitisticListPopulation(Arrays.asList(ProblemTest.triangles(problem)), 1, 0);
+
+		assertTrue(StoppingConditions.targetAreaError(0.05).isSatisfied(population));
+		assertFalse(StoppingConditions.targetAreaError(0.03).isSatisfied(population));
+		assertFalse(StoppingConditions.targetAreaError(1).isSatisfied(population(-1)));
+	}
+
+	/**
+	 * Evaluations are counted per problem.
+	 */
+	@Test
+	public void maxEvaluations() {
+		Polygon square = new Polygon(new int[] { 0, 100, 100, 0 }, new int[] { 0, 0, 100, 100 }, 4);
+		List<Pipe> pipes = new ArrayList<Pipe>();
+		pipes.add(new Pipe(Color.RED, new Point(0, 0), new Point(100, 0), 0, 100));
+		Problem problem = new Problem(square, pipes, FitnessMode.ANALYTIC, null);
+		Population population = new ElitisticListPopulation(Arrays.asList(ProblemTest.triangles(problem)), 1, 0);
+
+		StoppingCondition condition = StoppingConditions.maxEvaluations(3);
+		assertFalse(condition.isSatisfied(population));
+		for (int i = 0; i < 2; i++) {
+			new PolygonListChromosome(ProblemTest.triangles(problem).getRepresentation(), problem).fitness();
+		}
+		assertEquals(3, problem.getEvaluations());
+		assertTrue(condition.isSatisfied(population));
+	}
+
+	/**
+	 * The time is measured from the first check.
+	 *
+	 * @throws InterruptedException
+	 *             If the sleep is interrupted.
+	 */
+	@Test
+	public void wallClock() throws InterruptedException {
+		StoppingCondition condition = StoppingConditions.wallClock(50, TimeUnit.MILLISECONDS);
+		Thread.sleep(100);
+		assertFalse(condition.isSatisfied(population(-1)));
+		Thread.sleep(100);
+		assertTrue(condition.isSatisfied(population(-1)));
+	}
+
+	/**
+	 * Compositions check all conditions each time.
+	 */
+	@Test
+	public void compositions() {
+		StoppingCondition first = sequence(false, true, false);
+		StoppingCondition second = sequence(false, true, true);
+		StoppingCondition any = StoppingConditions.any(first, second);
+		assertFalse(any.isSatisfied(population(-1)));
+		assertTrue(any.isSatisfied(population(-1)));
+		assertTrue(any.isSatisfied(population(-1)));
+
+		first = sequence(false, true, false);
+		second = sequence(true, true, true);
+		StoppingCondition all = StoppingConditions.all(first, second);
+		assertFalse(all.isSatisfied(population(-1)));
+		assertTrue(all.isSatisfied(population(-1)));
+		assertFalse(all.isSatisfied(population(-1)));
+		assertFalse(StoppingConditions.all().isSatisfied(population(-1)));
+	}
+}